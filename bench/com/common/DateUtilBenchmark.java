@@ -0,0 +1,300 @@
+package com.common;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoField;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAccessor;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * 功能描述：DateUtil 性能基准，与直接使用 java.time 的写法对照
+ *
+ * JMH 方式：parseDate、format、字段读取、addDate/diffDate 各有 java.time 对照项，
+ * 以 pattern 参数覆盖专用格式和通用格式，*Contended 项以4线程运行；其他线程数用 JMH 的 -t 参数
+ *
+ * main 方式：不依赖JMH，依次以 1、2、CPU数 个线程测量并输出每次调用的纳秒数，参数为 每项测量毫秒数
+ *
+ * 位于 bench 源目录，与主代码分开编译，类路径上需有主代码和JMH
+ *
+ * @author renms
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DateUtilBenchmark {
+
+	static final int SIZE = 1024;
+
+	@Param( { "yyyy-MM-dd", "yyyy-MM-dd HH:mm:ss", "yyyy年MM月dd日 HH:mm" })
+	public String pattern;
+
+	private long[] millis;
+
+	private Date[] dates;
+
+	private String[] texts;
+
+	private ZoneId zone;
+
+	private DateTimeFormatter formatter;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(20080719L);
+		zone = ZoneId.systemDefault();
+		formatter = DateTimeFormatter.ofPattern(pattern);
+		millis = new long[SIZE];
+		dates = new Date[SIZE];
+		texts = new String[SIZE];
+		for (int i = 0; i < SIZE; i++) {
+			// 2000-01-01 至 2030 年前后
+			millis[i] = 946656000000L + (long) (random.nextDouble() * 946080000000L);
+			dates[i] = new Date(millis[i]);
+			texts[i] = DateUtil.format(dates[i], pattern);
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	@OperationsPerInvocation(SIZE)
+	public long parseDate() {
+		long sum = 0;
+		for (int i = 0; i < SIZE; i++) {
+			sum += DateUtil.parseDate(texts[i], pattern).getTime();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	@OperationsPerInvocation(SIZE)
+	public long parseDateJavaTime() {
+		long sum = 0;
+		for (int i = 0; i < SIZE; i++) {
+			sum += parseJavaTime(texts[i]);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	@OperationsPerInvocation(SIZE)
+	@Threads(4)
+	public long parseDateContended() {
+		return parseDate();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	@OperationsPerInvocation(SIZE)
+	public long format() {
+		long sum = 0;
+		for (int i = 0; i < SIZE; i++) {
+			sum += DateUtil.format(dates[i], pattern).length();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	@OperationsPerInvocation(SIZE)
+	public long formatJavaTime() {
+		long sum = 0;
+		for (int i = 0; i < SIZE; i++) {
+			sum += formatter.format(
+					Instant.ofEpochMilli(millis[i]).atZone(zone)).length();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	@OperationsPerInvocation(SIZE)
+	@Threads(4)
+	public long formatContended() {
+		return format();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	@OperationsPerInvocation(SIZE)
+	public long fields() {
+		long sum = 0;
+		for (int i = 0; i < SIZE; i++) {
+			Date d = dates[i];
+			sum += DateUtil.getYear(d) + DateUtil.getMonth(d)
+					+ DateUtil.getDay(d) + DateUtil.getHour(d)
+					+ DateUtil.getMinute(d) + DateUtil.getSecond(d);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	@OperationsPerInvocation(SIZE)
+	public long fieldsJavaTime() {
+		long sum = 0;
+		for (int i = 0; i < SIZE; i++) {
+			ZonedDateTime t = Instant.ofEpochMilli(millis[i]).atZone(zone);
+			sum += t.getYear() + t.getMonthValue() + t.getDayOfMonth()
+					+ t.getHour() + t.getMinute() + t.getSecond();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	@OperationsPerInvocation(SIZE)
+	public long addAndDiff() {
+		long sum = 0;
+		for (int i = 0; i < SIZE; i++) {
+			Date d = dates[i];
+			sum += DateUtil.diffDate(DateUtil.addDate(d, i), d);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	@OperationsPerInvocation(SIZE)
+	public long addAndDiffJavaTime() {
+		long sum = 0;
+		for (int i = 0; i < SIZE; i++) {
+			ZonedDateTime t = Instant.ofEpochMilli(millis[i]).atZone(zone);
+			sum += ChronoUnit.DAYS.between(t, t.plusDays(i));
+		}
+		return sum;
+	}
+
+	private long parseJavaTime(String text) {
+		TemporalAccessor parsed = formatter.parse(text);
+		LocalTime time = parsed.isSupported(ChronoField.HOUR_OF_DAY) ? LocalTime
+				.from(parsed)
+				: LocalTime.MIDNIGHT;
+		return LocalDateTime.of(LocalDate.from(parsed), time).atZone(zone)
+				.toInstant().toEpochMilli();
+	}
+
+	/**
+	 * 不依赖JMH的测量
+	 *
+	 * @param args
+	 *            [每项测量毫秒数]
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		long runMillis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+		int cpus = Runtime.getRuntime().availableProcessors();
+		int[] threadCounts = cpus > 2 ? new int[] { 1, 2, cpus } : new int[] {
+				1, 2 };
+		for (String p : new String[] { "yyyy-MM-dd", "yyyy-MM-dd HH:mm:ss",
+				"yyyy年MM月dd日 HH:mm" }) {
+			final DateUtilBenchmark bench = new DateUtilBenchmark();
+			bench.pattern = p;
+			bench.setUp();
+			System.out.println(p);
+			for (int threads : threadCounts) {
+				report("parseDate", threads, runMillis, bench::parseDate);
+				report("parseDateJavaTime", threads, runMillis,
+						bench::parseDateJavaTime);
+				report("format", threads, runMillis, bench::format);
+				report("formatJavaTime", threads, runMillis,
+						bench::formatJavaTime);
+				report("fields", threads, runMillis, bench::fields);
+				report("fieldsJavaTime", threads, runMillis,
+						bench::fieldsJavaTime);
+				report("addAndDiff", threads, runMillis, bench::addAndDiff);
+				report("addAndDiffJavaTime", threads, runMillis,
+						bench::addAndDiffJavaTime);
+			}
+		}
+	}
+
+	private interface Operation {
+		long run();
+	}
+
+	/**
+	 * 预热后以指定线程数同时运行，输出每次调用（每个数组元素）的平均纳秒数
+	 */
+	private static void report(String name, final int threads,
+			final long runMillis, final Operation operation)
+			throws InterruptedException {
+		// 预热
+		long warmupEnd = System.nanoTime() + runMillis * 500000L;
+		while (System.nanoTime() < warmupEnd) {
+			operation.run();
+		}
+		final AtomicLong calls = new AtomicLong();
+		// 累加结果，防止调用被优化掉
+		final AtomicLong sink = new AtomicLong();
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			Thread thread = new Thread(() -> {
+				try {
+					start.await();
+					long end = System.nanoTime() + runMillis * 1000000L;
+					long n = 0;
+					long s = 0;
+					while (System.nanoTime() < end) {
+						s += operation.run();
+						n++;
+					}
+					calls.addAndGet(n);
+					sink.addAndGet(s);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					done.countDown();
+				}
+			});
+			thread.setDaemon(true);
+			thread.start();
+		}
+		start.countDown();
+		done.await();
+		double nanosPerOp = runMillis * 1e6 * threads
+				/ (calls.get() * (double) SIZE);
+		System.out.printf("  %-20s threads=%-3d %8.1f ns/op%n", name,
+				threads, nanosPerOp);
+	}
+}
@@ -0,0 +1,97 @@
+package com.common;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.zone.ZoneOffsetTransition;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ *
+ * 功能描述：DateUtil 夏令时回归检查
+ *
+ * 在几个有夏令时的时区中，取每次切换前后的时刻，核对 addDate/addMonth 与 ZonedDateTime.plusDays/plusMonths 的结果；
+ * 其中包括重叠钟点加0天、0月应保持原时刻（如 2008-11-02 01:30 EDT 不能变成 01:30 EST）。
+ * 发现错误时输出前几条并以状态1退出
+ *
+ * 位于 bench 源目录，与主代码分开编译，类路径上需有主代码
+ *
+ * @author renms
+ * @version 1.0
+ */
+public class DateUtilDstCheck {
+
+	static final String[] ZONES = { "America/New_York", "Europe/London",
+			"Australia/Lord_Howe", "America/Sao_Paulo" };
+
+	static final int[] AMOUNTS = { 0, 1, -1, 7, -7, 30, 365 };
+
+	/** 切换前后取样的分钟数 */
+	static final int[] MINUTES = { -90, -60, -30, -1, 0, 1, 29, 30, 59, 60, 90 };
+
+	static final int MAX_REPORTED = 10;
+
+	private static int failures;
+
+	private static void check(String zone, String operation, Date date,
+			int amount, long expected, long actual) {
+		if (expected != actual) {
+			if (++failures <= MAX_REPORTED) {
+				System.err.println(zone + " " + operation + "(" + date.getTime()
+						+ ", " + amount + "): expected " + expected + ", got "
+						+ actual);
+			}
+		}
+	}
+
+	private static void check(String zone, long from, long to) {
+		ZoneId id = ZoneId.of(zone);
+		ZoneOffsetTransition transition = id.getRules().nextTransition(
+				Instant.ofEpochMilli(from));
+		while (transition != null
+				&& transition.getInstant().toEpochMilli() < to) {
+			long at = transition.getInstant().toEpochMilli();
+			for (int minutes : MINUTES) {
+				long millis = at + minutes * 60000L;
+				Date date = new Date(millis);
+				ZonedDateTime zoned = Instant.ofEpochMilli(millis).atZone(id);
+				for (int amount : AMOUNTS) {
+					check(zone, "addDate", date, amount, zoned.plusDays(amount)
+							.toInstant().toEpochMilli(), DateUtil.addDate(date,
+							amount).getTime());
+					check(zone, "addMonth", date, amount, zoned.plusMonths(
+							amount).toInstant().toEpochMilli(), DateUtil
+							.addMonth(date, amount).getTime());
+				}
+			}
+			transition = id.getRules().nextTransition(transition.getInstant());
+		}
+	}
+
+	public static void main(String[] args) {
+		TimeZone old = DateUtil.getTimeZone();
+		try {
+			DateUtil.setTimeZone(TimeZone.getTimeZone("America/New_York"));
+			// 2008-11-02 01:30 EDT，处在重叠钟点的前一段
+			Date edt = new Date(1225603800000L);
+			check("America/New_York", "addDate", edt, 0, edt.getTime(),
+					DateUtil.addDate(edt, 0).getTime());
+			check("America/New_York", "addMonth", edt, 0, edt.getTime(),
+					DateUtil.addMonth(edt, 0).getTime());
+
+			long from = 946684800000L; // 2000-01-01
+			long to = 1893456000000L; // 2030-01-01
+			for (String zone : ZONES) {
+				DateUtil.setTimeZone(TimeZone.getTimeZone(zone));
+				check(zone, from, to);
+			}
+		} finally {
+			DateUtil.setTimeZone(old);
+		}
+		System.out.println(ZONES.length + " zones, " + failures + " failures");
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+}
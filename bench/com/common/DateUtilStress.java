@@ -0,0 +1,185 @@
+package com.common;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * 功能描述：DateUtil 并发正确性检查
+ *
+ * 先单线程算出每个样本的期望结果（格式化结果和各字段另与 java.time 核对），
+ * 再让多个线程各用不同的格式同时反复调用 parseDate、format、字段读取、addDate/diffDate 及批量接口，
+ * 任何结果与期望不同即视为线程间互相干扰；发现错误时输出前几条并以状态1退出
+ *
+ * 参数依次为 线程数（默认CPU数的2倍，至少4） 运行秒数（默认10）
+ *
+ * 位于 bench 源目录，与主代码分开编译，类路径上需有主代码
+ *
+ * @author renms
+ * @version 1.0
+ */
+public class DateUtilStress {
+
+	static final int SAMPLES = 4096;
+
+	static final int MAX_REPORTED = 10;
+
+	static final String[] PATTERNS = { "yyyy-MM-dd", "yyyy/MM/dd HH:mm:ss",
+			"yyyy-MM-dd HH:mm:ss", "yyyyMMddHHmmss", "yyyy年MM月dd日 HH时mm分ss秒",
+			"HH:mm:ss" };
+
+	private final String pattern;
+
+	private final Date[] dates = new Date[SAMPLES];
+
+	private final String[] texts = new String[SAMPLES];
+
+	private final long[] parsed = new long[SAMPLES];
+
+	/** 年、月、日、时、分、秒 */
+	private final int[][] fields = new int[SAMPLES][];
+
+	private final int[] addDays = new int[SAMPLES];
+
+	private final long[] added = new long[SAMPLES];
+
+	/** diffDate(addDate(d, n), d)，目标时刻落在夏令时跳过的钟点时会顺延，不一定等于 n */
+	private final int[] diffs = new int[SAMPLES];
+
+	private final AtomicLong failures;
+
+	DateUtilStress(String pattern, long seed, AtomicLong failures) {
+		this.pattern = pattern;
+		this.failures = failures;
+		Random random = new Random(seed);
+		ZoneId zone = DateUtil.getTimeZone().toZoneId();
+		DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern);
+		for (int i = 0; i < SAMPLES; i++) {
+			// 1950 至 2060 年前后，覆盖表内外及夏令时切换
+			long millis = -631152000000L
+					+ (long) (random.nextDouble() * 3471292800000L);
+			ZonedDateTime t = Instant.ofEpochMilli(millis).atZone(zone);
+			dates[i] = new Date(millis);
+			texts[i] = DateUtil.format(dates[i], pattern);
+			if (!texts[i].equals(formatter.format(t))) {
+				throw new IllegalStateException("format " + pattern + " "
+						+ texts[i] + " != " + formatter.format(t));
+			}
+			parsed[i] = DateUtil.parseDate(texts[i], pattern).getTime();
+			fields[i] = new int[] { DateUtil.getYear(dates[i]),
+					DateUtil.getMonth(dates[i]), DateUtil.getDay(dates[i]),
+					DateUtil.getHour(dates[i]), DateUtil.getMinute(dates[i]),
+					DateUtil.getSecond(dates[i]) };
+			int[] expected = { t.getYear(), t.getMonthValue(),
+					t.getDayOfMonth(), t.getHour(), t.getMinute(),
+					t.getSecond() };
+			if (!Arrays.equals(fields[i], expected)) {
+				throw new IllegalStateException("fields " + t);
+			}
+			addDays[i] = random.nextInt(2000) - 1000;
+			Date a = DateUtil.addDate(dates[i], addDays[i]);
+			added[i] = a.getTime();
+			diffs[i] = DateUtil.diffDate(a, dates[i]);
+		}
+	}
+
+	/**
+	 * 按随机顺序反复检查所有样本直到 deadline
+	 */
+	void run(long deadline, long seed) {
+		Random random = new Random(seed);
+		long[] batchIn = new long[64];
+		String[] batchOut = new String[64];
+		while (System.nanoTime() < deadline) {
+			int i = random.nextInt(SAMPLES);
+			Date d = dates[i];
+			check(i, "format", texts[i], DateUtil.format(d, pattern));
+			Date p = DateUtil.parseDate(texts[i], pattern);
+			check(i, "parseDate", parsed[i], p == null ? -1 : p.getTime());
+			int[] f = fields[i];
+			check(i, "getYear", f[0], DateUtil.getYear(d));
+			check(i, "getMonth", f[1], DateUtil.getMonth(d));
+			check(i, "getDay", f[2], DateUtil.getDay(d));
+			check(i, "getHour", f[3], DateUtil.getHour(d));
+			check(i, "getMinute", f[4], DateUtil.getMinute(d));
+			check(i, "getSecond", f[5], DateUtil.getSecond(d));
+			Date a = DateUtil.addDate(d, addDays[i]);
+			check(i, "addDate", added[i], a.getTime());
+			check(i, "diffDate", diffs[i], DateUtil.diffDate(a, d));
+			if ((i & 63) == 0) {
+				for (int k = 0; k < batchIn.length; k++) {
+					batchIn[k] = dates[(i + k) % SAMPLES].getTime();
+				}
+				DateUtil.format(batchIn, pattern, batchOut);
+				for (int k = 0; k < batchIn.length; k++) {
+					check((i + k) % SAMPLES, "format(long[])",
+							texts[(i + k) % SAMPLES], batchOut[k]);
+				}
+			}
+		}
+	}
+
+	private void check(int sample, String operation, Object expected,
+			Object actual) {
+		if (!expected.equals(actual)) {
+			long n = failures.incrementAndGet();
+			if (n <= MAX_REPORTED) {
+				System.err.println(Thread.currentThread().getName() + " "
+						+ operation + " [" + pattern + "] sample " + sample
+						+ ": expected " + expected + ", got " + actual);
+			}
+		}
+	}
+
+	/**
+	 * @param args
+	 *            [线程数] [运行秒数]
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : Math.max(
+				4, Runtime.getRuntime().availableProcessors() * 2);
+		long seconds = args.length > 1 ? Long.parseLong(args[1]) : 10;
+		final AtomicLong failures = new AtomicLong();
+		final DateUtilStress[] workers = new DateUtilStress[threads];
+		for (int t = 0; t < threads; t++) {
+			workers[t] = new DateUtilStress(PATTERNS[t % PATTERNS.length], t,
+					failures);
+		}
+		final long deadline = System.nanoTime() + seconds * 1000000000L;
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] running = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final DateUtilStress worker = workers[t];
+			final long seed = 1000L + t;
+			running[t] = new Thread(() -> {
+				try {
+					start.await();
+					worker.run(deadline, seed);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (RuntimeException e) {
+					failures.incrementAndGet();
+					e.printStackTrace();
+				}
+			}, "date-stress-" + t);
+			running[t].start();
+		}
+		start.countDown();
+		for (Thread thread : running) {
+			thread.join();
+		}
+		System.out.println(threads + " threads, " + seconds + " s, "
+				+ failures.get() + " failures");
+		if (failures.get() > 0) {
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,670 @@
+package com.common.ftp;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+/**
+ * 进程内的最小FTP服务器，用于离线测试和性能测量<br>
+ * 以本地目录为根目录，支持被动模式下的常用命令，可模拟网络延迟和带宽限制；
+ * 不校验密码，不做权限控制，只能用于测试；位于 bench 源目录，不随主代码发布
+ *
+ * @author renms
+ * @version 1.0.0
+ */
+public class EmbeddedFtpServer implements Closeable
+{
+
+	private static Logger logger = Logger.getLogger(EmbeddedFtpServer.class);
+
+	private final Path root;
+
+	private final ServerSocket serverSocket;
+
+	private final ExecutorService workers;
+
+	private final AtomicInteger connections = new AtomicInteger();
+
+	private volatile long replyDelayMillis;
+
+	private volatile long bytesPerSecond;
+
+	private volatile boolean mlsdEnabled = true;
+
+	private volatile boolean closed;
+
+	/**
+	 * 在本机随机端口上启动服务器
+	 *
+	 * @param root
+	 *            根目录
+	 * @throws IOException
+	 */
+	public EmbeddedFtpServer(File root) throws IOException
+	{
+		this(root, 0);
+	}
+
+	/**
+	 * 在本机指定端口上启动服务器
+	 *
+	 * @param root
+	 *            根目录
+	 * @param port
+	 *            端口，0表示随机端口
+	 * @throws IOException
+	 */
+	public EmbeddedFtpServer(File root, int port) throws IOException
+	{
+		this.root = root.getCanonicalFile().toPath();
+		Files.createDirectories(this.root);
+		this.serverSocket = new ServerSocket(port, 512, InetAddress.getLoopbackAddress());
+		this.workers = Executors.newCachedThreadPool(r -> {
+			Thread t = new Thread(r, "embedded-ftp-" + connections.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		this.workers.execute(this::acceptLoop);
+	}
+
+	public String getHost()
+	{
+		return serverSocket.getInetAddress().getHostAddress();
+	}
+
+	public int getPort()
+	{
+		return serverSocket.getLocalPort();
+	}
+
+	public File getRoot()
+	{
+		return root.toFile();
+	}
+
+	/**
+	 * 模拟网络往返延迟：每条应答发出前等待的毫秒数
+	 */
+	public void setReplyDelayMillis(long replyDelayMillis)
+	{
+		this.replyDelayMillis = replyDelayMillis;
+	}
+
+	/**
+	 * 模拟带宽：每条数据连接每秒最多传输的字节数，0表示不限制
+	 */
+	public void setBytesPerSecond(long bytesPerSecond)
+	{
+		this.bytesPerSecond = bytesPerSecond;
+	}
+
+	/**
+	 * 是否在 FEAT 中声明并支持 MLSD，关闭后可测试 LIST 回退
+	 */
+	public void setMlsdEnabled(boolean mlsdEnabled)
+	{
+		this.mlsdEnabled = mlsdEnabled;
+	}
+
+	public void close() throws IOException
+	{
+		closed = true;
+		serverSocket.close();
+		workers.shutdownNow();
+	}
+
+	private void acceptLoop()
+	{
+		while (!closed)
+		{
+			try
+			{
+				final Socket socket = serverSocket.accept();
+				workers.execute(() -> serve(socket));
+			}
+			catch (IOException ex)
+			{
+				if (!closed)
+				{
+					logger.error("Embedded FTP server accept failure!", ex);
+				}
+			}
+		}
+	}
+
+	private void serve(Socket socket)
+	{
+		try
+		{
+			new Connection(socket).run();
+		}
+		catch (IOException ex)
+		{
+			if (!closed)
+			{
+				logger.info("Embedded FTP connection closed: " + ex);
+			}
+		}
+		finally
+		{
+			try
+			{
+				socket.close();
+			}
+			catch (IOException ex)
+			{
+				// ignore
+			}
+		}
+	}
+
+	/**
+	 * 单个控制连接的会话状态
+	 */
+	private class Connection
+	{
+		private final Socket socket;
+
+		private final Writer out;
+
+		private String cwd = "/";
+
+		private ServerSocket passive;
+
+		private String renameFrom;
+
+		Connection(Socket socket) throws IOException
+		{
+			this.socket = socket;
+			this.socket.setTcpNoDelay(true);
+			this.out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+		}
+
+		void run() throws IOException
+		{
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			reply(220, "Embedded FTP server ready");
+			String line;
+			try
+			{
+				while ((line = in.readLine()) != null)
+				{
+					int space = line.indexOf(' ');
+					String cmd = (space < 0 ? line : line.substring(0, space)).toUpperCase(Locale.ROOT);
+					String arg = space < 0 ? "" : line.substring(space + 1);
+					if (!handle(cmd, arg))
+					{
+						return;
+					}
+				}
+			}
+			finally
+			{
+				closePassive();
+			}
+		}
+
+		private boolean handle(String cmd, String arg) throws IOException
+		{
+			if ("USER".equals(cmd))
+			{
+				reply(331, "Password required");
+			}
+			else if ("PASS".equals(cmd))
+			{
+				reply(230, "Logged in");
+			}
+			else if ("QUIT".equals(cmd))
+			{
+				reply(221, "Bye");
+				return false;
+			}
+			else if ("SYST".equals(cmd))
+			{
+				reply(215, "UNIX Type: L8");
+			}
+			else if ("FEAT".equals(cmd))
+			{
+				List<String> lines = new ArrayList<String>();
+				lines.add("211-Features:");
+				lines.add(" SIZE");
+				lines.add(" MDTM");
+				lines.add(" MFMT");
+				lines.add(" EPSV");
+				if (mlsdEnabled)
+				{
+					lines.add(" MLST type*;size*;modify*;");
+				}
+				lines.add("211 End");
+				replyLines(lines);
+			}
+			else if ("TYPE".equals(cmd) || "NOOP".equals(cmd) || "OPTS".equals(cmd) || "MODE".equals(cmd)
+					|| "STRU".equals(cmd))
+			{
+				reply(200, "OK");
+			}
+			else if ("PWD".equals(cmd) || "XPWD".equals(cmd))
+			{
+				reply(257, "\"" + cwd.replace("\"", "\"\"") + "\" is current directory");
+			}
+			else if ("CWD".equals(cmd) || "XCWD".equals(cmd))
+			{
+				String target = virtualPath(arg);
+				if (Files.isDirectory(resolve(target)))
+				{
+					cwd = target;
+					reply(250, "OK");
+				}
+				else
+				{
+					reply(550, "No such directory");
+				}
+			}
+			else if ("CDUP".equals(cmd) || "XCUP".equals(cmd))
+			{
+				cwd = virtualPath("..");
+				reply(250, "OK");
+			}
+			else if ("MKD".equals(cmd) || "XMKD".equals(cmd))
+			{
+				Path dir = resolve(virtualPath(arg));
+				if (Files.exists(dir) || !Files.isDirectory(dir.getParent()))
+				{
+					reply(550, "Cannot create directory");
+				}
+				else
+				{
+					Files.createDirectory(dir);
+					reply(257, "\"" + virtualPath(arg) + "\" created");
+				}
+			}
+			else if ("RMD".equals(cmd) || "XRMD".equals(cmd))
+			{
+				Path dir = resolve(virtualPath(arg));
+				if (!Files.isDirectory(dir) || dir.equals(root) || !isEmpty(dir))
+				{
+					reply(550, "Cannot remove directory");
+				}
+				else
+				{
+					Files.delete(dir);
+					reply(250, "OK");
+				}
+			}
+			else if ("DELE".equals(cmd))
+			{
+				Path file = resolve(virtualPath(arg));
+				if (!Files.isRegularFile(file))
+				{
+					reply(550, "No such file");
+				}
+				else
+				{
+					Files.delete(file);
+					reply(250, "OK");
+				}
+			}
+			else if ("RNFR".equals(cmd))
+			{
+				renameFrom = virtualPath(arg);
+				reply(Files.exists(resolve(renameFrom)) ? 350 : 550, "RNFR");
+			}
+			else if ("RNTO".equals(cmd))
+			{
+				if (renameFrom == null)
+				{
+					reply(503, "RNFR required");
+				}
+				else
+				{
+					Files.move(resolve(renameFrom), resolve(virtualPath(arg)), StandardCopyOption.REPLACE_EXISTING);
+					renameFrom = null;
+					reply(250, "OK");
+				}
+			}
+			else if ("SIZE".equals(cmd))
+			{
+				Path file = resolve(virtualPath(arg));
+				if (Files.isRegularFile(file))
+				{
+					reply(213, String.valueOf(Files.size(file)));
+				}
+				else
+				{
+					reply(550, "No such file");
+				}
+			}
+			else if ("MDTM".equals(cmd))
+			{
+				Path file = resolve(virtualPath(arg));
+				if (Files.exists(file))
+				{
+					reply(213, timestamp(Files.getLastModifiedTime(file).toMillis()));
+				}
+				else
+				{
+					reply(550, "No such file");
+				}
+			}
+			else if ("MFMT".equals(cmd))
+			{
+				int space = arg.indexOf(' ');
+				long millis = space < 0 ? -1 : FtpListParser.parseTimeval(arg.substring(0, space));
+				if (millis < 0)
+				{
+					reply(501, "Syntax error");
+				}
+				else
+				{
+					Path file = resolve(virtualPath(arg.substring(space + 1)));
+					if (Files.isRegularFile(file))
+					{
+						Files.setLastModifiedTime(file, FileTime.fromMillis(millis));
+						reply(213, "Modify=" + arg.substring(0, space) + "; " + arg.substring(space + 1));
+					}
+					else
+					{
+						reply(550, "No such file");
+					}
+				}
+			}
+			else if ("PASV".equals(cmd) || "EPSV".equals(cmd))
+			{
+				closePassive();
+				passive = new ServerSocket(0, 1, socket.getLocalAddress());
+				int port = passive.getLocalPort();
+				if ("EPSV".equals(cmd))
+				{
+					reply(229, "Entering Extended Passive Mode (|||" + port + "|)");
+				}
+				else
+				{
+					String h = socket.getLocalAddress().getHostAddress().replace('.', ',');
+					reply(227, "Entering Passive Mode (" + h + "," + (port >> 8) + "," + (port & 0xff) + ")");
+				}
+			}
+			else if ("LIST".equals(cmd) || "NLST".equals(cmd) || "MLSD".equals(cmd))
+			{
+				if ("MLSD".equals(cmd) && !mlsdEnabled)
+				{
+					reply(500, "Unknown command");
+					return true;
+				}
+				String path = arg.startsWith("-") ? "" : arg;
+				Path dir = resolve(virtualPath(path));
+				if (!Files.isDirectory(dir))
+				{
+					reply(550, "No such directory");
+					return true;
+				}
+				StringBuilder sb = new StringBuilder();
+				try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir))
+				{
+					for (Path p : ds)
+					{
+						BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class);
+						String name = p.getFileName().toString();
+						if ("NLST".equals(cmd))
+						{
+							sb.append(name);
+						}
+						else if ("MLSD".equals(cmd))
+						{
+							sb.append("type=").append(attrs.isDirectory() ? "dir" : "file").append(";size=")
+									.append(attrs.size()).append(";modify=")
+									.append(timestamp(attrs.lastModifiedTime().toMillis())).append("; ").append(name);
+						}
+						else
+						{
+							sb.append(listLine(name, attrs));
+						}
+						sb.append("\r\n");
+					}
+				}
+				sendData(sb.toString().getBytes(StandardCharsets.UTF_8));
+			}
+			else if ("RETR".equals(cmd))
+			{
+				Path file = resolve(virtualPath(arg));
+				if (!Files.isRegularFile(file))
+				{
+					reply(550, "No such file");
+					closePassive();
+					return true;
+				}
+				try (InputStream fis = Files.newInputStream(file))
+				{
+					transferOut(fis);
+				}
+			}
+			else if ("STOR".equals(cmd) || "APPE".equals(cmd))
+			{
+				Path file = resolve(virtualPath(arg));
+				if (!Files.isDirectory(file.getParent()))
+				{
+					reply(553, "No such directory");
+					closePassive();
+					return true;
+				}
+				transferIn(file, "APPE".equals(cmd));
+			}
+			else
+			{
+				reply(502, "Command not implemented");
+			}
+			return true;
+		}
+
+		private void sendData(byte[] bytes) throws IOException
+		{
+			transferOut(new ByteArrayInputStream(bytes));
+		}
+
+		private void transferOut(InputStream source) throws IOException
+		{
+			if (passive == null)
+			{
+				reply(425, "Use PASV first");
+				return;
+			}
+			reply(150, "Opening data connection");
+			try (Socket data = passive.accept(); OutputStream os = data.getOutputStream())
+			{
+				copy(source, os);
+			}
+			finally
+			{
+				closePassive();
+			}
+			reply(226, "Transfer complete");
+		}
+
+		private void transferIn(Path file, boolean append) throws IOException
+		{
+			if (passive == null)
+			{
+				reply(425, "Use PASV first");
+				return;
+			}
+			reply(150, "Opening data connection");
+			try (Socket data = passive.accept();
+					InputStream is = data.getInputStream();
+					OutputStream os = append
+							? Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)
+							: Files.newOutputStream(file))
+			{
+				copy(is, os);
+			}
+			finally
+			{
+				closePassive();
+			}
+			reply(226, "Transfer complete");
+		}
+
+		/**
+		 * 按设定带宽复制数据
+		 */
+		private void copy(InputStream in, OutputStream out) throws IOException
+		{
+			byte[] buf = new byte[64 * 1024];
+			long start = System.nanoTime();
+			long total = 0;
+			int n;
+			while ((n = in.read(buf)) > 0)
+			{
+				out.write(buf, 0, n);
+				total += n;
+				long rate = bytesPerSecond;
+				if (rate > 0)
+				{
+					long due = start + total * 1000000000L / rate;
+					long wait = due - System.nanoTime();
+					if (wait > 0)
+					{
+						sleep(wait / 1000000L, (int) (wait % 1000000L));
+					}
+				}
+			}
+			out.flush();
+		}
+
+		private void reply(int code, String text) throws IOException
+		{
+			delay();
+			out.write(code + " " + text + "\r\n");
+			out.flush();
+		}
+
+		private void replyLines(List<String> lines) throws IOException
+		{
+			delay();
+			for (String l : lines)
+			{
+				out.write(l + "\r\n");
+			}
+			out.flush();
+		}
+
+		private void delay()
+		{
+			long d = replyDelayMillis;
+			if (d > 0)
+			{
+				sleep(d, 0);
+			}
+		}
+
+		private void closePassive()
+		{
+			if (passive != null)
+			{
+				try
+				{
+					passive.close();
+				}
+				catch (IOException ex)
+				{
+					// ignore
+				}
+				passive = null;
+			}
+		}
+
+		/**
+		 * 把客户端给出的路径规范化为以 / 开头的虚拟路径
+		 */
+		private String virtualPath(String arg)
+		{
+			String path = arg.startsWith("/") ? arg : (cwd.endsWith("/") ? cwd : cwd + "/") + arg;
+			List<String> parts = new ArrayList<String>();
+			for (String p : path.split("/"))
+			{
+				if (p.length() == 0 || ".".equals(p))
+				{
+					continue;
+				}
+				if ("..".equals(p))
+				{
+					if (!parts.isEmpty())
+					{
+						parts.remove(parts.size() - 1);
+					}
+				}
+				else
+				{
+					parts.add(p);
+				}
+			}
+			return "/" + String.join("/", parts);
+		}
+
+		private Path resolve(String virtualPath)
+		{
+			return virtualPath.length() <= 1 ? root : root.resolve(virtualPath.substring(1));
+		}
+	}
+
+	private static boolean isEmpty(Path dir) throws IOException
+	{
+		try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir))
+		{
+			return !ds.iterator().hasNext();
+		}
+	}
+
+	private static String listLine(String name, BasicFileAttributes attrs)
+	{
+		SimpleDateFormat df = new SimpleDateFormat("MMM dd HH:mm", Locale.ENGLISH);
+		return String.format("%s 1 ftp ftp %13d %s %s", attrs.isDirectory() ? "drwxr-xr-x" : "-rw-r--r--",
+				attrs.size(), df.format(new Date(attrs.lastModifiedTime().toMillis())), name);
+	}
+
+	private static String timestamp(long millis)
+	{
+		SimpleDateFormat df = new SimpleDateFormat("yyyyMMddHHmmss");
+		df.setTimeZone(TimeZone.getTimeZone("UTC"));
+		return df.format(new Date(millis));
+	}
+
+	private static void sleep(long millis, int nanos)
+	{
+		try
+		{
+			Thread.sleep(millis, nanos);
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,235 @@
+package com.common.ftp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.common.FtpUtil;
+
+/**
+ * FtpUtil 传输性能基准，基于内嵌FTP服务器，可在单机离线运行<br>
+ * JMH 方式：大文件上传/下载（ops/s × 文件大小 = 字节/秒）、小文件逐个上传和批量上传（files/s）、目录列表延迟；
+ * 参数 replyDelayMillis、bytesPerSecond 模拟网络往返延迟和带宽<br>
+ * main 方式：不依赖JMH，直接输出 MB/s、files/s 和列表延迟，参数依次为 应答延迟毫秒 带宽字节每秒<br>
+ * 位于 bench 源目录，与主代码分开编译，类路径上需有主代码和JMH
+ *
+ * @author renms
+ * @version 1.0.0
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FtpBenchmark
+{
+
+	static final int SMALL_FILE_COUNT = 200;
+
+	@Param({ "0", "5" })
+	public long replyDelayMillis;
+
+	@Param({ "0" })
+	public long bytesPerSecond;
+
+	@Param({ "8388608" })
+	public int largeFileSize;
+
+	@Param({ "2048" })
+	public int smallFileSize;
+
+	private File localDir;
+
+	private File serverDir;
+
+	private EmbeddedFtpServer server;
+
+	private FtpUtil ftp;
+
+	private File largeFile;
+
+	private File[] smallFiles;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception
+	{
+		localDir = Files.createTempDirectory("ftp-bench-local").toFile();
+		serverDir = Files.createTempDirectory("ftp-bench-server").toFile();
+		Random random = new Random(20160817L);
+		largeFile = new File(localDir, "large.bin");
+		Files.write(largeFile.toPath(), randomBytes(random, largeFileSize));
+		smallFiles = new File[SMALL_FILE_COUNT];
+		for (int i = 0; i < SMALL_FILE_COUNT; i++)
+		{
+			smallFiles[i] = new File(localDir, "small-" + i + ".dat");
+			Files.write(smallFiles[i].toPath(), randomBytes(random, smallFileSize));
+		}
+		server = new EmbeddedFtpServer(serverDir);
+		server.setReplyDelayMillis(replyDelayMillis);
+		server.setBytesPerSecond(bytesPerSecond);
+		ftp = new FtpUtil();
+		ftp.connect(server.getHost(), server.getPort(), "bench", "bench");
+		ftp.upload(largeFile, "large.bin");
+		ftp.mkdirs("small");
+		// 列表基准测量的是服务器往返，关闭会话缓存
+		ftp.getSession().getDirectoryCache().setTtlMillis(0);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception
+	{
+		ftp.disConnect();
+		server.close();
+		delete(localDir);
+		delete(serverDir);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public long uploadLarge() throws Exception
+	{
+		return ftp.upload(largeFile, "large-up.bin");
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public long downloadLarge() throws Exception
+	{
+		return ftp.download("large.bin", new File(localDir, "large-down.bin").getPath());
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	@OperationsPerInvocation(SMALL_FILE_COUNT)
+	public long uploadSmallFiles() throws Exception
+	{
+		return uploadSmall(ftp, smallFiles);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	@OperationsPerInvocation(SMALL_FILE_COUNT)
+	public long uploadSmallFilesBatch() throws Exception
+	{
+		ftp.cd("/small");
+		long total = ftp.uploadBatch(Arrays.asList(smallFiles));
+		ftp.cd("/");
+		return total;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public List<FtpFileEntry> listDirectory() throws Exception
+	{
+		return ftp.list("small");
+	}
+
+	/**
+	 * 不依赖JMH的集成测量
+	 *
+	 * @param args
+	 *            [应答延迟毫秒] [带宽字节每秒]
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		FtpBenchmark bench = new FtpBenchmark();
+		bench.replyDelayMillis = args.length > 0 ? Long.parseLong(args[0]) : 0;
+		bench.bytesPerSecond = args.length > 1 ? Long.parseLong(args[1]) : 0;
+		bench.largeFileSize = 32 * 1024 * 1024;
+		bench.smallFileSize = 2048;
+		bench.setUp();
+		try
+		{
+			double mb = bench.largeFileSize / (1024.0 * 1024.0);
+			long start = System.nanoTime();
+			bench.uploadLarge();
+			System.out.printf("upload:   %.1f MB/s%n", mb / seconds(start));
+
+			start = System.nanoTime();
+			bench.downloadLarge();
+			System.out.printf("download: %.1f MB/s%n", mb / seconds(start));
+
+			start = System.nanoTime();
+			bench.uploadSmallFiles();
+			System.out.printf("small files (%d x %d B): %.1f files/s%n", SMALL_FILE_COUNT, bench.smallFileSize,
+					SMALL_FILE_COUNT / seconds(start));
+
+			start = System.nanoTime();
+			bench.uploadSmallFilesBatch();
+			System.out.printf("small files batch:         %.1f files/s%n", SMALL_FILE_COUNT / seconds(start));
+
+			int rounds = 50;
+			start = System.nanoTime();
+			for (int i = 0; i < rounds; i++)
+			{
+				bench.listDirectory();
+			}
+			System.out.printf("list (%d entries): %.2f ms%n", SMALL_FILE_COUNT, seconds(start) * 1000 / rounds);
+		}
+		finally
+		{
+			bench.tearDown();
+		}
+	}
+
+	static long uploadSmall(FtpUtil ftp, File[] files) throws Exception
+	{
+		long total = 0;
+		ftp.cd("/small");
+		for (File file : files)
+		{
+			total += ftp.upload(file);
+		}
+		ftp.cd("/");
+		return total;
+	}
+
+	private static double seconds(long startNanos)
+	{
+		return (System.nanoTime() - startNanos) / 1e9;
+	}
+
+	private static byte[] randomBytes(Random random, int size)
+	{
+		byte[] bytes = new byte[size];
+		random.nextBytes(bytes);
+		return bytes;
+	}
+
+	private static void delete(File file) throws IOException
+	{
+		File[] children = file.listFiles();
+		if (children != null)
+		{
+			for (File child : children)
+			{
+				delete(child);
+			}
+		}
+		Files.deleteIfExists(file.toPath());
+	}
+}
@@ -0,0 +1,413 @@
+package com.common;
+
+import java.util.Date;
+
+/**
+ *
+ * 功能描述：工作日历，以纪元日（1970-01-01 起的天数，见 DateUtil.getEpochDay）计算
+ *
+ * 一段年份内每天是否工作日记在位图中，另有每64天一段的累计工作日数，
+ * 因此统计区间内工作日数为 O(1)，加减N个工作日为 O(log 段数)，都不逐日循环
+ *
+ * 默认周六、周日休息，可登记节假日及调休上班的日子；登记完成后只读，可在线程间共用
+ *
+ * @author renms
+ * @version 1.0
+ */
+public class BusinessCalendar {
+
+	public static final int MONDAY = 1;
+
+	public static final int TUESDAY = 2;
+
+	public static final int WEDNESDAY = 3;
+
+	public static final int THURSDAY = 4;
+
+	public static final int FRIDAY = 5;
+
+	public static final int SATURDAY = 6;
+
+	public static final int SUNDAY = 7;
+
+	private final int fromYear;
+
+	private final int toYear;
+
+	/** 表中第一天的纪元日 */
+	private final long firstDay;
+
+	/** 表中天数 */
+	private final int days;
+
+	/** 工作日位图，第 i 位对应 firstDay + i */
+	private final long[] workdays;
+
+	/** rank[w] 为第 w 个字之前的工作日数，多一个元素为总数；登记变动后置null，用时重建 */
+	private volatile int[] rank;
+
+	/**
+	 * 功能描述：周六、周日休息的日历
+	 *
+	 * @param fromYear
+	 *            int 起始年份
+	 * @param toYear
+	 *            int 结束年份（含）
+	 */
+	public BusinessCalendar(int fromYear, int toYear) {
+		this(fromYear, toYear, SATURDAY, SUNDAY);
+	}
+
+	/**
+	 * 功能描述：指定每周休息日的日历
+	 *
+	 * @param fromYear
+	 *            int 起始年份
+	 * @param toYear
+	 *            int 结束年份（含）
+	 * @param weekendDays
+	 *            int... 休息日，MONDAY 至 SUNDAY
+	 */
+	public BusinessCalendar(int fromYear, int toYear, int... weekendDays) {
+		if (fromYear > toYear) {
+			throw new IllegalArgumentException("fromYear " + fromYear
+					+ " > toYear " + toYear);
+		}
+		this.fromYear = fromYear;
+		this.toYear = toYear;
+		this.firstDay = CivilDate.toEpochDay(fromYear, 1, 1);
+		this.days = (int) (CivilDate.toEpochDay(toYear + 1, 1, 1) - firstDay);
+		this.workdays = new long[(days + 63) >>> 6];
+		boolean[] weekend = new boolean[8];
+		for (int d : weekendDays) {
+			if (d < MONDAY || d > SUNDAY) {
+				throw new IllegalArgumentException("Invalid day of week: " + d);
+			}
+			weekend[d] = true;
+		}
+		for (int i = 0; i < days; i++) {
+			if (!weekend[dayOfWeek(firstDay + i)]) {
+				workdays[i >>> 6] |= 1L << i;
+			}
+		}
+	}
+
+	public int getFromYear() {
+		return fromYear;
+	}
+
+	public int getToYear() {
+		return toYear;
+	}
+
+	/**
+	 * 功能描述：登记节假日
+	 *
+	 * @param epochDay
+	 *            long 纪元日
+	 */
+	public synchronized void addHoliday(long epochDay) {
+		int i = index(epochDay);
+		workdays[i >>> 6] &= ~(1L << i);
+		rank = null;
+	}
+
+	/**
+	 * 功能描述：登记连续的节假日
+	 *
+	 * @param fromDay
+	 *            long 起始纪元日
+	 * @param toDay
+	 *            long 结束纪元日（含）
+	 */
+	public synchronized void addHolidays(long fromDay, long toDay) {
+		for (long d = fromDay; d <= toDay; d++) {
+			int i = index(d);
+			workdays[i >>> 6] &= ~(1L << i);
+		}
+		rank = null;
+	}
+
+	/**
+	 * 功能描述：登记节假日
+	 *
+	 * @param date
+	 *            String 字符型日期，yyyy-MM-dd 格式
+	 */
+	public void addHoliday(String date) {
+		addHoliday(parse(date));
+	}
+
+	/**
+	 * 功能描述：登记调休上班的日子（原为休息日）
+	 *
+	 * @param epochDay
+	 *            long 纪元日
+	 */
+	public synchronized void addWorkday(long epochDay) {
+		int i = index(epochDay);
+		workdays[i >>> 6] |= 1L << i;
+		rank = null;
+	}
+
+	/**
+	 * 功能描述：登记调休上班的日子
+	 *
+	 * @param date
+	 *            String 字符型日期，yyyy-MM-dd 格式
+	 */
+	public void addWorkday(String date) {
+		addWorkday(parse(date));
+	}
+
+	/**
+	 * 功能描述：是否工作日
+	 *
+	 * @param epochDay
+	 *            long 纪元日
+	 * @return boolean
+	 */
+	public boolean isWorkday(long epochDay) {
+		int i = index(epochDay);
+		return (workdays[i >>> 6] & (1L << i)) != 0;
+	}
+
+	public boolean isWorkday(Date date) {
+		return isWorkday(DateUtil.getEpochDay(date));
+	}
+
+	/**
+	 * 功能描述：统计区间内的工作日数
+	 *
+	 * @param fromDay
+	 *            long 起始纪元日（含）
+	 * @param toDay
+	 *            long 结束纪元日（不含）
+	 * @return int 工作日数，toDay 早于 fromDay 时为负
+	 */
+	public int countWorkdays(long fromDay, long toDay) {
+		int[] r = rank();
+		return rankOf(r, checkBound(toDay)) - rankOf(r, checkBound(fromDay));
+	}
+
+	/**
+	 * 功能描述：加减工作日
+	 *
+	 * @param epochDay
+	 *            long 纪元日
+	 * @param workdays
+	 *            int 工作日数，正数向后、负数向前，从 epochDay 的下一天（或前一天）起算；为0时原样返回
+	 * @return long 纪元日
+	 */
+	public long addWorkdays(long epochDay, int workdays) {
+		if (workdays == 0) {
+			return epochDay;
+		}
+		int[] r = rank();
+		int i = index(epochDay);
+		// 第 k 个工作日（k 从0起）的位置
+		int k = workdays > 0 ? rankOf(r, i + 1) + workdays - 1 : rankOf(r, i)
+				+ workdays;
+		if (k < 0 || k >= r[r.length - 1]) {
+			throw new IllegalArgumentException("Result outside calendar "
+					+ fromYear + "-" + toYear);
+		}
+		return firstDay + select(r, k);
+	}
+
+	/**
+	 * 功能描述：加减工作日，保留时刻
+	 *
+	 * @param date
+	 *            Date 日期
+	 * @param workdays
+	 *            int 工作日数
+	 * @return Date 日期
+	 */
+	public Date addWorkdays(Date date, int workdays) {
+		long day = DateUtil.getEpochDay(date);
+		return DateUtil.addDate(date,
+				(int) (addWorkdays(day, workdays) - day));
+	}
+
+	/**
+	 * 功能描述：当天或之后的第一个工作日
+	 *
+	 * @param epochDay
+	 *            long 纪元日
+	 * @return long 纪元日
+	 */
+	public long nextWorkday(long epochDay) {
+		return isWorkday(epochDay) ? epochDay : addWorkdays(epochDay, 1);
+	}
+
+	/**
+	 * 功能描述：当天或之前的最后一个工作日
+	 *
+	 * @param epochDay
+	 *            long 纪元日
+	 * @return long 纪元日
+	 */
+	public long previousWorkday(long epochDay) {
+		return isWorkday(epochDay) ? epochDay : addWorkdays(epochDay, -1);
+	}
+
+	/**
+	 * 功能描述：当月最后一个工作日
+	 *
+	 * @param epochDay
+	 *            long 纪元日
+	 * @return long 纪元日
+	 */
+	public long lastWorkdayOfMonth(long epochDay) {
+		return previousWorkday(endOfMonth(epochDay));
+	}
+
+	/**
+	 * 功能描述：星期几
+	 *
+	 * @param epochDay
+	 *            long 纪元日
+	 * @return int MONDAY 至 SUNDAY
+	 */
+	public static int dayOfWeek(long epochDay) {
+		// 1970-01-01 为星期四
+		return (int) Math.floorMod(epochDay + 3, 7L) + 1;
+	}
+
+	/**
+	 * 功能描述：所在周的星期一
+	 *
+	 * @param epochDay
+	 *            long 纪元日
+	 * @return long 纪元日
+	 */
+	public static long startOfWeek(long epochDay) {
+		return epochDay - dayOfWeek(epochDay) + MONDAY;
+	}
+
+	/**
+	 * 功能描述：当月第一天
+	 *
+	 * @param epochDay
+	 *            long 纪元日
+	 * @return long 纪元日
+	 */
+	public static long startOfMonth(long epochDay) {
+		int c = CivilDate.fromEpochDay(epochDay);
+		return epochDay - CivilDate.day(c) + 1;
+	}
+
+	/**
+	 * 功能描述：当月最后一天
+	 *
+	 * @param epochDay
+	 *            long 纪元日
+	 * @return long 纪元日
+	 */
+	public static long endOfMonth(long epochDay) {
+		int c = CivilDate.fromEpochDay(epochDay);
+		return epochDay
+				- CivilDate.day(c)
+				+ CivilDate.lengthOfMonth(CivilDate.year(c), CivilDate
+						.month(c));
+	}
+
+	/**
+	 * 功能描述：加减月份，日超出目标月天数时取目标月最后一天（如 1月31日 加1个月为 2月28日或29日）
+	 *
+	 * @param epochDay
+	 *            long 纪元日
+	 * @param months
+	 *            int 月数
+	 * @return long 纪元日
+	 */
+	public static long addMonths(long epochDay, int months) {
+		int c = CivilDate.fromEpochDay(epochDay);
+		long total = CivilDate.year(c) * 12L + CivilDate.month(c) - 1 + months;
+		int year = (int) Math.floorDiv(total, 12L);
+		int month = (int) Math.floorMod(total, 12L) + 1;
+		int day = Math.min(CivilDate.day(c), CivilDate.lengthOfMonth(year,
+				month));
+		return CivilDate.toEpochDay(year, month, day);
+	}
+
+	private static long parse(String date) {
+		Date d = DateUtil.parseDate(date, "yyyy-MM-dd");
+		if (d == null) {
+			throw new IllegalArgumentException("Invalid date: " + date);
+		}
+		return DateUtil.getEpochDay(d);
+	}
+
+	private int index(long epochDay) {
+		long i = epochDay - firstDay;
+		if (i < 0 || i >= days) {
+			throw new IllegalArgumentException("Day " + epochDay
+					+ " outside calendar " + fromYear + "-" + toYear);
+		}
+		return (int) i;
+	}
+
+	/**
+	 * 区间端点可以等于表末尾
+	 */
+	private int checkBound(long epochDay) {
+		long i = epochDay - firstDay;
+		if (i < 0 || i > days) {
+			throw new IllegalArgumentException("Day " + epochDay
+					+ " outside calendar " + fromYear + "-" + toYear);
+		}
+		return (int) i;
+	}
+
+	private int[] rank() {
+		int[] r = rank;
+		if (r == null) {
+			synchronized (this) {
+				r = rank;
+				if (r == null) {
+					r = new int[workdays.length + 1];
+					for (int w = 0; w < workdays.length; w++) {
+						r[w + 1] = r[w] + Long.bitCount(workdays[w]);
+					}
+					rank = r;
+				}
+			}
+		}
+		return r;
+	}
+
+	/**
+	 * 下标 i 之前的工作日数
+	 */
+	private int rankOf(int[] r, int i) {
+		int w = i >>> 6;
+		if (w == workdays.length) {
+			return r[w];
+		}
+		return r[w] + Long.bitCount(workdays[w] & ((1L << i) - 1));
+	}
+
+	/**
+	 * 第 k 个工作日（k 从0起）的下标
+	 */
+	private int select(int[] r, int k) {
+		// 找到最后一个 r[w] <= k 的字
+		int lo = 0;
+		int hi = workdays.length - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (r[mid] <= k) {
+				lo = mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		long word = workdays[lo];
+		for (int n = k - r[lo]; n > 0; n--) {
+			word &= word - 1;
+		}
+		return (lo << 6) + Long.numberOfTrailingZeros(word);
+	}
+}
@@ -0,0 +1,149 @@
+package com.common;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * 功能描述：按指定字符集的字节数截断字符串
+ * 
+ * 用 CharsetEncoder 编码到复用的缓冲区，缓冲区写满即停，只读取能放下的那部分字符，
+ * 耗时与限制的字节数成正比而与原字符串长度无关；每个字符（含代理对）按实际编码长度计算，
+ * 不会从中间截断；无法编码的字符与 String.getBytes 一样按替换字节计算
+ * 
+ * 对象不是线程安全的，各线程可用 get(Charset) 取得自己的实例
+ * 
+ * @author renms
+ * @version 1.0
+ */
+public final class ByteTruncator {
+
+	/** 缓冲区的上限，限制更大时分多次编码 */
+	private static final int MAX_BUFFER = 8192;
+
+	private static final ThreadLocal<ByteTruncator> CURRENT = new ThreadLocal<ByteTruncator>();
+
+	private final Charset charset;
+
+	private final CharsetEncoder encoder;
+
+	private ByteBuffer buffer = ByteBuffer.allocate(64);
+
+	public ByteTruncator(Charset charset) {
+		this.charset = charset;
+		this.encoder = charset.newEncoder().onMalformedInput(
+				CodingErrorAction.REPLACE).onUnmappableCharacter(
+				CodingErrorAction.REPLACE);
+	}
+
+	/**
+	 * 功能描述：取得当前线程的实例，字符集与上次不同时新建
+	 * 
+	 * @param charset
+	 *            Charset 字符集
+	 * @return ByteTruncator
+	 */
+	public static ByteTruncator get(Charset charset) {
+		ByteTruncator truncator = CURRENT.get();
+		if (truncator == null || !truncator.charset.equals(charset)) {
+			truncator = new ByteTruncator(charset);
+			CURRENT.set(truncator);
+		}
+		return truncator;
+	}
+
+	public Charset getCharset() {
+		return charset;
+	}
+
+	/**
+	 * 功能描述：编码后不超过 maxBytes 字节的最长前缀的字符数
+	 * 
+	 * @param str
+	 *            CharSequence 字符串
+	 * @param maxBytes
+	 *            int 字节数上限
+	 * @return int 字符数，整个字符串都能放下时为 str.length()
+	 */
+	public int prefixLength(CharSequence str, int maxBytes) {
+		if (maxBytes <= 0) {
+			return 0;
+		}
+		CharBuffer in = CharBuffer.wrap(str);
+		encoder.reset();
+		int budget = maxBytes;
+		while (true) {
+			int window = Math.min(budget, MAX_BUFFER);
+			if (buffer.capacity() < window) {
+				buffer = ByteBuffer.allocate(Math.min(MAX_BUFFER, Math.max(
+						window, buffer.capacity() * 2)));
+			}
+			buffer.clear().limit(window);
+			CoderResult result = encoder.encode(in, buffer, true);
+			if (result.isUnderflow() || window == budget) {
+				// 全部编码完，或已到上限、下一个字符放不下
+				return in.position();
+			}
+			// 缓冲区满但未到上限，继续
+			budget -= buffer.position();
+		}
+	}
+
+	/**
+	 * 功能描述：编码后的字节数是否不超过 maxBytes
+	 * 
+	 * @param str
+	 *            CharSequence 字符串
+	 * @param maxBytes
+	 *            int 字节数上限
+	 * @return boolean
+	 */
+	public boolean fits(CharSequence str, int maxBytes) {
+		return prefixLength(str, maxBytes) == str.length();
+	}
+
+	/**
+	 * 功能描述：截断到不超过 maxBytes 字节
+	 * 
+	 * @param str
+	 *            String 字符串
+	 * @param maxBytes
+	 *            int 字节数上限
+	 * @return String 不需要截断时返回原字符串
+	 */
+	public String truncate(String str, int maxBytes) {
+		return str.substring(0, prefixLength(str, maxBytes));
+	}
+
+	/**
+	 * 功能描述：超过 maxBytes 字节时截断并加上后缀，结果连同后缀不超过 maxBytes 字节
+	 * 
+	 * @param str
+	 *            String 字符串
+	 * @param maxBytes
+	 *            int 字节数上限
+	 * @param suffix
+	 *            String 后缀，如 "..."
+	 * @return String 不需要截断时返回原字符串；maxBytes 小于后缀长度时只返回后缀
+	 */
+	public String truncate(String str, int maxBytes, String suffix) {
+		int length = prefixLength(str, maxBytes);
+		if (length == str.length()) {
+			return str;
+		}
+		int suffixBytes = maxBytes - prefixBytes(suffix);
+		int keep = suffixBytes <= 0 ? 0 : prefixLength(str, suffixBytes);
+		return new StringBuilder(keep + suffix.length()).append(str, 0, keep)
+				.append(suffix).toString();
+	}
+
+	/**
+	 * 后缀通常很短，直接编码计算
+	 */
+	private int prefixBytes(String suffix) {
+		return suffix.length() == 0 ? 0 : suffix.getBytes(charset).length;
+	}
+}
@@ -0,0 +1,231 @@
+package com.common;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * 功能描述：金额转换为中文大写，如 10019658.07 元转为 壹仟零壹万玖仟陆佰伍拾捌圆零角柒分
+ * 
+ * 以分为单位的 long 计算，绝对值小于 10^16 元（亿亿）时精确；查表直接写入调用方的字符数组或
+ * StringBuilder，不生成中间字符串。角分的写法与原 hangeToBig 相同：不为零时角、分都写出，为零时写“整”
+ * 
+ * 无状态，可在线程间共用
+ * 
+ * @author renms
+ * @version 1.0
+ */
+public final class ChineseAmountFormat {
+
+	/** 结果的最大字符数 */
+	public static final int MAX_LENGTH = 48;
+
+	/** 可转换金额（分）的绝对值上限，不含 */
+	public static final long LIMIT = 1000000000000000000L;
+
+	private static final char[] DIGITS = { '零', '壹', '贰', '叁', '肆', '伍',
+			'陆', '柒', '捌', '玖' };
+
+	/** 段内位置 */
+	private static final char[] UNITS = { 0, '拾', '佰', '仟' };
+
+	private static final long[] POW10 = new long[16];
+
+	private static final ThreadLocal<char[]> BUFFER = new ThreadLocal<char[]>() {
+		protected char[] initialValue() {
+			return new char[MAX_LENGTH];
+		}
+	};
+
+	static {
+		POW10[0] = 1;
+		for (int i = 1; i < POW10.length; i++) {
+			POW10[i] = POW10[i - 1] * 10;
+		}
+	}
+
+	private ChineseAmountFormat() {
+	}
+
+	/**
+	 * 功能描述：转换金额
+	 * 
+	 * @param fen
+	 *            long 金额（分）
+	 * @return String 中文大写
+	 */
+	public static String format(long fen) {
+		char[] buf = BUFFER.get();
+		return new String(buf, 0, format(fen, buf, 0));
+	}
+
+	/**
+	 * 功能描述：转换金额，追加到 out
+	 * 
+	 * @param fen
+	 *            long 金额（分）
+	 * @param out
+	 *            StringBuilder 结果
+	 */
+	public static void format(long fen, StringBuilder out) {
+		char[] buf = BUFFER.get();
+		out.append(buf, 0, format(fen, buf, 0));
+	}
+
+	/**
+	 * 功能描述：转换金额，写入字符数组
+	 * 
+	 * @param fen
+	 *            long 金额（分），绝对值小于 LIMIT
+	 * @param buf
+	 *            char[] 目标，自 offset 起须有 MAX_LENGTH 个字符的空间
+	 * @param offset
+	 *            int 起始位置
+	 * @return int 写入的字符数
+	 */
+	public static int format(long fen, char[] buf, int offset) {
+		if (fen <= -LIMIT || fen >= LIMIT) {
+			throw new IllegalArgumentException("Amount out of range: " + fen
+					+ " fen");
+		}
+		int pos = offset;
+		if (fen < 0) {
+			buf[pos++] = '负';
+			fen = -fen;
+		}
+		long yuan = fen / 100;
+		int cents = (int) (fen % 100);
+		if (yuan > 0) {
+			pos = writeYuan(yuan, buf, pos);
+		} else if (cents == 0) {
+			buf[pos++] = '零';
+			buf[pos++] = '圆';
+		}
+		if (cents == 0) {
+			buf[pos++] = '整';
+		} else {
+			buf[pos++] = DIGITS[cents / 10];
+			buf[pos++] = '角';
+			buf[pos++] = DIGITS[cents % 10];
+			buf[pos++] = '分';
+		}
+		return pos - offset;
+	}
+
+	/**
+	 * 功能描述：转换金额，按四舍五入保留到分
+	 * 
+	 * @param amount
+	 *            BigDecimal 金额（元）
+	 * @param out
+	 *            StringBuilder 结果
+	 */
+	public static void format(BigDecimal amount, StringBuilder out) {
+		format(toFen(amount), out);
+	}
+
+	/**
+	 * 功能描述：转换金额，按四舍五入保留到分
+	 * 
+	 * @param amount
+	 *            BigDecimal 金额（元）
+	 * @return String 中文大写
+	 */
+	public static String format(BigDecimal amount) {
+		return format(toFen(amount));
+	}
+
+	/**
+	 * 功能描述：批量转换
+	 * 
+	 * @param fens
+	 *            long[] 金额（分）
+	 * @param out
+	 *            String[] 结果，与 fens 等长
+	 */
+	public static void format(long[] fens, String[] out) {
+		if (out.length < fens.length) {
+			throw new IllegalArgumentException("Output length " + out.length
+					+ " < " + fens.length);
+		}
+		char[] buf = BUFFER.get();
+		for (int i = 0; i < fens.length; i++) {
+			out[i] = new String(buf, 0, format(fens[i], buf, 0));
+		}
+	}
+
+	/**
+	 * 功能描述：批量转换，结果依次追加到 out，以 separator 分隔
+	 * 
+	 * @param fens
+	 *            long[] 金额（分）
+	 * @param out
+	 *            StringBuilder 结果
+	 * @param separator
+	 *            char 分隔符
+	 */
+	public static void format(long[] fens, StringBuilder out, char separator) {
+		char[] buf = BUFFER.get();
+		for (int i = 0; i < fens.length; i++) {
+			if (i > 0) {
+				out.append(separator);
+			}
+			out.append(buf, 0, format(fens[i], buf, 0));
+		}
+	}
+
+	/**
+	 * 功能描述：元转为分，四舍五入
+	 * 
+	 * @param amount
+	 *            BigDecimal 金额（元）
+	 * @return long 分
+	 */
+	public static long toFen(BigDecimal amount) {
+		BigDecimal fen = amount.setScale(2, RoundingMode.HALF_UP)
+				.movePointRight(2);
+		if (fen.abs().compareTo(BigDecimal.valueOf(LIMIT)) >= 0) {
+			throw new IllegalArgumentException("Amount out of range: "
+					+ amount);
+		}
+		return fen.longValue();
+	}
+
+	/**
+	 * 从高位到低位逐位写出；连续的零只写一个“零”，且只在后面还有非零数字时写出；
+	 * 段名万、亿只在所辖数字不全为零时写出（如 壹万亿、壹仟万零壹亿）
+	 */
+	private static int writeYuan(long yuan, char[] buf, int pos) {
+		boolean started = false;
+		boolean zero = false;
+		for (int p = POW10.length - 1; p >= 0; p--) {
+			int d = (int) (yuan / POW10[p] % 10);
+			if (d == 0) {
+				zero = started;
+			} else {
+				if (zero) {
+					buf[pos++] = '零';
+					zero = false;
+				}
+				buf[pos++] = DIGITS[d];
+				if ((p & 3) != 0) {
+					buf[pos++] = UNITS[p & 3];
+				}
+				started = true;
+			}
+			// 段末的零由段名隔开，不再写“零”
+			if (p == 4 || p == 12) {
+				if (yuan / POW10[p] % 10000 != 0) {
+					buf[pos++] = '万';
+					zero = false;
+				}
+			} else if (p == 8) {
+				if (yuan / POW10[p] != 0) {
+					buf[pos++] = '亿';
+					zero = false;
+				}
+			}
+		}
+		buf[pos++] = '圆';
+		return pos;
+	}
+}
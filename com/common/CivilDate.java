@@ -0,0 +1,106 @@
+package com.common;
+
+/**
+ *
+ * 功能描述：公历日期与纪元日（1970-01-01 起的天数）之间的换算，纯整数运算，不创建对象
+ *
+ * 结果以 int 打包：年 << 9 | 月 << 5 | 日，年可为负
+ *
+ * @author renms
+ * @version 1.0
+ */
+final class CivilDate {
+
+	static final long MILLIS_PER_SECOND = 1000L;
+
+	static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+
+	static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+
+	static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+	/** 0000-03-01 到 1970-01-01 的天数 */
+	private static final long DAYS_0000_TO_1970 = 719468L;
+
+	/** 400年一个周期的天数 */
+	private static final long DAYS_PER_CYCLE = 146097L;
+
+	private CivilDate() {
+	}
+
+	/**
+	 * 功能描述：纪元日换算为打包的年月日
+	 *
+	 * @param epochDay
+	 *            long 1970-01-01 起的天数
+	 * @return int 年 << 9 | 月 << 5 | 日
+	 */
+	static int fromEpochDay(long epochDay) {
+		// 以3月1日为年首，闰日落在年末
+		long z = epochDay + DAYS_0000_TO_1970;
+		long era = Math.floorDiv(z, DAYS_PER_CYCLE);
+		long doe = z - era * DAYS_PER_CYCLE;
+		long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+		long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+		long mp = (5 * doy + 2) / 153;
+		int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+		int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+		int year = (int) (yoe + era * 400 + (month <= 2 ? 1 : 0));
+		return pack(year, month, day);
+	}
+
+	/**
+	 * 功能描述：年月日换算为纪元日，月、日须在合法范围内
+	 *
+	 * @param year
+	 *            int 年
+	 * @param month
+	 *            int 月，1-12
+	 * @param day
+	 *            int 日
+	 * @return long 1970-01-01 起的天数
+	 */
+	static long toEpochDay(int year, int month, int day) {
+		long y = month <= 2 ? year - 1L : year;
+		long era = Math.floorDiv(y, 400);
+		long yoe = y - era * 400;
+		long mp = month > 2 ? month - 3 : month + 9;
+		long doy = (153 * mp + 2) / 5 + day - 1;
+		long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+		return era * DAYS_PER_CYCLE + doe - DAYS_0000_TO_1970;
+	}
+
+	static int pack(int year, int month, int day) {
+		return (year << 9) | (month << 5) | day;
+	}
+
+	static int year(int packed) {
+		return packed >> 9;
+	}
+
+	static int month(int packed) {
+		return (packed >> 5) & 0xF;
+	}
+
+	static int day(int packed) {
+		return packed & 0x1F;
+	}
+
+	static boolean isLeapYear(long year) {
+		return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+	}
+
+	static int lengthOfMonth(int year, int month) {
+		switch (month) {
+		case 2:
+			return isLeapYear(year) ? 29 : 28;
+		case 4:
+		case 6:
+		case 9:
+		case 11:
+			return 30;
+		default:
+			return 31;
+		}
+	}
+}
@@ -0,0 +1,300 @@
+package com.common;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.TimeZone;
+
+/**
+ *
+ * 功能描述：按时区预先算好一段年份内每天的起始时刻、UTC偏移和年月日，
+ * 从毫秒取年、月、日、时等字段只需一次查表和几次整数运算，适合对大量时间戳按天、按月分组
+ *
+ * 超出预算范围的时间按时区规则现算，结果相同，只是慢一些；实例不可变，可在线程间共用
+ *
+ * @author renms
+ * @version 1.0
+ */
+public final class DateFieldTable {
+
+	public static final int DEFAULT_FROM_YEAR = 1970;
+
+	public static final int DEFAULT_TO_YEAR = 2069;
+
+	private final ZoneId zoneId;
+
+	private final ZoneRules rules;
+
+	private final int fromYear;
+
+	private final int toYear;
+
+	/** 第一天的纪元日 */
+	private final long firstDay;
+
+	/** 每天本地零点（或零点被跳过时当天第一个有效时刻）对应的UTC毫秒，多一个元素作为末尾边界 */
+	private final long[] dayStart;
+
+	/** 每天起始时刻的UTC偏移，毫秒 */
+	private final int[] startOffset;
+
+	/** 每天打包的年月日 */
+	private final int[] civil;
+
+	/** 当天内有偏移变化（夏令时切换等）的日子，按位记录 */
+	private final long[] transitionDays;
+
+	/**
+	 * 功能描述：按指定时区及默认年份范围建表
+	 *
+	 * @param timeZone
+	 *            TimeZone 时区
+	 */
+	public DateFieldTable(TimeZone timeZone) {
+		this(timeZone.toZoneId(), DEFAULT_FROM_YEAR, DEFAULT_TO_YEAR);
+	}
+
+	/**
+	 * 功能描述：按指定时区及年份范围建表，每年约占 6K 内存
+	 *
+	 * @param timeZone
+	 *            TimeZone 时区
+	 * @param fromYear
+	 *            int 起始年份
+	 * @param toYear
+	 *            int 结束年份（含）
+	 */
+	public DateFieldTable(TimeZone timeZone, int fromYear, int toYear) {
+		this(timeZone.toZoneId(), fromYear, toYear);
+	}
+
+	DateFieldTable(ZoneId zoneId, int fromYear, int toYear) {
+		if (fromYear > toYear) {
+			throw new IllegalArgumentException("fromYear " + fromYear
+					+ " > toYear " + toYear);
+		}
+		this.zoneId = zoneId;
+		this.rules = zoneId.getRules();
+		this.fromYear = fromYear;
+		this.toYear = toYear;
+		this.firstDay = CivilDate.toEpochDay(fromYear, 1, 1);
+		int days = (int) (CivilDate.toEpochDay(toYear + 1, 1, 1) - firstDay);
+		this.dayStart = new long[days + 1];
+		this.startOffset = new int[days + 1];
+		this.civil = new int[days];
+		this.transitionDays = new long[(days + 63) >>> 6];
+		for (int i = 0; i <= days; i++) {
+			long start = LocalDate.ofEpochDay(firstDay + i)
+					.atStartOfDay(zoneId).toInstant().toEpochMilli();
+			dayStart[i] = start;
+			startOffset[i] = offsetOf(start);
+		}
+		for (int i = 0; i < days; i++) {
+			civil[i] = CivilDate.fromEpochDay(firstDay + i);
+			if (startOffset[i] != offsetOf(dayStart[i + 1] - 1)) {
+				transitionDays[i >>> 6] |= 1L << i;
+			}
+		}
+	}
+
+	public TimeZone getTimeZone() {
+		return TimeZone.getTimeZone(zoneId);
+	}
+
+	public int getFromYear() {
+		return fromYear;
+	}
+
+	public int getToYear() {
+		return toYear;
+	}
+
+	/**
+	 * 功能描述：返回UTC偏移
+	 *
+	 * @param millis
+	 *            long 毫秒
+	 * @return long 偏移，毫秒
+	 */
+	public long getOffset(long millis) {
+		int index = indexOf(millis);
+		if (index < 0 || isTransitionDay(index)) {
+			return offsetOf(millis);
+		}
+		return startOffset[index];
+	}
+
+	/**
+	 * 功能描述：返回本地日期的纪元日（1970-01-01 起的天数）
+	 *
+	 * @param millis
+	 *            long 毫秒
+	 * @return long 纪元日
+	 */
+	public long getEpochDay(long millis) {
+		int index = indexOf(millis);
+		if (index < 0 || isTransitionDay(index)) {
+			return Math.floorDiv(millis + offsetOf(millis),
+					CivilDate.MILLIS_PER_DAY);
+		}
+		return firstDay + index;
+	}
+
+	public int getYear(long millis) {
+		return CivilDate.year(civilOf(millis));
+	}
+
+	/**
+	 * @return int 月份，1-12
+	 */
+	public int getMonth(long millis) {
+		return CivilDate.month(civilOf(millis));
+	}
+
+	public int getDay(long millis) {
+		return CivilDate.day(civilOf(millis));
+	}
+
+	public int getHour(long millis) {
+		return (int) (getMillisOfDay(millis) / CivilDate.MILLIS_PER_HOUR);
+	}
+
+	public int getMinute(long millis) {
+		return (int) (getMillisOfDay(millis) % CivilDate.MILLIS_PER_HOUR / CivilDate.MILLIS_PER_MINUTE);
+	}
+
+	public int getSecond(long millis) {
+		return (int) (getMillisOfDay(millis) % CivilDate.MILLIS_PER_MINUTE / CivilDate.MILLIS_PER_SECOND);
+	}
+
+	/**
+	 * 功能描述：返回本地时间当天已过的毫秒数
+	 *
+	 * @param millis
+	 *            long 毫秒
+	 * @return long 毫秒
+	 */
+	public long getMillisOfDay(long millis) {
+		return Math.floorMod(millis + getOffset(millis),
+				CivilDate.MILLIS_PER_DAY);
+	}
+
+	/**
+	 * 功能描述：返回 yyyyMMdd 形式的日期键，便于按天分组
+	 *
+	 * @param millis
+	 *            long 毫秒
+	 * @return int 如 20080719
+	 */
+	public int getDayKey(long millis) {
+		int c = civilOf(millis);
+		return CivilDate.year(c) * 10000 + CivilDate.month(c) * 100
+				+ CivilDate.day(c);
+	}
+
+	/**
+	 * 功能描述：返回 yyyyMM 形式的月份键，便于按月分组
+	 *
+	 * @param millis
+	 *            long 毫秒
+	 * @return int 如 200807
+	 */
+	public int getMonthKey(long millis) {
+		int c = civilOf(millis);
+		return CivilDate.year(c) * 100 + CivilDate.month(c);
+	}
+
+	/**
+	 * 功能描述：批量取年份，out 的长度须不小于 millis
+	 *
+	 * @param millis
+	 *            long[] 毫秒
+	 * @param out
+	 *            int[] 结果
+	 */
+	public void getYears(long[] millis, int[] out) {
+		for (int i = 0; i < millis.length; i++) {
+			out[i] = CivilDate.year(civilOf(millis[i]));
+		}
+	}
+
+	public void getMonths(long[] millis, int[] out) {
+		for (int i = 0; i < millis.length; i++) {
+			out[i] = CivilDate.month(civilOf(millis[i]));
+		}
+	}
+
+	public void getDays(long[] millis, int[] out) {
+		for (int i = 0; i < millis.length; i++) {
+			out[i] = CivilDate.day(civilOf(millis[i]));
+		}
+	}
+
+	public void getHours(long[] millis, int[] out) {
+		for (int i = 0; i < millis.length; i++) {
+			out[i] = getHour(millis[i]);
+		}
+	}
+
+	public void getEpochDays(long[] millis, long[] out) {
+		for (int i = 0; i < millis.length; i++) {
+			out[i] = getEpochDay(millis[i]);
+		}
+	}
+
+	public void getDayKeys(long[] millis, int[] out) {
+		for (int i = 0; i < millis.length; i++) {
+			out[i] = getDayKey(millis[i]);
+		}
+	}
+
+	public void getMonthKeys(long[] millis, int[] out) {
+		for (int i = 0; i < millis.length; i++) {
+			out[i] = getMonthKey(millis[i]);
+		}
+	}
+
+	/**
+	 * 打包的本地年月日
+	 */
+	int civilOf(long millis) {
+		int index = indexOf(millis);
+		// 零点回拨时重复的那段本地时间属于前一天，切换日一律现算
+		if (index < 0 || isTransitionDay(index)) {
+			return CivilDate.fromEpochDay(Math.floorDiv(millis
+					+ offsetOf(millis), CivilDate.MILLIS_PER_DAY));
+		}
+		return civil[index];
+	}
+
+	private boolean isTransitionDay(int index) {
+		return (transitionDays[index >>> 6] & (1L << index)) != 0;
+	}
+
+	/**
+	 * 时刻所在的本地日在表中的下标，不在范围内时返回-1
+	 */
+	private int indexOf(long millis) {
+		int days = civil.length;
+		if (millis < dayStart[0] || millis >= dayStart[days]) {
+			return -1;
+		}
+		// 估算的下标一般至多差一；偏移变化达一天时（如整天被跳过）要多走几步
+		int index = (int) ((millis - dayStart[0]) / CivilDate.MILLIS_PER_DAY);
+		if (index >= days) {
+			index = days - 1;
+		}
+		while (millis < dayStart[index]) {
+			index--;
+		}
+		while (millis >= dayStart[index + 1]) {
+			index++;
+		}
+		return index;
+	}
+
+	private int offsetOf(long millis) {
+		return rules.getOffset(Instant.ofEpochMilli(millis)).getTotalSeconds() * 1000;
+	}
+}
@@ -0,0 +1,270 @@
+package com.common;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ *
+ * 功能描述：按周、月、季度、年划分的日期区间，直接以纪元日（1970-01-01 起的天数）计算，不经过字符串
+ *
+ * 每种区间有连续的序号（index），两个日期的序号之差即相隔的区间数，可直接作为分桶下标；
+ * 周从星期一开始，周序号按 ISO 周年标注
+ *
+ * @author renms
+ * @version 1.0
+ */
+public final class DatePeriod implements Comparable<DatePeriod> {
+
+	public enum Unit {
+		WEEK, MONTH, QUARTER, YEAR
+	}
+
+	/** 1970-01-05，纪元后第一个星期一 */
+	private static final long FIRST_MONDAY = 4;
+
+	private static final int EPOCH_YEAR = 1970;
+
+	private final Unit unit;
+
+	private final long index;
+
+	private final long firstDay;
+
+	private final long lastDay;
+
+	private DatePeriod(Unit unit, long index) {
+		this.unit = unit;
+		this.index = index;
+		this.firstDay = startOf(unit, index);
+		this.lastDay = startOf(unit, index + 1) - 1;
+	}
+
+	/**
+	 * 功能描述：取得包含某天的区间
+	 *
+	 * @param unit
+	 *            Unit 区间类型
+	 * @param epochDay
+	 *            long 纪元日
+	 * @return DatePeriod 区间
+	 */
+	public static DatePeriod of(Unit unit, long epochDay) {
+		return new DatePeriod(unit, index(unit, epochDay));
+	}
+
+	/**
+	 * 功能描述：取得包含某日期的区间，按 DateUtil 的时区取本地日期
+	 *
+	 * @param unit
+	 *            Unit 区间类型
+	 * @param date
+	 *            Date 日期
+	 * @return DatePeriod 区间
+	 */
+	public static DatePeriod of(Unit unit, Date date) {
+		return of(unit, DateUtil.getEpochDay(date));
+	}
+
+	/**
+	 * 功能描述：按序号取得区间
+	 *
+	 * @param unit
+	 *            Unit 区间类型
+	 * @param index
+	 *            long 序号，见 index(Unit, long)
+	 * @return DatePeriod 区间
+	 */
+	public static DatePeriod ofIndex(Unit unit, long index) {
+		return new DatePeriod(unit, index);
+	}
+
+	/**
+	 * 功能描述：某天所在区间的序号，1970-01（1970年第一季度、1970年、1970-01-05 所在周）为0
+	 *
+	 * @param unit
+	 *            Unit 区间类型
+	 * @param epochDay
+	 *            long 纪元日
+	 * @return long 序号
+	 */
+	public static long index(Unit unit, long epochDay) {
+		if (unit == Unit.WEEK) {
+			return Math.floorDiv(epochDay - FIRST_MONDAY, 7L);
+		}
+		int c = CivilDate.fromEpochDay(epochDay);
+		long year = CivilDate.year(c) - EPOCH_YEAR;
+		int month = CivilDate.month(c) - 1;
+		switch (unit) {
+		case MONTH:
+			return year * 12 + month;
+		case QUARTER:
+			return year * 4 + month / 3;
+		default:
+			return year;
+		}
+	}
+
+	/**
+	 * 功能描述：序号对应区间的第一天
+	 *
+	 * @param unit
+	 *            Unit 区间类型
+	 * @param index
+	 *            long 序号
+	 * @return long 纪元日
+	 */
+	public static long startOf(Unit unit, long index) {
+		long months;
+		switch (unit) {
+		case WEEK:
+			return index * 7 + FIRST_MONDAY;
+		case MONTH:
+			months = index;
+			break;
+		case QUARTER:
+			months = index * 3;
+			break;
+		default:
+			months = index * 12;
+		}
+		int year = (int) (Math.floorDiv(months, 12L) + EPOCH_YEAR);
+		int month = (int) Math.floorMod(months, 12L) + 1;
+		return CivilDate.toEpochDay(year, month, 1);
+	}
+
+	/**
+	 * 功能描述：与区间 [fromDay, toDay] 相交的各个区间，按时间顺序
+	 *
+	 * @param unit
+	 *            Unit 区间类型
+	 * @param fromDay
+	 *            long 起始纪元日
+	 * @param toDay
+	 *            long 结束纪元日（含）
+	 * @return Iterable 区间序列，toDay 早于 fromDay 时为空
+	 */
+	public static Iterable<DatePeriod> between(final Unit unit,
+			final long fromDay, final long toDay) {
+		final long first = index(unit, fromDay);
+		final long last = toDay < fromDay ? first - 1 : index(unit, toDay);
+		return new Iterable<DatePeriod>() {
+			public Iterator<DatePeriod> iterator() {
+				return new Iterator<DatePeriod>() {
+					private long next = first;
+
+					public boolean hasNext() {
+						return next <= last;
+					}
+
+					public DatePeriod next() {
+						if (next > last) {
+							throw new NoSuchElementException();
+						}
+						return new DatePeriod(unit, next++);
+					}
+
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	public Unit getUnit() {
+		return unit;
+	}
+
+	public long getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return long 第一天的纪元日
+	 */
+	public long getFirstDay() {
+		return firstDay;
+	}
+
+	/**
+	 * @return long 最后一天的纪元日
+	 */
+	public long getLastDay() {
+		return lastDay;
+	}
+
+	public int getDays() {
+		return (int) (lastDay - firstDay + 1);
+	}
+
+	/**
+	 * @return Date 第一天零点
+	 */
+	public Date getStart() {
+		return DateUtil.toDate(firstDay);
+	}
+
+	/**
+	 * @return Date 下一区间第一天零点，区间不含此时刻，适合作为查询的上界
+	 */
+	public Date getEnd() {
+		return DateUtil.toDate(lastDay + 1);
+	}
+
+	public boolean contains(long epochDay) {
+		return epochDay >= firstDay && epochDay <= lastDay;
+	}
+
+	public DatePeriod next() {
+		return new DatePeriod(unit, index + 1);
+	}
+
+	public DatePeriod previous() {
+		return new DatePeriod(unit, index - 1);
+	}
+
+	public DatePeriod plus(long periods) {
+		return new DatePeriod(unit, index + periods);
+	}
+
+	public int compareTo(DatePeriod other) {
+		int c = unit.compareTo(other.unit);
+		return c != 0 ? c : Long.compare(index, other.index);
+	}
+
+	public boolean equals(Object obj) {
+		if (!(obj instanceof DatePeriod)) {
+			return false;
+		}
+		DatePeriod other = (DatePeriod) obj;
+		return unit == other.unit && index == other.index;
+	}
+
+	public int hashCode() {
+		return unit.hashCode() * 31 + Long.hashCode(index);
+	}
+
+	/**
+	 * 如 2008-W29、2008-07、2008-Q3、2008
+	 */
+	public String toString() {
+		int c = CivilDate.fromEpochDay(firstDay);
+		int year = CivilDate.year(c);
+		switch (unit) {
+		case WEEK:
+			// ISO 周：所在周的星期四属于哪年即为哪年的第几周
+			int thursday = CivilDate.fromEpochDay(firstDay + 3);
+			int weekYear = CivilDate.year(thursday);
+			long week = (firstDay + 3 - CivilDate.toEpochDay(weekYear, 1, 1)) / 7 + 1;
+			return weekYear + (week < 10 ? "-W0" : "-W") + week;
+		case MONTH:
+			int month = CivilDate.month(c);
+			return year + (month < 10 ? "-0" : "-") + month;
+		case QUARTER:
+			return year + "-Q" + ((CivilDate.month(c) - 1) / 3 + 1);
+		default:
+			return String.valueOf(year);
+		}
+	}
+}
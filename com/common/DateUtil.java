@@ -1,13 +1,34 @@
 package com.common;
 
+import java.nio.charset.StandardCharsets;
 import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.text.ParsePosition;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.ResolverStyle;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQueries;
+import java.time.zone.ZoneRules;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * 
- * 功能描述：
+ * 功能描述：日期工具，基于 java.time，各方法无共享可变状态，可并发调用
+ * 
+ * 格式串沿用 SimpleDateFormat 的写法，解析时宽松处理（月、日可为一位数，超出范围的值顺延）
  * 
  * @author Administrator
  * @Date Jul 19, 2008
@@ -16,12 +37,31 @@ import java.util.Date;
  */
 public class DateUtil {
 
+	/** @deprecated 多线程下不安全，已不再使用，始终为null */
+	@Deprecated
 	public static Date date = null;
 
+	/** @deprecated 多线程下不安全，已不再使用，始终为null */
+	@Deprecated
 	public static DateFormat dateFormat = null;
 
+	/** @deprecated 多线程下不安全，已不再使用，始终为null */
+	@Deprecated
 	public static Calendar calendar = null;
 
+	/** 缓存的格式数上限，超出后新格式每次现建，防止动态拼接的格式撑满内存 */
+	static final int MAX_CACHED_FORMATTERS = 256;
+
+	private static final ConcurrentHashMap<String, DateTimeFormatter> FORMATTERS = new ConcurrentHashMap<String, DateTimeFormatter>();
+
+	private static volatile Zone zone = new Zone(ZoneId.systemDefault());
+
+	/** 批量解析中无法解析的值 */
+	public static final long INVALID_MILLIS = Long.MIN_VALUE;
+
+	/** 批量转换超过此数量时拆分到 ForkJoinPool 并行处理 */
+	static final int PARALLEL_THRESHOLD = 8192;
+
 	/**
 	 * 功能描述：格式化日期
 	 * 
@@ -32,17 +72,83 @@ public class DateUtil {
 	 * @return Date 日期
 	 */
 	public static Date parseDate(String dateStr, String format) {
+		long millis = parseMillis(dateStr, format);
+		return millis == INVALID_MILLIS ? null : new Date(millis);
+	}
+
+	private static long parseMillis(String dateStr, String format) {
 		try {
-			dateFormat = new SimpleDateFormat(format);
-			String dt = dateStr.replaceAll("-", "/");
-			if ((!dt.equals("")) && (dt.length() < format.length())) {
-				dt += format.substring(dt.length()).replaceAll("[YyMmDdHhSs]",
-						"0");
+			FixedDateFormat fixed = FixedDateFormat.forPattern(format);
+			if (fixed != null) {
+				long millis = fixed.parse(dateStr);
+				if (millis != FixedDateFormat.INVALID) {
+					return millis;
+				}
+			}
+			// - 与 / 视为同一分隔符
+			String dt = dateStr.replace('-', '/');
+			String pattern = format.replace('-', '/');
+			if ((!dt.equals("")) && (dt.length() < pattern.length())) {
+				dt = pad(dt, pattern);
 			}
-			date = (Date) dateFormat.parse(dt);
+			return toMillis(formatter(pattern).parse(dt, new ParsePosition(0)));
 		} catch (Exception e) {
 		}
-		return date;
+		return INVALID_MILLIS;
+	}
+
+	/**
+	 * 功能描述：解析ASCII字节中的日期，适合直接处理读入的日志、数据文件，规则同 parseDate(String, String)
+	 * 
+	 * @param bytes
+	 *            byte[] 字节
+	 * @param offset
+	 *            int 起始位置
+	 * @param length
+	 *            int 长度
+	 * @param format
+	 *            String 格式
+	 * @return Date 日期，解析失败时返回null
+	 */
+	public static Date parseDate(byte[] bytes, int offset, int length,
+			String format) {
+		FixedDateFormat fixed = FixedDateFormat.forPattern(format);
+		if (fixed != null) {
+			long millis = fixed.parse(bytes, offset, length);
+			if (millis != FixedDateFormat.INVALID) {
+				return new Date(millis);
+			}
+		}
+		return parseDate(new String(bytes, offset, length,
+				StandardCharsets.ISO_8859_1), format);
+	}
+
+	/**
+	 * 不足格式长度的部分以格式中对应位置的内容补齐，日期时间字母补为 0
+	 */
+	private static String pad(String dt, String pattern) {
+		StringBuilder sb = new StringBuilder(pattern.length());
+		sb.append(dt);
+		for (int i = dt.length(); i < pattern.length(); i++) {
+			char c = pattern.charAt(i);
+			switch (c) {
+			case 'Y':
+			case 'y':
+			case 'M':
+			case 'm':
+			case 'D':
+			case 'd':
+			case 'H':
+			case 'h':
+			case 'S':
+			case 's':
+				sb.append('0');
+				break;
+			default:
+				sb.append(c);
+			}
+		}
+		return sb.toString();
 	}
 
 	/**
@@ -69,8 +175,7 @@ public class DateUtil {
 		String result = "";
 		try {
 			if (date != null) {
-				dateFormat = new SimpleDateFormat(format);
-				result = dateFormat.format(date);
+				result = formatMillis(date.getTime(), format);
 			}
 		} catch (Exception e) {
 		}
@@ -96,9 +201,7 @@ public class DateUtil {
 	 * @return 返回年份
 	 */
 	public static int getYear(Date date) {
-		calendar = Calendar.getInstance();
-		calendar.setTime(date);
-		return calendar.get(Calendar.YEAR);
+		return CivilDate.year(civil(date.getTime()));
 	}
 
 	/**
@@ -109,9 +212,7 @@ public class DateUtil {
 	 * @return 返回月份
 	 */
 	public static int getMonth(Date date) {
-		calendar = Calendar.getInstance();
-		calendar.setTime(date);
-		return calendar.get(Calendar.MONTH) + 1;
+		return CivilDate.month(civil(date.getTime()));
 	}
 
 	/**
@@ -122,9 +223,7 @@ public class DateUtil {
 	 * @return 返回日份
 	 */
 	public static int getDay(Date date) {
-		calendar = Calendar.getInstance();
-		calendar.setTime(date);
-		return calendar.get(Calendar.DAY_OF_MONTH);
+		return CivilDate.day(civil(date.getTime()));
 	}
 
 	/**
@@ -135,9 +234,7 @@ public class DateUtil {
 	 * @return 返回小时
 	 */
 	public static int getHour(Date date) {
-		calendar = Calendar.getInstance();
-		calendar.setTime(date);
-		return calendar.get(Calendar.HOUR_OF_DAY);
+		return (int) (millisOfDay(date.getTime()) / CivilDate.MILLIS_PER_HOUR);
 	}
 
 	/**
@@ -148,9 +245,7 @@ public class DateUtil {
 	 * @return 返回分钟
 	 */
 	public static int getMinute(Date date) {
-		calendar = Calendar.getInstance();
-		calendar.setTime(date);
-		return calendar.get(Calendar.MINUTE);
+		return (int) (millisOfDay(date.getTime()) % CivilDate.MILLIS_PER_HOUR / CivilDate.MILLIS_PER_MINUTE);
 	}
 
 	/**
@@ -161,9 +256,7 @@ public class DateUtil {
 	 * @return 返回秒钟
 	 */
 	public static int getSecond(Date date) {
-		calendar = Calendar.getInstance();
-		calendar.setTime(date);
-		return calendar.get(Calendar.SECOND);
+		return (int) (millisOfDay(date.getTime()) % CivilDate.MILLIS_PER_MINUTE / CivilDate.MILLIS_PER_SECOND);
 	}
 
 	/**
@@ -174,9 +267,7 @@ public class DateUtil {
 	 * @return 返回毫秒
 	 */
 	public static long getMillis(Date date) {
-		calendar = Calendar.getInstance();
-		calendar.setTime(date);
-		return calendar.getTimeInMillis();
+		return date.getTime();
 	}
 
 	/**
@@ -213,7 +304,8 @@ public class DateUtil {
 	}
 
 	/**
-	 * 功能描述：日期相加
+	 * 功能描述：日期相加，按本地日历加天数并保留时刻，跨夏令时切换时仍落在同一钟点；
+	 * 结果落在夏令时重叠的钟点时保持原日期的偏移，与 Calendar.add 一致
 	 * 
 	 * @param date
 	 *            Date 日期
@@ -222,14 +314,15 @@ public class DateUtil {
 	 * @return 返回相加后的日期
 	 */
 	public static Date addDate(Date date, int day) {
-		calendar = Calendar.getInstance();
-		long millis = getMillis(date) + ((long) day) * 24 * 3600 * 1000;
-		calendar.setTimeInMillis(millis);
-		return calendar.getTime();
+		long millis = getMillis(date);
+		long local = localMillis(millis);
+		long epochDay = Math.floorDiv(local, CivilDate.MILLIS_PER_DAY);
+		return new Date(toMillis(epochDay + day, local - epochDay
+				* CivilDate.MILLIS_PER_DAY, local - millis));
 	}
 
 	/**
-	 * 功能描述：日期相减
+	 * 功能描述：日期相减，按本地时间计算相差的整天数（不足一天的部分舍去）
 	 * 
 	 * @param date
 	 *            Date 日期
@@ -238,7 +331,50 @@ public class DateUtil {
 	 * @return 返回相减后的日期
 	 */
 	public static int diffDate(Date date, Date date1) {
-		return (int) ((getMillis(date) - getMillis(date1)) / (24 * 3600 * 1000));
+		return (int) ((localMillis(getMillis(date)) - localMillis(getMillis(date1))) / CivilDate.MILLIS_PER_DAY);
+	}
+
+	/**
+	 * 功能描述：月份相加，日超出目标月天数时取目标月最后一天，保留时刻；夏令时重叠时同 addDate
+	 * 
+	 * @param date
+	 *            Date 日期
+	 * @param month
+	 *            int 月数
+	 * @return 返回相加后的日期
+	 */
+	public static Date addMonth(Date date, int month) {
+		long millis = getMillis(date);
+		long local = localMillis(millis);
+		long epochDay = Math.floorDiv(local, CivilDate.MILLIS_PER_DAY);
+		return new Date(toMillis(BusinessCalendar.addMonths(epochDay, month),
+				local - epochDay * CivilDate.MILLIS_PER_DAY, local - millis));
+	}
+
+	/**
+	 * 功能描述：返回本地日期的纪元日（1970-01-01 起的天数），用于 BusinessCalendar 等按天的计算
+	 * 
+	 * @param date
+	 *            Date 日期
+	 * @return long 纪元日
+	 */
+	public static long getEpochDay(Date date) {
+		return getEpochDay(getMillis(date));
+	}
+
+	static long getEpochDay(long millis) {
+		return Math.floorDiv(localMillis(millis), CivilDate.MILLIS_PER_DAY);
+	}
+
+	/**
+	 * 功能描述：纪元日换算为当天零点的日期
+	 * 
+	 * @param epochDay
+	 *            long 纪元日
+	 * @return Date 日期
+	 */
+	public static Date toDate(long epochDay) {
+		return new Date(toMillis(epochDay, 0));
 	}
 
 	/**
@@ -249,8 +385,11 @@ public class DateUtil {
 	 * @return String yyyy-MM-dd 格式
 	 */
 	public static String getMonthBegin(String strdate) {
-		date = parseDate(strdate);
-		return format(date, "yyyy-MM") + "-01";
+		long millis = parseMillis(strdate, "yyyy/MM/dd");
+		if (millis == INVALID_MILLIS) {
+			return "-01";
+		}
+		return formatDay(BusinessCalendar.startOfMonth(getEpochDay(millis)));
 	}
 
 	/**
@@ -261,12 +400,20 @@ public class DateUtil {
 	 * @return String 日期字符串 yyyy-MM-dd格式
 	 */
 	public static String getMonthEnd(String strdate) {
-		date = parseDate(getMonthBegin(strdate));
-		calendar = Calendar.getInstance();
-		calendar.setTime(date);
-		calendar.add(Calendar.MONTH, 1);
-		calendar.add(Calendar.DAY_OF_YEAR, -1);
-		return formatDate(calendar.getTime());
+		long millis = parseMillis(strdate, "yyyy/MM/dd");
+		if (millis == INVALID_MILLIS) {
+			return "";
+		}
+		return formatDay(BusinessCalendar.endOfMonth(getEpochDay(millis)));
+	}
+
+	/**
+	 * 纪元日按 yyyy-MM-dd 格式化
+	 */
+	private static String formatDay(long epochDay) {
+		String result = FixedDateFormat.forPattern("yyyy-MM-dd").formatDay(
+				epochDay);
+		return result != null ? result : formatDate(toDate(epochDay));
 	}
 
 	/**
@@ -293,8 +440,7 @@ public class DateUtil {
 		String result = "";
 		if (date != null) {
 			try {
-				SimpleDateFormat sdf = new SimpleDateFormat(format);
-				result = sdf.format(date);
+				result = formatMillis(date.getTime(), format);
 			} catch (Exception ex) {
 				ex.printStackTrace();
 			}
@@ -302,6 +448,412 @@ public class DateUtil {
 		return result;
 	}
 
+	/**
+	 * 功能描述：批量格式化毫秒值，数量大时并行处理
+	 * 
+	 * @param millis
+	 *            long[] 毫秒
+	 * @param format
+	 *            String 格式
+	 * @return String[] 字符型日期
+	 */
+	public static String[] format(long[] millis, String format) {
+		String[] out = new String[millis.length];
+		format(millis, format, out);
+		return out;
+	}
+
+	/**
+	 * 功能描述：批量格式化毫秒值到 out 的对应位置，数量大时并行处理
+	 * 
+	 * @param millis
+	 *            long[] 毫秒
+	 * @param format
+	 *            String 格式
+	 * @param out
+	 *            String[] 结果，长度不小于 millis
+	 */
+	public static void format(final long[] millis, final String format,
+			final String[] out) {
+		checkCapacity(millis.length, out.length);
+		final FixedDateFormat fixed = FixedDateFormat.forPattern(format);
+		forEachRange(millis.length, new Range() {
+			public void apply(int from, int to) {
+				if (fixed != null) {
+					char[] buf = new char[fixed.length()];
+					for (int i = from; i < to; i++) {
+						int n = fixed.format(millis[i], buf, 0);
+						out[i] = n < 0 ? formatMillis(millis[i], format)
+								: new String(buf, 0, n);
+					}
+				} else {
+					for (int i = from; i < to; i++) {
+						out[i] = formatMillis(millis[i], format);
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * 功能描述：按定宽格式（yyyy-MM-dd、yyyy/MM/dd 及其后接 HH:mm:ss）批量格式化到字符数组，
+	 * 第 i 个值写在 offset + i * 格式长度 处，不为每个值创建对象
+	 * 
+	 * @param millis
+	 *            long[] 毫秒
+	 * @param format
+	 *            String 格式
+	 * @param out
+	 *            char[] 结果
+	 * @param offset
+	 *            int 起始位置
+	 * @return int 写入的字符数
+	 */
+	public static int format(final long[] millis, final String format,
+			final char[] out, final int offset) {
+		final FixedDateFormat fixed = FixedDateFormat.forPattern(format);
+		if (fixed == null) {
+			throw new IllegalArgumentException("Not a fixed-width pattern: "
+					+ format);
+		}
+		final int width = fixed.length();
+		checkCapacity((long) millis.length * width, out.length - offset);
+		forEachRange(millis.length, new Range() {
+			public void apply(int from, int to) {
+				for (int i = from; i < to; i++) {
+					int at = offset + i * width;
+					if (fixed.format(millis[i], out, at) < 0) {
+						String s = formatMillis(millis[i], format);
+						if (s.length() != width) {
+							throw new IllegalArgumentException("Date "
+									+ millis[i] + " does not fit " + format);
+						}
+						s.getChars(0, width, out, at);
+					}
+				}
+			}
+		});
+		return millis.length * width;
+	}
+
+	/**
+	 * 功能描述：批量解析，规则同 parseDate(String, String)，数量大时并行处理
+	 * 
+	 * @param values
+	 *            CharSequence[] 字符型日期
+	 * @param format
+	 *            String 格式
+	 * @param out
+	 *            long[] 毫秒，长度不小于 values；无法解析的值为 INVALID_MILLIS
+	 * @return int 无法解析的个数
+	 */
+	public static int parseDates(final CharSequence[] values,
+			final String format, final long[] out) {
+		checkCapacity(values.length, out.length);
+		final FixedDateFormat fixed = FixedDateFormat.forPattern(format);
+		forEachRange(values.length, new Range() {
+			public void apply(int from, int to) {
+				for (int i = from; i < to; i++) {
+					CharSequence value = values[i];
+					long millis = INVALID_MILLIS;
+					if (value != null) {
+						if (fixed != null) {
+							millis = fixed.parse(value);
+						}
+						if (millis == INVALID_MILLIS) {
+							millis = parseMillis(value.toString(), format);
+						}
+					}
+					out[i] = millis;
+				}
+			}
+		});
+		int invalid = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (out[i] == INVALID_MILLIS) {
+				invalid++;
+			}
+		}
+		return invalid;
+	}
+
+	/**
+	 * 功能描述：设置日期换算所用的时区，默认为启动时的系统时区
+	 * 
+	 * @param timeZone
+	 *            TimeZone 时区，为null时取当前系统时区
+	 */
+	public static void setTimeZone(TimeZone timeZone) {
+		zone = new Zone(timeZone == null ? ZoneId.systemDefault() : timeZone
+				.toZoneId());
+	}
+
+	/**
+	 * 功能描述：返回日期换算所用的时区
+	 * 
+	 * @return TimeZone 时区
+	 */
+	public static TimeZone getTimeZone() {
+		return TimeZone.getTimeZone(zone.id);
+	}
+
+	/**
+	 * 功能描述：返回当前时区的日期字段表，可用其批量提取年、月、日等字段
+	 * 
+	 * @return DateFieldTable 日期字段表，首次调用时建立
+	 */
+	public static DateFieldTable getFieldTable() {
+		return zone.table();
+	}
+
+	/**
+	 * 取得格式串对应的 DateTimeFormatter，不可变，可在线程间共用
+	 */
+	static DateTimeFormatter formatter(String pattern) {
+		DateTimeFormatter formatter = FORMATTERS.get(pattern);
+		if (formatter == null) {
+			formatter = new DateTimeFormatterBuilder().parseCaseInsensitive()
+					.parseLenient().appendPattern(pattern).toFormatter(
+							Locale.getDefault()).withResolverStyle(
+							ResolverStyle.LENIENT);
+			if (FORMATTERS.size() < MAX_CACHED_FORMATTERS) {
+				DateTimeFormatter existing = FORMATTERS.putIfAbsent(pattern,
+						formatter);
+				if (existing != null) {
+					formatter = existing;
+				}
+			}
+		}
+		return formatter;
+	}
+
+	/**
+	 * 解析结果换算为毫秒，格式中没有的字段按 1970-01-01 00:00:00 补齐
+	 */
+	static long toMillis(TemporalAccessor parsed) {
+		long epochDay;
+		LocalDate localDate = parsed.query(TemporalQueries.localDate());
+		if (localDate != null) {
+			epochDay = localDate.toEpochDay();
+		} else {
+			// 只有部分日期字段时逐个补齐，月、日超出范围时顺延
+			long year = field(parsed, ChronoField.YEAR, field(parsed,
+					ChronoField.YEAR_OF_ERA, 1970));
+			long month = field(parsed, ChronoField.MONTH_OF_YEAR, 1);
+			long day = field(parsed, ChronoField.DAY_OF_MONTH, 1);
+			year += Math.floorDiv(month - 1, 12);
+			month = Math.floorMod(month - 1, 12) + 1;
+			epochDay = CivilDate.toEpochDay((int) year, (int) month, 1) + day
+					- 1;
+		}
+		long millisOfDay;
+		LocalTime localTime = parsed.query(TemporalQueries.localTime());
+		if (localTime != null) {
+			millisOfDay = localTime.toNanoOfDay() / 1000000L;
+		} else {
+			long hour = field(parsed, ChronoField.HOUR_OF_DAY, -1);
+			if (hour < 0) {
+				hour = field(parsed, ChronoField.HOUR_OF_AMPM, 0)
+						+ field(parsed, ChronoField.AMPM_OF_DAY, 0) * 12;
+			}
+			millisOfDay = hour * CivilDate.MILLIS_PER_HOUR
+					+ field(parsed, ChronoField.MINUTE_OF_HOUR, 0)
+					* CivilDate.MILLIS_PER_MINUTE
+					+ field(parsed, ChronoField.SECOND_OF_MINUTE, 0)
+					* CivilDate.MILLIS_PER_SECOND
+					+ field(parsed, ChronoField.MILLI_OF_SECOND, 0);
+		}
+		ZoneId parsedZone = parsed.query(TemporalQueries.zone());
+		if (parsedZone != null) {
+			long local = epochDay * CivilDate.MILLIS_PER_DAY + millisOfDay;
+			ZoneOffset offset = parsedZone instanceof ZoneOffset ? (ZoneOffset) parsedZone
+					: parsedZone.getRules().getOffset(
+							Instant.ofEpochMilli(local));
+			return local - offset.getTotalSeconds() * CivilDate.MILLIS_PER_SECOND;
+		}
+		return toMillis(epochDay, millisOfDay);
+	}
+
+	/**
+	 * 当前时区下某天某时刻对应的毫秒，用于解析等没有原始偏移可参照的场合：与 Calendar
+	 * 解析一致，夏令时重叠的时刻取标准时间，跳过的时刻按跳变前的偏移顺延
+	 */
+	static long toMillis(long epochDay, long millisOfDay) {
+		long local = epochDay * CivilDate.MILLIS_PER_DAY + millisOfDay;
+		Zone z = zone;
+		if (z.fixed) {
+			return local - z.fixedOffsetMillis;
+		}
+		// 前后一天的偏移相同时附近没有跳变
+		long before = z.offsetMillis(local - CivilDate.MILLIS_PER_DAY);
+		long after = z.offsetMillis(local + CivilDate.MILLIS_PER_DAY);
+		if (before == after) {
+			return local - before;
+		}
+		long small = Math.min(before, after);
+		long large = Math.max(before, after);
+		if (z.offsetMillis(local - small) == small
+				|| z.offsetMillis(local - large) != large) {
+			return local - small;
+		}
+		return local - large;
+	}
+
+	/**
+	 * 当前时区下某天某时刻对应的毫秒，用于日期加减：该时刻可按 preferredOffset 成立时
+	 * （包括夏令时重叠的两个偏移之一）沿用它，与 ZonedDateTime.plusDays 一致；否则同上
+	 */
+	static long toMillis(long epochDay, long millisOfDay, long preferredOffset) {
+		long local = epochDay * CivilDate.MILLIS_PER_DAY + millisOfDay;
+		if (zone.offsetMillis(local - preferredOffset) == preferredOffset) {
+			return local - preferredOffset;
+		}
+		return toMillis(epochDay, millisOfDay);
+	}
+
+	/**
+	 * 当前时区下的本地时刻，以毫秒计
+	 */
+	static long localMillis(long millis) {
+		return millis + zone.offsetMillis(millis);
+	}
+
+	/**
+	 * 当前时区下的纪元日换算为打包的年月日
+	 */
+	static int civil(long millis) {
+		Zone z = zone;
+		if (!z.fixed) {
+			return z.table().civilOf(millis);
+		}
+		return CivilDate.fromEpochDay(Math.floorDiv(millis
+				+ z.fixedOffsetMillis, CivilDate.MILLIS_PER_DAY));
+	}
+
+	/**
+	 * 当前时区下当天已过的毫秒数
+	 */
+	static long millisOfDay(long millis) {
+		return Math.floorMod(localMillis(millis), CivilDate.MILLIS_PER_DAY);
+	}
+
+	private static String formatMillis(long millis, String format) {
+		FixedDateFormat fixed = FixedDateFormat.forPattern(format);
+		if (fixed != null) {
+			String result = fixed.format(millis);
+			if (result != null) {
+				return result;
+			}
+		}
+		return formatter(format).format(zonedDateTime(millis));
+	}
+
+	private static void checkCapacity(long required, long capacity) {
+		if (capacity < required) {
+			throw new IllegalArgumentException("Output too small: "
+					+ capacity + " < " + required);
+		}
+	}
+
+	/**
+	 * 对 [0, length) 逐段执行，超过 PARALLEL_THRESHOLD 时拆分到公共 ForkJoinPool
+	 */
+	private static void forEachRange(int length, Range range) {
+		if (length < PARALLEL_THRESHOLD) {
+			range.apply(0, length);
+		} else {
+			ForkJoinPool.commonPool().invoke(new RangeTask(range, 0, length));
+		}
+	}
+
+	private interface Range {
+		void apply(int from, int to);
+	}
+
+	private static final class RangeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Range range;
+
+		private final int from;
+
+		private final int to;
+
+		RangeTask(Range range, int from, int to) {
+			this.range = range;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected void compute() {
+			if (to - from <= PARALLEL_THRESHOLD) {
+				range.apply(from, to);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new RangeTask(range, from, mid), new RangeTask(range,
+					mid, to));
+		}
+	}
+
+	private static ZonedDateTime zonedDateTime(long millis) {
+		return ZonedDateTime.ofInstant(Instant.ofEpochMilli(millis), zone.id);
+	}
+
+	private static long field(TemporalAccessor parsed, ChronoField field,
+			long defaultValue) {
+		return parsed.isSupported(field) ? parsed.getLong(field) : defaultValue;
+	}
+
+	/**
+	 * 时区及其规则，固定偏移的时区直接取缓存的偏移，其余查 DateFieldTable
+	 */
+	private static final class Zone {
+
+		final ZoneId id;
+
+		final ZoneRules rules;
+
+		final long fixedOffsetMillis;
+
+		final boolean fixed;
+
+		private volatile DateFieldTable table;
+
+		Zone(ZoneId id) {
+			this.id = id;
+			this.rules = id.getRules();
+			this.fixed = rules.isFixedOffset();
+			this.fixedOffsetMillis = fixed ? rules.getOffset(Instant.EPOCH)
+					.getTotalSeconds()
+					* CivilDate.MILLIS_PER_SECOND : 0;
+		}
+
+		long offsetMillis(long millis) {
+			if (fixed) {
+				return fixedOffsetMillis;
+			}
+			return table().getOffset(millis);
+		}
+
+		DateFieldTable table() {
+			DateFieldTable t = table;
+			if (t == null) {
+				synchronized (this) {
+					t = table;
+					if (t == null) {
+						t = new DateFieldTable(id,
+								DateFieldTable.DEFAULT_FROM_YEAR,
+								DateFieldTable.DEFAULT_TO_YEAR);
+						table = t;
+					}
+				}
+			}
+			return t;
+		}
+	}
+
 	public static void main(String[] args) {
 		Date d = new Date();
 		// System.out.println(d.toString());
@@ -0,0 +1,318 @@
+package com.common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 功能描述：按分隔符切分并去重，保持首次出现的顺序，用于标签、关键字列表
+ * 
+ * 精确模式：已出现的字段复制到内部字符池，用开放寻址的散列表记录其在池中的位置，
+ * 不为每个字段建 String；可连续处理多段文本，字段在各段之间也去重
+ * 
+ * 近似模式：只用布隆过滤器记录，内存固定，适合数据量很大的流；
+ * 会按设定的误判率把少量新字段当作重复丢弃，但不会放过重复的字段
+ * 
+ * 空字段（相邻的分隔符之间）忽略；对象不是线程安全的，可调用 reset 后重复使用
+ * 
+ * @author renms
+ * @version 1.0
+ */
+public final class DedupTokenizer {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final String separator;
+
+	/** 以下为精确模式所用 */
+	private char[] pool;
+
+	private int poolSize;
+
+	private int[] tokenStart;
+
+	private int[] tokenLength;
+
+	private int[] tokenHash;
+
+	/** 开放寻址表，存 字段序号+1，0 为空 */
+	private int[] table;
+
+	private int size;
+
+	/** 以下为近似模式所用，bloom 为null时为精确模式 */
+	private final long[] bloom;
+
+	private final int bloomMask;
+
+	private final int hashes;
+
+	/**
+	 * 功能描述：精确去重
+	 * 
+	 * @param separator
+	 *            String 分隔符，不能为空串
+	 */
+	public DedupTokenizer(String separator) {
+		this(separator, null, 0);
+	}
+
+	private DedupTokenizer(String separator, long[] bloom, int hashes) {
+		if (separator == null || separator.length() == 0) {
+			throw new IllegalArgumentException("Empty separator");
+		}
+		this.separator = separator;
+		this.bloom = bloom;
+		this.bloomMask = bloom == null ? 0 : (bloom.length << 6) - 1;
+		this.hashes = hashes;
+		reset();
+	}
+
+	/**
+	 * 功能描述：近似去重，按预计的不同字段数和误判率确定布隆过滤器的大小
+	 * 
+	 * @param separator
+	 *            String 分隔符，不能为空串
+	 * @param expectedTokens
+	 *            long 预计的不同字段数
+	 * @param falsePositiveRate
+	 *            double 新字段被误判为重复的概率，如 0.001
+	 * @return DedupTokenizer
+	 */
+	public static DedupTokenizer approximate(String separator,
+			long expectedTokens, double falsePositiveRate) {
+		if (expectedTokens <= 0 || falsePositiveRate <= 0
+				|| falsePositiveRate >= 1) {
+			throw new IllegalArgumentException("expectedTokens "
+					+ expectedTokens + ", falsePositiveRate "
+					+ falsePositiveRate);
+		}
+		double ln2 = Math.log(2);
+		double bits = -expectedTokens * Math.log(falsePositiveRate)
+				/ (ln2 * ln2);
+		// 取2的幂以便用位运算取下标，最多 2^31 位
+		long m = Long.highestOneBit((long) Math.min(Math.max(bits, 64),
+				1L << 31) - 1) << 1;
+		int k = (int) Math.round(m / (double) expectedTokens * ln2);
+		return new DedupTokenizer(separator, new long[(int) (m >>> 6)], Math
+				.max(1, Math.min(k, 16)));
+	}
+
+	/**
+	 * 功能描述：清除已记录的字段
+	 */
+	public void reset() {
+		size = 0;
+		poolSize = 0;
+		if (bloom != null) {
+			for (int i = 0; i < bloom.length; i++) {
+				bloom[i] = 0;
+			}
+			return;
+		}
+		pool = new char[INITIAL_CAPACITY * 8];
+		tokenStart = new int[INITIAL_CAPACITY];
+		tokenLength = new int[INITIAL_CAPACITY];
+		tokenHash = new int[INITIAL_CAPACITY];
+		table = new int[INITIAL_CAPACITY * 2];
+	}
+
+	public boolean isApproximate() {
+		return bloom != null;
+	}
+
+	/**
+	 * @return int 已记录的不同字段数（近似模式下为判为新字段的个数）
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * 功能描述：记录一个字段
+	 * 
+	 * @param text
+	 *            CharSequence 文本
+	 * @param start
+	 *            int 字段起点
+	 * @param end
+	 *            int 字段终点（不含）
+	 * @return boolean 首次出现返回true
+	 */
+	public boolean add(CharSequence text, int start, int end) {
+		long h = hash(text, start, end);
+		boolean added = bloom != null ? addBloom(h) : addExact(text, start,
+				end, (int) h);
+		if (added) {
+			size++;
+		}
+		return added;
+	}
+
+	public boolean add(CharSequence token) {
+		return add(token, 0, token.length());
+	}
+
+	/**
+	 * 功能描述：切分文本并去重，首次出现的字段以分隔符连接后追加到 out，
+	 * 之前各次调用中出现过的字段也视为重复
+	 * 
+	 * @param text
+	 *            CharSequence 文本
+	 * @param out
+	 *            StringBuilder 结果
+	 * @return int 追加的字段数
+	 */
+	public int appendDistinct(CharSequence text, StringBuilder out) {
+		int count = 0;
+		int start = 0;
+		int len = text.length();
+		while (start <= len) {
+			int index = StringUtil.indexOf(text, separator, start);
+			int end = index < 0 ? len : index;
+			if (end > start && add(text, start, end)) {
+				if (count > 0) {
+					out.append(separator);
+				}
+				out.append(text, start, end);
+				count++;
+			}
+			if (index < 0) {
+				break;
+			}
+			start = index + separator.length();
+		}
+		return count;
+	}
+
+	/**
+	 * 功能描述：切分文本并去重
+	 * 
+	 * @param text
+	 *            CharSequence 文本
+	 * @return List 首次出现的字段，为原文本的视图，不复制字符
+	 */
+	public List<CharSequence> distinct(CharSequence text) {
+		List<CharSequence> tokens = new ArrayList<CharSequence>();
+		TokenIterator it = new TokenIterator(text, separator);
+		while (it.hasNext()) {
+			it.next();
+			if (it.end() > it.start() && add(text, it.start(), it.end())) {
+				tokens.add(new StringSlice(text, it.start(), it.end()));
+			}
+		}
+		return tokens;
+	}
+
+	private boolean addExact(CharSequence text, int start, int end, int h) {
+		int mask = table.length - 1;
+		int length = end - start;
+		for (int slot = mix(h) & mask;; slot = (slot + 1) & mask) {
+			int id = table[slot] - 1;
+			if (id < 0) {
+				table[slot] = store(text, start, length, h) + 1;
+				// 新字段的序号为 size，返回后 size 才加1；装载超过一半时扩容
+				if ((size + 1) * 2 > table.length) {
+					rehash();
+				}
+				return true;
+			}
+			if (tokenHash[id] == h && tokenLength[id] == length
+					&& regionMatches(text, start, tokenStart[id], length)) {
+				return false;
+			}
+		}
+	}
+
+	private int store(CharSequence text, int start, int length, int h) {
+		int id = size;
+		if (id == tokenStart.length) {
+			int capacity = id * 2;
+			tokenStart = grow(tokenStart, capacity);
+			tokenLength = grow(tokenLength, capacity);
+			tokenHash = grow(tokenHash, capacity);
+		}
+		if (poolSize + length > pool.length) {
+			char[] p = new char[Math.max(pool.length * 2, poolSize + length)];
+			System.arraycopy(pool, 0, p, 0, poolSize);
+			pool = p;
+		}
+		if (text instanceof String) {
+			((String) text).getChars(start, start + length, pool, poolSize);
+		} else {
+			for (int i = 0; i < length; i++) {
+				pool[poolSize + i] = text.charAt(start + i);
+			}
+		}
+		tokenStart[id] = poolSize;
+		tokenLength[id] = length;
+		tokenHash[id] = h;
+		poolSize += length;
+		return id;
+	}
+
+	private void rehash() {
+		int[] t = new int[table.length * 2];
+		int mask = t.length - 1;
+		for (int id = 0; id <= size; id++) {
+			int slot = mix(tokenHash[id]) & mask;
+			while (t[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			t[slot] = id + 1;
+		}
+		table = t;
+	}
+
+	private boolean regionMatches(CharSequence text, int start,
+			int poolStart, int length) {
+		for (int i = 0; i < length; i++) {
+			if (text.charAt(start + i) != pool[poolStart + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 由64位散列取 hashes 个位置（h1 + i*h2），有未置位的即为新字段
+	 */
+	private boolean addBloom(long h) {
+		int h1 = (int) h;
+		int h2 = (int) (h >>> 32) | 1;
+		boolean added = false;
+		for (int i = 0; i < hashes; i++) {
+			int bit = (h1 + i * h2) & bloomMask;
+			long mask = 1L << bit;
+			if ((bloom[bit >>> 6] & mask) == 0) {
+				bloom[bit >>> 6] |= mask;
+				added = true;
+			}
+		}
+		return added;
+	}
+
+	private static int[] grow(int[] array, int capacity) {
+		int[] a = new int[capacity];
+		System.arraycopy(array, 0, a, 0, array.length);
+		return a;
+	}
+
+	/**
+	 * FNV-1a 后再混合，使高低位都均匀
+	 */
+	private static long hash(CharSequence text, int start, int end) {
+		long h = 0xCBF29CE484222325L;
+		for (int i = start; i < end; i++) {
+			h = (h ^ text.charAt(i)) * 0x100000001B3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		return h ^ (h >>> 33);
+	}
+
+	private static int mix(int h) {
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,324 @@
+package com.common;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 功能描述：从文本中提取全部Email地址，一次扫描，按出现顺序给出地址及其位置
+ * 
+ * 地址规则与 StringUtil.isEmail 相同（\w+([-+.]\w+)*@\w+([-.]\w+)*\.\w+([-.]\w+)*），
+ * 取最左、最长的匹配，超过256个字符的不算；用状态机逐字符判断，不回退，
+ * 只保留最近 BUFFER_SIZE 个字符，因此可直接处理 Reader 及分段到达的数据
+ * 
+ * 对象本身不是线程安全的，可调用 reset 后重复使用
+ * 
+ * @author renms
+ * @version 1.0
+ */
+public final class EmailExtractor {
+
+	/** 地址最大长度，同 isEmail */
+	public static final int MAX_LENGTH = 256;
+
+	/** 环形缓冲区大小，须为2的幂且大于 MAX_LENGTH */
+	private static final int BUFFER_SIZE = 512;
+
+	private static final int MASK = BUFFER_SIZE - 1;
+
+	private static final int NONE = 0;
+
+	/** 用户名中，上一个字符为字母数字 */
+	private static final int LOCAL_WORD = 1;
+
+	/** 用户名中，上一个字符为 - + . */
+	private static final int LOCAL_SEP = 2;
+
+	/** 刚读到 @ */
+	private static final int AT = 3;
+
+	/** 域名中，上一个字符为字母数字 */
+	private static final int DOMAIN_WORD = 4;
+
+	/** 域名中，上一个字符为 - . */
+	private static final int DOMAIN_SEP = 5;
+
+	/**
+	 * 功能描述：接收提取结果
+	 */
+	public interface Handler {
+
+		/**
+		 * @param email
+		 *            String 地址
+		 * @param start
+		 *            long 在全文中的起点
+		 * @param end
+		 *            long 在全文中的终点（不含）
+		 */
+		void found(String email, long start, long end);
+	}
+
+	private final Handler handler;
+
+	private final char[] buffer = new char[BUFFER_SIZE];
+
+	private int state;
+
+	/** 下一个字符在全文中的位置 */
+	private long position;
+
+	/** 当前用户名的起点 */
+	private long start;
+
+	/** 当前 @ 的位置 */
+	private long at;
+
+	/** 域名中上一个分隔符 */
+	private char separator;
+
+	/** 域名中已出现后接字母数字的 . */
+	private boolean dotted;
+
+	/** 目前最长的合法地址的终点，没有时为-1 */
+	private long end;
+
+	private int count;
+
+	public EmailExtractor(Handler handler) {
+		this.handler = handler;
+		reset();
+	}
+
+	/**
+	 * 功能描述：清除状态，从位置0重新开始
+	 */
+	public void reset() {
+		state = NONE;
+		position = 0;
+		end = -1;
+		count = 0;
+	}
+
+	/**
+	 * 功能描述：扫描整段文本，之前的状态被清除
+	 * 
+	 * @param text
+	 *            CharSequence 文本
+	 * @return int 提取到的地址数
+	 */
+	public int scan(CharSequence text) {
+		reset();
+		append(text);
+		finish();
+		return count;
+	}
+
+	/**
+	 * 功能描述：扫描 Reader 直到结尾，之前的状态被清除；不关闭 Reader
+	 * 
+	 * @param reader
+	 *            Reader 输入
+	 * @return int 提取到的地址数
+	 * @throws IOException
+	 */
+	public int scan(Reader reader) throws IOException {
+		reset();
+		char[] chunk = new char[8192];
+		int n;
+		while ((n = reader.read(chunk)) != -1) {
+			append(chunk, 0, n);
+		}
+		finish();
+		return count;
+	}
+
+	/**
+	 * 功能描述：追加一段文本，地址可以跨越多次调用
+	 * 
+	 * @param text
+	 *            CharSequence 文本
+	 */
+	public void append(CharSequence text) {
+		for (int i = 0, len = text.length(); i < len; i++) {
+			step(text.charAt(i));
+		}
+	}
+
+	/**
+	 * 功能描述：追加字符数组的一段
+	 * 
+	 * @param chars
+	 *            char[] 字符
+	 * @param offset
+	 *            int 起始位置
+	 * @param length
+	 *            int 长度
+	 */
+	public void append(char[] chars, int offset, int length) {
+		for (int i = offset, last = offset + length; i < last; i++) {
+			step(chars[i]);
+		}
+	}
+
+	/**
+	 * 功能描述：输入结束，给出末尾的地址
+	 */
+	public void finish() {
+		if (state == DOMAIN_WORD || state == DOMAIN_SEP) {
+			emit();
+		}
+		state = NONE;
+	}
+
+	/**
+	 * @return int 本轮已提取到的地址数
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * 功能描述：提取文本中的全部Email地址
+	 * 
+	 * @param text
+	 *            CharSequence 文本
+	 * @return List 地址，按出现顺序
+	 */
+	public static List<String> extract(CharSequence text) {
+		final List<String> emails = new ArrayList<String>();
+		new EmailExtractor(new Handler() {
+			public void found(String email, long start, long end) {
+				emails.add(email);
+			}
+		}).scan(text);
+		return emails;
+	}
+
+	/**
+	 * 功能描述：文本中的第一个Email地址，找到后即停止扫描
+	 * 
+	 * @param text
+	 *            CharSequence 文本
+	 * @return String 地址，没有时返回null
+	 */
+	public static String first(CharSequence text) {
+		final String[] first = new String[1];
+		EmailExtractor extractor = new EmailExtractor(new Handler() {
+			public void found(String email, long start, long end) {
+				first[0] = email;
+			}
+		});
+		for (int i = 0, len = text.length(); i < len && first[0] == null; i++) {
+			extractor.step(text.charAt(i));
+		}
+		if (first[0] == null) {
+			extractor.finish();
+		}
+		return first[0];
+	}
+
+	private void step(char c) {
+		long pos = position++;
+		buffer[(int) pos & MASK] = c;
+		boolean word = isWord(c);
+		switch (state) {
+		case NONE:
+			if (word) {
+				start = pos;
+				state = LOCAL_WORD;
+			}
+			break;
+		case LOCAL_WORD:
+			if (c == '@') {
+				at = pos;
+				state = AT;
+			} else if (c == '-' || c == '+' || c == '.') {
+				state = LOCAL_SEP;
+			} else if (!word) {
+				state = NONE;
+			}
+			break;
+		case LOCAL_SEP:
+			state = word ? LOCAL_WORD : NONE;
+			break;
+		case AT:
+			if (word) {
+				dotted = false;
+				end = -1;
+				state = DOMAIN_WORD;
+			} else {
+				state = NONE;
+			}
+			break;
+		case DOMAIN_WORD:
+			if (word) {
+				if (dotted) {
+					end = pos + 1;
+				}
+			} else if (c == '-' || c == '.') {
+				separator = c;
+				state = DOMAIN_SEP;
+			} else {
+				breakDomain(c, LOCAL_WORD);
+			}
+			break;
+		default:
+			if (word) {
+				if (separator == '.') {
+					dotted = true;
+				}
+				if (dotted) {
+					end = pos + 1;
+				}
+				state = DOMAIN_WORD;
+			} else {
+				breakDomain(c, LOCAL_SEP);
+			}
+		}
+	}
+
+	/**
+	 * 域名在非字母数字字符 c 处中断：已有合法地址时给出并重新开始；
+	 * 否则 @ 之后的内容也符合用户名的规则，改作新的用户名继续判断 c（如 a@b+c@d.com 中的 b+c）
+	 */
+	private void breakDomain(char c, int localState) {
+		if (emit()) {
+			state = NONE;
+			return;
+		}
+		start = at + 1;
+		state = localState;
+		position--;
+		step(c);
+	}
+
+	private boolean emit() {
+		if (end < 0) {
+			return false;
+		}
+		int length = (int) Math.min(end - start, Integer.MAX_VALUE);
+		long s = start;
+		long e = end;
+		end = -1;
+		if (length > MAX_LENGTH) {
+			return true;
+		}
+		char[] email = new char[length];
+		for (int i = 0; i < length; i++) {
+			email[i] = buffer[(int) (s + i) & MASK];
+		}
+		count++;
+		handler.found(new String(email), s, e);
+		return true;
+	}
+
+	/**
+	 * 与正则的 \w 相同，只含ASCII字母、数字及下划线
+	 */
+	private static boolean isWord(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+				|| (c >= '0' && c <= '9') || c == '_';
+	}
+}
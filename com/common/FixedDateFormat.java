@@ -0,0 +1,285 @@
+package com.common;
+
+/**
+ *
+ * 功能描述：yyyy-MM-dd、yyyy/MM/dd 及其后接 HH:mm:ss 几种常用格式的专用解析与格式化，
+ * 直接按位置读写字符，不经过正则和 DateTimeFormatter
+ *
+ * 只处理标准宽度的输入，其余情况由调用方回退到通用路径
+ *
+ * @author renms
+ * @version 1.0
+ */
+final class FixedDateFormat {
+
+	/** 解析失败或不适用时的返回值 */
+	static final long INVALID = Long.MIN_VALUE;
+
+	static final int DATE_LENGTH = 10;
+
+	static final int DATE_TIME_LENGTH = 19;
+
+	private final char separator;
+
+	private final boolean withTime;
+
+	private static final FixedDateFormat DASH_DATE = new FixedDateFormat('-',
+			false);
+
+	private static final FixedDateFormat SLASH_DATE = new FixedDateFormat('/',
+			false);
+
+	private static final FixedDateFormat DASH_DATE_TIME = new FixedDateFormat(
+			'-', true);
+
+	private static final FixedDateFormat SLASH_DATE_TIME = new FixedDateFormat(
+			'/', true);
+
+	private FixedDateFormat(char separator, boolean withTime) {
+		this.separator = separator;
+		this.withTime = withTime;
+	}
+
+	/**
+	 * 功能描述：取得格式串对应的专用格式，不支持时返回null
+	 *
+	 * @param pattern
+	 *            String 格式
+	 * @return FixedDateFormat
+	 */
+	static FixedDateFormat forPattern(String pattern) {
+		switch (pattern) {
+		case "yyyy-MM-dd":
+			return DASH_DATE;
+		case "yyyy/MM/dd":
+			return SLASH_DATE;
+		case "yyyy-MM-dd HH:mm:ss":
+			return DASH_DATE_TIME;
+		case "yyyy/MM/dd HH:mm:ss":
+			return SLASH_DATE_TIME;
+		default:
+			return null;
+		}
+	}
+
+	int length() {
+		return withTime ? DATE_TIME_LENGTH : DATE_LENGTH;
+	}
+
+	/**
+	 * 功能描述：解析为当前时区的毫秒，日期分隔符 - 与 / 均可；其后可跟非数字的内容，
+	 * 与通用路径一样忽略
+	 *
+	 * @param text
+	 *            CharSequence 字符型日期
+	 * @return long 毫秒，不是标准宽度时返回 INVALID
+	 */
+	long parse(CharSequence text) {
+		int len = text.length();
+		int end = length();
+		if (len < end || (len > end && isDigit(text.charAt(end)))) {
+			return INVALID;
+		}
+		int year = digits(text, 0, 4);
+		int month = digits(text, 5, 2);
+		int day = digits(text, 8, 2);
+		if ((year | month | day) < 0 || !isSeparator(text.charAt(4))
+				|| !isSeparator(text.charAt(7))) {
+			return INVALID;
+		}
+		long millisOfDay = 0;
+		if (withTime) {
+			int hour = digits(text, 11, 2);
+			int minute = digits(text, 14, 2);
+			int second = digits(text, 17, 2);
+			if ((hour | minute | second) < 0 || text.charAt(10) != ' '
+					|| text.charAt(13) != ':' || text.charAt(16) != ':') {
+				return INVALID;
+			}
+			millisOfDay = hour * CivilDate.MILLIS_PER_HOUR + minute
+					* CivilDate.MILLIS_PER_MINUTE + second
+					* CivilDate.MILLIS_PER_SECOND;
+		}
+		return toMillis(year, month, day, millisOfDay);
+	}
+
+	/**
+	 * 功能描述：解析ASCII字节，规则同 parse(CharSequence)
+	 *
+	 * @param bytes
+	 *            byte[] 字节
+	 * @param offset
+	 *            int 起始位置
+	 * @param length
+	 *            int 长度
+	 * @return long 毫秒，不是标准宽度时返回 INVALID
+	 */
+	long parse(byte[] bytes, int offset, int length) {
+		int end = length();
+		if (length < end
+				|| (length > end && isDigit((char) bytes[offset + end]))) {
+			return INVALID;
+		}
+		int year = digits(bytes, offset, 4);
+		int month = digits(bytes, offset + 5, 2);
+		int day = digits(bytes, offset + 8, 2);
+		if ((year | month | day) < 0
+				|| !isSeparator((char) bytes[offset + 4])
+				|| !isSeparator((char) bytes[offset + 7])) {
+			return INVALID;
+		}
+		long millisOfDay = 0;
+		if (withTime) {
+			int hour = digits(bytes, offset + 11, 2);
+			int minute = digits(bytes, offset + 14, 2);
+			int second = digits(bytes, offset + 17, 2);
+			if ((hour | minute | second) < 0 || bytes[offset + 10] != ' '
+					|| bytes[offset + 13] != ':' || bytes[offset + 16] != ':') {
+				return INVALID;
+			}
+			millisOfDay = hour * CivilDate.MILLIS_PER_HOUR + minute
+					* CivilDate.MILLIS_PER_MINUTE + second
+					* CivilDate.MILLIS_PER_SECOND;
+		}
+		return toMillis(year, month, day, millisOfDay);
+	}
+
+	/**
+	 * 功能描述：按当前时区格式化，年份超出 1-9999 时返回null，由调用方回退
+	 *
+	 * @param millis
+	 *            long 毫秒
+	 * @return String 字符型日期
+	 */
+	String format(long millis) {
+		char[] buf = new char[length()];
+		return format(millis, buf, 0) < 0 ? null : new String(buf);
+	}
+
+	/**
+	 * 功能描述：按当前时区格式化到字符数组
+	 *
+	 * @param millis
+	 *            long 毫秒
+	 * @param buf
+	 *            char[] 目标，自 offset 起须有 length() 个字符的空间
+	 * @param offset
+	 *            int 起始位置
+	 * @return int 写入的字符数，年份超出 1-9999 时返回-1且不写入
+	 */
+	int format(long millis, char[] buf, int offset) {
+		long local = DateUtil.localMillis(millis);
+		if (!writeDate(Math.floorDiv(local, CivilDate.MILLIS_PER_DAY), buf,
+				offset)) {
+			return -1;
+		}
+		if (!withTime) {
+			return DATE_LENGTH;
+		}
+		int secondOfDay = (int) (Math.floorMod(local, CivilDate.MILLIS_PER_DAY) / CivilDate.MILLIS_PER_SECOND);
+		buf[offset + 10] = ' ';
+		write2(buf, offset + 11, secondOfDay / 3600);
+		buf[offset + 13] = ':';
+		write2(buf, offset + 14, secondOfDay / 60 % 60);
+		buf[offset + 16] = ':';
+		write2(buf, offset + 17, secondOfDay % 60);
+		return DATE_TIME_LENGTH;
+	}
+
+	/**
+	 * 功能描述：格式化纪元日，带时间的格式时分秒为 00:00:00
+	 *
+	 * @param epochDay
+	 *            long 纪元日
+	 * @return String 字符型日期，年份超出 1-9999 时返回null
+	 */
+	String formatDay(long epochDay) {
+		char[] buf = new char[length()];
+		if (!writeDate(epochDay, buf, 0)) {
+			return null;
+		}
+		if (withTime) {
+			"00:00:00".getChars(0, 8, buf, 11);
+			buf[10] = ' ';
+		}
+		return new String(buf);
+	}
+
+	private boolean writeDate(long epochDay, char[] buf, int offset) {
+		int civil = CivilDate.fromEpochDay(epochDay);
+		int year = CivilDate.year(civil);
+		if (year < 1 || year > 9999) {
+			return false;
+		}
+		write4(buf, offset, year);
+		buf[offset + 4] = separator;
+		write2(buf, offset + 5, CivilDate.month(civil));
+		buf[offset + 7] = separator;
+		write2(buf, offset + 8, CivilDate.day(civil));
+		return true;
+	}
+
+	/**
+	 * 月、日、时、分、秒超出范围时与通用路径一样顺延
+	 */
+	private static long toMillis(int year, int month, int day,
+			long millisOfDay) {
+		if (year == 0) {
+			// 公元0年在通用路径中按公元前1年处理
+			return INVALID;
+		}
+		if (month < 1 || month > 12) {
+			year += Math.floorDiv(month - 1, 12);
+			month = Math.floorMod(month - 1, 12) + 1;
+		}
+		long epochDay = CivilDate.toEpochDay(year, month, 1) + day - 1;
+		return DateUtil.toMillis(epochDay, millisOfDay);
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isSeparator(char c) {
+		return c == '-' || c == '/';
+	}
+
+	/**
+	 * 读取定长数字，含非数字时返回-1
+	 */
+	private static int digits(CharSequence text, int offset, int count) {
+		int value = 0;
+		for (int i = offset; i < offset + count; i++) {
+			int d = text.charAt(i) - '0';
+			if (d < 0 || d > 9) {
+				return -1;
+			}
+			value = value * 10 + d;
+		}
+		return value;
+	}
+
+	private static int digits(byte[] bytes, int offset, int count) {
+		int value = 0;
+		for (int i = offset; i < offset + count; i++) {
+			int d = bytes[i] - '0';
+			if (d < 0 || d > 9) {
+				return -1;
+			}
+			value = value * 10 + d;
+		}
+		return value;
+	}
+
+	private static void write4(char[] buf, int offset, int value) {
+		buf[offset] = (char) ('0' + value / 1000);
+		buf[offset + 1] = (char) ('0' + value / 100 % 10);
+		buf[offset + 2] = (char) ('0' + value / 10 % 10);
+		buf[offset + 3] = (char) ('0' + value % 10);
+	}
+
+	private static void write2(char[] buf, int offset, int value) {
+		buf[offset] = (char) ('0' + value / 10);
+		buf[offset + 1] = (char) ('0' + value % 10);
+	}
+}
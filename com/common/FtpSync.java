@@ -0,0 +1,691 @@
+package com.common;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.log4j.Logger;
+
+import com.common.ftp.FtpException;
+import com.common.ftp.FtpFileEntry;
+
+/**
+ * 本地目录到FTP服务器目录的增量同步（单向镜像）<br>
+ * 每个目录取一次服务器列表，与本地文件比较大小和修改时间，只上传新增和变化的文件；可选：<br>
+ * 1. 删除服务器上本地已不存在的文件和文件夹；<br>
+ * 2. 在服务器目录下维护MD5清单（md5sum 格式），按内容判断文件是否变化；<br>
+ * 3. 在本地保存状态索引，记录上次同步时每个文件两侧的大小、修改时间和MD5，本地文件未变时不再重新计算MD5。<br>
+ * 没有变化时，一次同步的开销只是目录列表
+ *
+ * @author renms
+ * @version 1.0.0
+ */
+public class FtpSync
+{
+
+	public static final String DEFAULT_MANIFEST_NAME = ".ftpsync.md5";
+
+	private static final String INDEX_HEADER = "# ftpsync index 1";
+
+	private static final String INDEX_MANIFEST = "!manifest";
+
+	private static Logger logger = Logger.getLogger(FtpSync.class);
+
+	private final FtpUtil ftp;
+
+	private final File localDir;
+
+	private final String remoteDir;
+
+	private File indexFile;
+
+	private boolean deleteOrphans;
+
+	private String manifestName;
+
+	/** 上次同步的状态，键为相对路径 */
+	private Map<String, FileState> index;
+
+	/** 本次同步后的状态 */
+	private Map<String, FileState> nextIndex;
+
+	/** 服务器上清单文件的大小和修改时间，用于判断清单是否被改动过 */
+	private long manifestSize = -1;
+
+	private long manifestModified = -1;
+
+	/** 服务器清单内容，相对路径 -> MD5；未启用清单时为null */
+	private Map<String, String> manifest;
+
+	private boolean mfmtSupported;
+
+	private Result result;
+
+	/**
+	 * @param ftp
+	 *            已连接的FtpUtil
+	 * @param localDir
+	 *            本地目录
+	 * @param remoteDir
+	 *            服务器目录，相对路径相对于当前目录，不存在时自动创建
+	 */
+	public FtpSync(FtpUtil ftp, File localDir, String remoteDir)
+	{
+		this.ftp = ftp;
+		this.localDir = localDir;
+		this.remoteDir = remoteDir;
+	}
+
+	/**
+	 * 状态索引文件，为null时不保存（每次都按服务器列表的修改时间比较）
+	 */
+	public void setIndexFile(File indexFile)
+	{
+		this.indexFile = indexFile;
+	}
+
+	public File getIndexFile()
+	{
+		return indexFile;
+	}
+
+	/**
+	 * 是否删除服务器上本地已不存在的文件和文件夹，默认否
+	 */
+	public void setDeleteOrphans(boolean deleteOrphans)
+	{
+		this.deleteOrphans = deleteOrphans;
+	}
+
+	public boolean isDeleteOrphans()
+	{
+		return deleteOrphans;
+	}
+
+	/**
+	 * 服务器目录下MD5清单的文件名，为null时不使用清单（默认）
+	 */
+	public void setManifestName(String manifestName)
+	{
+		this.manifestName = manifestName;
+	}
+
+	public String getManifestName()
+	{
+		return manifestName;
+	}
+
+	/**
+	 * 执行一次同步
+	 *
+	 * @return 同步结果统计
+	 * @throws Exception
+	 */
+	public synchronized Result sync() throws Exception
+	{
+		if (!localDir.isDirectory())
+		{
+			throw new IOException("Not a directory: " + localDir);
+		}
+		result = new Result();
+		index = loadIndex();
+		nextIndex = new TreeMap<String, FileState>();
+		mfmtSupported = true;
+		String root = remoteDir.startsWith("/") ? remoteDir : join(ftp.pwd(), remoteDir);
+		Map<String, FtpFileEntry> rootEntries = list(root);
+		if (rootEntries == null)
+		{
+			ftp.mkdirs(root);
+			result.directoriesCreated++;
+			rootEntries = Collections.emptyMap();
+		}
+		manifest = manifestName == null ? null : readManifest(root, rootEntries.get(manifestName));
+		syncDirectory(localDir, root, "", rootEntries);
+		if (manifestName != null)
+		{
+			writeManifest(root);
+		}
+		saveIndex();
+		logger.info("Sync " + localDir + " -> " + root + ": " + result);
+		return result;
+	}
+
+	private void syncDirectory(File dir, String remote, String rel, Map<String, FtpFileEntry> remoteEntries)
+			throws Exception
+	{
+		File[] children = dir.listFiles();
+		if (children == null)
+		{
+			throw new IOException("Cannot list directory: " + dir);
+		}
+		Arrays.sort(children);
+		Set<String> localNames = new HashSet<String>();
+		List<File> changed = new ArrayList<File>();
+		List<FileState> changedStates = new ArrayList<FileState>();
+		List<File> subDirs = new ArrayList<File>();
+		for (File child : children)
+		{
+			String name = child.getName();
+			if (rel.length() == 0 && name.equals(manifestName) || !child.canRead())
+			{
+				continue;
+			}
+			if (child.isDirectory())
+			{
+				localNames.add(name);
+				subDirs.add(child);
+				continue;
+			}
+			if (!child.isFile())
+			{
+				continue;
+			}
+			localNames.add(name);
+			String key = rel + name;
+			FtpFileEntry entry = remoteEntries.get(name);
+			if (entry != null && !entry.isFile())
+			{
+				// 服务器上同名的是文件夹
+				removeRemote(remote, entry);
+				entry = null;
+			}
+			FileState state = localState(child, key);
+			if (isChanged(state, entry, index.get(key)))
+			{
+				changed.add(child);
+				changedStates.add(state);
+			}
+			else
+			{
+				state.remoteSize = entry.getSize();
+				state.remoteModified = entry.getModified();
+				nextIndex.put(key, state);
+				result.unchanged++;
+			}
+		}
+		if (deleteOrphans)
+		{
+			for (FtpFileEntry entry : remoteEntries.values())
+			{
+				if (!localNames.contains(entry.getName()) && !(rel.length() == 0 && entry.getName().equals(manifestName)))
+				{
+					removeRemote(remote, entry);
+				}
+			}
+		}
+		if (!changed.isEmpty())
+		{
+			upload(remote, changed, changedStates);
+		}
+		for (File subDir : subDirs)
+		{
+			String name = subDir.getName();
+			String childRemote = join(remote, name);
+			FtpFileEntry entry = remoteEntries.get(name);
+			if (entry != null && !entry.isDirectory())
+			{
+				removeRemote(remote, entry);
+				entry = null;
+			}
+			Map<String, FtpFileEntry> childEntries;
+			if (entry == null)
+			{
+				ftp.mkdirs(childRemote);
+				result.directoriesCreated++;
+				childEntries = Collections.emptyMap();
+			}
+			else
+			{
+				childEntries = list(childRemote);
+				if (childEntries == null)
+				{
+					childEntries = Collections.emptyMap();
+				}
+			}
+			syncDirectory(subDir, childRemote, rel + name + "/", childEntries);
+		}
+	}
+
+	/**
+	 * 文件是否需要上传：服务器上没有或大小不同时上传；其次按MD5清单比较内容；
+	 * 再其次与索引比较两侧是否有改动；没有索引时服务器文件比本地旧则上传（按服务器时间的精度比较）
+	 */
+	private boolean isChanged(FileState state, FtpFileEntry entry, FileState previous)
+	{
+		if (entry == null)
+		{
+			return true;
+		}
+		if (entry.getSize() >= 0 && entry.getSize() != state.localSize)
+		{
+			return true;
+		}
+		if (manifest != null)
+		{
+			String remoteMd5 = manifest.get(state.path);
+			if (remoteMd5 != null)
+			{
+				return !remoteMd5.equals(state.md5);
+			}
+		}
+		if (previous != null)
+		{
+			return previous.localSize != state.localSize || previous.localModified != state.localModified
+					|| previous.remoteModified != entry.getModified();
+		}
+		if (entry.getModified() < 0)
+		{
+			return true;
+		}
+		// LIST 的时间只精确到分钟
+		long precision = entry.getModified() % 60000 == 0 ? 60000 : 1000;
+		return entry.getModified() / precision < state.localModified / precision;
+	}
+
+	private void upload(String remote, List<File> files, List<FileState> states) throws Exception
+	{
+		String cwd = ftp.pwd();
+		ftp.cd(remote);
+		try
+		{
+			result.uploadedBytes += ftp.uploadBatch(files);
+		}
+		finally
+		{
+			ftp.cd(cwd);
+		}
+		result.uploaded += files.size();
+		// 服务器支持时把修改时间改成本地时间，没有索引也能正确比较
+		for (int i = 0; i < files.size() && mfmtSupported; i++)
+		{
+			mfmtSupported = ftp.setModified(join(remote, files.get(i).getName()), files.get(i).lastModified());
+		}
+		Map<String, FtpFileEntry> entries = list(remote);
+		for (FileState state : states)
+		{
+			FtpFileEntry entry = entries == null ? null : entries.get(state.path.substring(state.path.lastIndexOf('/') + 1));
+			if (entry != null)
+			{
+				state.remoteSize = entry.getSize();
+				state.remoteModified = entry.getModified();
+			}
+			nextIndex.put(state.path, state);
+		}
+	}
+
+	private void removeRemote(String remote, FtpFileEntry entry) throws Exception
+	{
+		String path = join(remote, entry.getName());
+		if (entry.isDirectory())
+		{
+			// rmd 结束时停在被删目录的上级，恢复当前目录
+			String cwd = ftp.pwd();
+			try
+			{
+				ftp.rmd(path);
+			}
+			finally
+			{
+				ftp.cd(cwd);
+			}
+		}
+		else
+		{
+			ftp.delf(path);
+		}
+		result.deleted++;
+	}
+
+	/**
+	 * 取服务器目录列表（不使用缓存），目录不存在时返回null
+	 */
+	private Map<String, FtpFileEntry> list(String remote) throws Exception
+	{
+		ftp.getSession().getDirectoryCache().invalidate(remote);
+		List<FtpFileEntry> entries;
+		try
+		{
+			entries = ftp.getSession().listEntries(remote).get();
+		}
+		catch (ExecutionException ex)
+		{
+			Throwable cause = ex.getCause();
+			if (cause instanceof FtpException && ((FtpException) cause).getReplyCode() == 550)
+			{
+				return null;
+			}
+			throw new Exception(cause);
+		}
+		result.listings++;
+		Map<String, FtpFileEntry> map = new HashMap<String, FtpFileEntry>(entries.size() * 2);
+		for (FtpFileEntry entry : entries)
+		{
+			map.put(entry.getName(), entry);
+		}
+		return map;
+	}
+
+	private FileState localState(File file, String key) throws Exception
+	{
+		FileState state = new FileState(key);
+		state.localSize = file.length();
+		state.localModified = file.lastModified();
+		if (manifestName != null)
+		{
+			FileState previous = index.get(key);
+			if (previous != null && previous.md5 != null && previous.localSize == state.localSize
+					&& previous.localModified == state.localModified)
+			{
+				state.md5 = previous.md5;
+			}
+			else
+			{
+				state.md5 = md5(file);
+			}
+		}
+		return state;
+	}
+
+	private static String md5(File file) throws Exception
+	{
+		MessageDigest digest = MessageDigest.getInstance("MD5");
+		InputStream in = new FileInputStream(file);
+		try
+		{
+			byte[] buffer = new byte[64 * 1024];
+			int n;
+			while ((n = in.read(buffer)) > 0)
+			{
+				digest.update(buffer, 0, n);
+			}
+		}
+		finally
+		{
+			in.close();
+		}
+		return MD5.toHex(digest.digest());
+	}
+
+	/**
+	 * 读取服务器上的清单；清单自上次同步写入后未被改动时直接使用索引中的MD5，不必下载
+	 */
+	private Map<String, String> readManifest(String root, FtpFileEntry entry) throws Exception
+	{
+		Map<String, String> map = new HashMap<String, String>();
+		if (entry == null || !entry.isFile())
+		{
+			return map;
+		}
+		if (entry.getSize() == manifestSize && entry.getModified() == manifestModified)
+		{
+			for (FileState state : index.values())
+			{
+				if (state.md5 != null)
+				{
+					map.put(state.path, state.md5);
+				}
+			}
+			return map;
+		}
+		File temp = File.createTempFile("ftpsync", ".md5");
+		try
+		{
+			ftp.download(join(root, manifestName), temp.getPath());
+			for (String line : Files.readAllLines(temp.toPath(), StandardCharsets.UTF_8))
+			{
+				// md5sum 格式：MD5 两个空格（或空格加*） 路径
+				if (line.length() > 34 && line.charAt(32) == ' ')
+				{
+					map.put(line.substring(34), line.substring(0, 32).toLowerCase());
+				}
+			}
+		}
+		finally
+		{
+			temp.delete();
+		}
+		return map;
+	}
+
+	/**
+	 * 内容有变化时在最后上传清单，清单始终晚于其中的文件出现在服务器上
+	 */
+	private void writeManifest(String root) throws Exception
+	{
+		Map<String, String> current = new TreeMap<String, String>();
+		for (FileState state : nextIndex.values())
+		{
+			current.put(state.path, state.md5);
+		}
+		if (current.equals(manifest) && manifestSize >= 0)
+		{
+			return;
+		}
+		File temp = File.createTempFile("ftpsync", ".md5");
+		try
+		{
+			BufferedWriter writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8);
+			try
+			{
+				for (Map.Entry<String, String> item : current.entrySet())
+				{
+					writer.write(item.getValue() + "  " + item.getKey() + "\n");
+				}
+			}
+			finally
+			{
+				writer.close();
+			}
+			ftp.upload(temp, join(root, manifestName));
+		}
+		finally
+		{
+			temp.delete();
+		}
+		Map<String, FtpFileEntry> entries = list(root);
+		FtpFileEntry entry = entries == null ? null : entries.get(manifestName);
+		manifestSize = entry == null ? -1 : entry.getSize();
+		manifestModified = entry == null ? -1 : entry.getModified();
+	}
+
+	private Map<String, FileState> loadIndex() throws IOException
+	{
+		Map<String, FileState> map = new HashMap<String, FileState>();
+		manifestSize = -1;
+		manifestModified = -1;
+		if (indexFile == null || !indexFile.isFile())
+		{
+			return map;
+		}
+		BufferedReader reader = Files.newBufferedReader(indexFile.toPath(), StandardCharsets.UTF_8);
+		try
+		{
+			String line = reader.readLine();
+			if (!INDEX_HEADER.equals(line))
+			{
+				logger.warn("Ignoring unrecognized sync index " + indexFile);
+				return map;
+			}
+			while ((line = reader.readLine()) != null)
+			{
+				String[] fields = line.split("\t");
+				if (fields.length == 3 && INDEX_MANIFEST.equals(fields[0]))
+				{
+					manifestSize = Long.parseLong(fields[1]);
+					manifestModified = Long.parseLong(fields[2]);
+				}
+				else if (fields.length == 6)
+				{
+					FileState state = new FileState(fields[0]);
+					state.localSize = Long.parseLong(fields[1]);
+					state.localModified = Long.parseLong(fields[2]);
+					state.remoteSize = Long.parseLong(fields[3]);
+					state.remoteModified = Long.parseLong(fields[4]);
+					state.md5 = "-".equals(fields[5]) ? null : fields[5];
+					map.put(state.path, state);
+				}
+			}
+		}
+		catch (NumberFormatException ex)
+		{
+			logger.warn("Ignoring corrupt sync index " + indexFile, ex);
+			map.clear();
+		}
+		finally
+		{
+			reader.close();
+		}
+		return map;
+	}
+
+	/**
+	 * 写临时文件后改名，中途失败不会留下半个索引
+	 */
+	private void saveIndex() throws IOException
+	{
+		if (indexFile == null)
+		{
+			return;
+		}
+		File temp = new File(indexFile.getPath() + ".tmp");
+		BufferedWriter writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8);
+		try
+		{
+			writer.write(INDEX_HEADER + "\n");
+			if (manifestSize >= 0)
+			{
+				writer.write(INDEX_MANIFEST + "\t" + manifestSize + "\t" + manifestModified + "\n");
+			}
+			for (FileState state : nextIndex.values())
+			{
+				writer.write(state.path + "\t" + state.localSize + "\t" + state.localModified + "\t" + state.remoteSize
+						+ "\t" + state.remoteModified + "\t" + (state.md5 == null ? "-" : state.md5) + "\n");
+			}
+		}
+		finally
+		{
+			writer.close();
+		}
+		try
+		{
+			Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (AtomicMoveNotSupportedException ex)
+		{
+			Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static String join(String dir, String name)
+	{
+		return dir.endsWith("/") ? dir + name : dir + "/" + name;
+	}
+
+	/**
+	 * 一个文件上次同步时的状态
+	 */
+	private static class FileState
+	{
+		final String path;
+
+		long localSize;
+
+		long localModified;
+
+		long remoteSize = -1;
+
+		long remoteModified = -1;
+
+		String md5;
+
+		FileState(String path)
+		{
+			this.path = path;
+		}
+	}
+
+	/**
+	 * 一次同步的统计
+	 */
+	public static class Result
+	{
+		private int uploaded;
+
+		private long uploadedBytes;
+
+		private int unchanged;
+
+		private int deleted;
+
+		private int directoriesCreated;
+
+		private int listings;
+
+		/**
+		 * 上传的文件数
+		 */
+		public int getUploaded()
+		{
+			return uploaded;
+		}
+
+		public long getUploadedBytes()
+		{
+			return uploadedBytes;
+		}
+
+		/**
+		 * 未变化而跳过的文件数
+		 */
+		public int getUnchanged()
+		{
+			return unchanged;
+		}
+
+		/**
+		 * 删除的服务器文件和文件夹数（文件夹连同其内容算一个）
+		 */
+		public int getDeleted()
+		{
+			return deleted;
+		}
+
+		public int getDirectoriesCreated()
+		{
+			return directoriesCreated;
+		}
+
+		/**
+		 * 取服务器目录列表的次数
+		 */
+		public int getListings()
+		{
+			return listings;
+		}
+
+		public String toString()
+		{
+			return "uploaded=" + uploaded + " (" + uploadedBytes + " bytes), unchanged=" + unchanged + ", deleted="
+					+ deleted + ", directoriesCreated=" + directoriesCreated + ", listings=" + listings;
+		}
+	}
+}
@@ -1,26 +1,29 @@
 package com.common;
 
-import java.io.BufferedReader;
-import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.StringTokenizer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import org.apache.log4j.Logger;
 
-import sun.net.TelnetInputStream;
-import sun.net.TelnetOutputStream;
-import sun.net.ftp.FtpClient;
+import com.common.ftp.FtpEngine;
+import com.common.ftp.FtpFileEntry;
+import com.common.ftp.FtpMetrics;
+import com.common.ftp.FtpSession;
+import com.common.ftp.FtpSessionPool;
+import com.common.ftp.FtpStage;
+import com.common.ftp.FtpTreeDeleter;
 
 /**
  * FTP工具类<br>
- * 注：上传，可上传文件、文件夹；下载，仅实现下载文件功能，不能识别子文件夹
+ * 注：上传，可上传文件、文件夹；下载，仅实现下载文件功能，不能识别子文件夹<br>
+ * 底层使用 com.common.ftp 中基于NIO的FTP引擎，本类对其做同步封装
  * 
  * @author renms
  * @version 1.0.0
@@ -30,7 +33,15 @@ public class FtpUtil
 
 	private static Logger logger = Logger.getLogger(FtpUtil.class);
 
-	private FtpClient ftpClient;
+	private FtpSession ftpClient;
+
+	private String serverIp;
+
+	private int port;
+
+	private String user;
+
+	private String password;
 
 	/**
 	 * 连接FTP服务器，使用默认FTP端口
@@ -47,21 +58,10 @@ public class FtpUtil
 	 */
 	public void connect(String serverIp, String user, String password) throws Exception
 	{
-		try
-		{
-			// serverIp：FTP服务器的IP地址；
-			// user:登录FTP服务器的用户名
-			// password：登录FTP服务器的用户名的口令；
-			ftpClient = new FtpClient();
-			ftpClient.openServer(serverIp);
-			ftpClient.login(user, password);
-			// 用二进制传输数据
-			ftpClient.binary();
-		}
-		catch (Exception ex)
-		{
-			throw new Exception(ex);
-		}
+		// serverIp：FTP服务器的IP地址；
+		// user:登录FTP服务器的用户名
+		// password：登录FTP服务器的用户名的口令；
+		this.connect(serverIp, FtpEngine.DEFAULT_PORT, user, password);
 	}
 
 	/**
@@ -84,11 +84,13 @@ public class FtpUtil
 			// post:FTP服务器端口
 			// user:登录FTP服务器的用户名
 			// password：登录FTP服务器的用户名的口令；
-			ftpClient = new FtpClient();
-			ftpClient.openServer(serverIp, port);
-			ftpClient.login(user, password);
-			// 用2进制传输数据
-			ftpClient.binary();
+			// 登录后用2进制传输数据
+			ftpClient = await(FtpEngine.getDefault().open(serverIp, port, user, password));
+			// 记住登录信息，并行操作需要另开会话
+			this.serverIp = serverIp;
+			this.port = port;
+			this.user = user;
+			this.password = password;
 		}
 		catch (Exception ex)
 		{
@@ -109,12 +111,10 @@ public class FtpUtil
 		{
 			if (ftpClient != null)
 			{
-				ftpClient.sendServer("QUIT\r\n");
-				ftpClient.readServerResponse();
-				// ftpClient.closeServer();
+				await(ftpClient.quit());
 			}
 		}
-		catch (IOException ex)
+		catch (Exception ex)
 		{
 			logger.error("DisConnect to FTP server failure! Detail:", ex);
 			throw new Exception(ex);
@@ -187,10 +187,9 @@ public class FtpUtil
 		{
 			if (localFile.isDirectory())
 			{
-				ftpClient.sendServer("XMKD " + rename + "\r\n");
-				ftpClient.readServerResponse();
+				await(ftpClient.execute("XMKD " + rename));
 				File[] subFiles = localFile.listFiles();
-				ftpClient.cd(rename);
+				await(ftpClient.cwd(rename));
 				try
 				{
 					for (int i = 0; i < subFiles.length; i++)
@@ -200,7 +199,7 @@ public class FtpUtil
 				}
 				finally
 				{
-					ftpClient.cdUp();
+					await(ftpClient.cdup());
 				}
 			}
 			else
@@ -215,11 +214,72 @@ public class FtpUtil
 		}
 	}
 
+	/**
+	 * 上传单个文件，数据在传输途中依次经过各处理阶段<br>
+	 * 如 upload(file, "a.txt.gz", md5, FtpCompressionStage.gzip()) 一次读取即得到服务器上的压缩文件和原文件的MD5
+	 * 
+	 * @param localFile
+	 *            待上传的本地文件，不能是文件夹
+	 * @param rename
+	 *            远程文件名
+	 * @param stages
+	 *            处理阶段，按本地到服务器的顺序排列
+	 * @return -1 文件不存在或不能读取; 否则返回发送到服务器的字节数
+	 * @throws Exception
+	 */
+	public long upload(File localFile, String rename, FtpStage... stages) throws Exception
+	{
+		if (localFile == null || !localFile.isFile() || !localFile.canRead())
+		{
+			return -1;
+		}
+		try
+		{
+			return await(ftpClient.store(rename, localFile.toPath(), stages));
+		}
+		catch (Exception ex)
+		{
+			logger.error("Uploading file failure! Detail:", ex);
+			throw new Exception(ex);
+		}
+	}
+
+	/**
+	 * 批量上传文件至FTP服务器当前目录，保持原文件名<br>
+	 * 适合大量小文件：复用同一连接，预读后续文件，并让相邻文件的命令往返重叠；
+	 * 不存在、不能读取的文件和文件夹被跳过
+	 * 
+	 * @param localFiles
+	 *            待上传的本地文件
+	 * @return 上传的总字节数
+	 * @throws Exception
+	 */
+	public long uploadBatch(List<File> localFiles) throws Exception
+	{
+		List<Path> paths = new ArrayList<Path>(localFiles.size());
+		for (File localFile : localFiles)
+		{
+			if (localFile != null && localFile.isFile() && localFile.canRead())
+			{
+				paths.add(localFile.toPath());
+			}
+		}
+		try
+		{
+			return await(ftpClient.storeBatch(paths));
+		}
+		catch (Exception ex)
+		{
+			logger.error("Uploading file failure! Detail:", ex);
+			throw new Exception(ex);
+		}
+	}
+
 	/**
 	 * 从ftp下载文件到本地
 	 * 
 	 * @throws java.lang.Exception
-	 * @return
+	 * @return 下载的字节数
 	 * @param localFilePath
 	 *            本地生成的文件名
 	 * @param remoteFilePath
@@ -227,48 +287,32 @@ public class FtpUtil
 	 */
 	public long download(String remoteFilePath, String localFilePath) throws Exception
 	{
-		long result = 0;
-		TelnetInputStream tis = null;
-		RandomAccessFile raf = null;
-		DataInputStream puts = null;
+		return download(remoteFilePath, localFilePath, new FtpStage[0]);
+	}
+
+	/**
+	 * 从ftp下载文件到本地，收到的数据逆序经过各处理阶段后写入本地文件
+	 * 
+	 * @param remoteFilePath
+	 *            服务器上的文件名
+	 * @param localFilePath
+	 *            本地生成的文件名
+	 * @param stages
+	 *            处理阶段，按本地到服务器的顺序排列，与上传时相同
+	 * @return 从服务器接收的字节数
+	 * @throws Exception
+	 */
+	public long download(String remoteFilePath, String localFilePath, FtpStage... stages) throws Exception
+	{
 		try
 		{
-			tis = ftpClient.get(remoteFilePath);
-			raf = new RandomAccessFile(new File(localFilePath), "rw");
-			raf.seek(0);
-			int ch;
-			puts = new DataInputStream(tis);
-			while ((ch = puts.read()) >= 0)
-			{
-				raf.write(ch);
-			}
+			return await(ftpClient.retrieve(remoteFilePath, new File(localFilePath).toPath(), stages));
 		}
 		catch (Exception ex)
 		{
 			logger.error("Downloading file failure! Detail:", ex);
 			throw new Exception(ex);
 		}
-		finally
-		{
-			try
-			{
-				puts.close();
-				
-				if (tis != null)
-				{
-					tis.close();
-				}
-				if (raf != null)
-				{
-					raf.close();
-				}
-			}
-			catch (Exception ex)
-			{
-				throw new Exception(ex);
-			}
-		}
-		return result;
 	}
 
 	/**
@@ -288,7 +332,7 @@ public class FtpUtil
 			// path：FTP服务器上的路径,是ftp服务器下主目录的子目录
 			if (dirPath != null && dirPath.length() > 0)
 			{
-				ftpClient.cd(dirPath);
+				await(ftpClient.cwd(dirPath));
 			}
 		}
 		catch (Exception ex)
@@ -297,6 +341,24 @@ public class FtpUtil
 		}
 	}
 
+	/**
+	 * 取得FTP服务器的当前路径
+	 * 
+	 * @return 当前目录的绝对路径
+	 * @throws Exception
+	 */
+	public String pwd() throws Exception
+	{
+		try
+		{
+			return await(ftpClient.pwd());
+		}
+		catch (Exception ex)
+		{
+			throw new Exception(ex);
+		}
+	}
+
 	/**
 	 * 在服务器上创建指定路径的目录，并转到此目录
 	 * 
@@ -311,15 +373,31 @@ public class FtpUtil
 		{
 			if (dirPath != null && dirPath.length() > 0)
 			{
-				StringTokenizer st = new StringTokenizer(dirPath.replaceAll("\\\\", "/"), "/");
-				String dirName = "";
-				while (st.hasMoreElements())
-				{
-					dirName = (String) st.nextElement();
-					ftpClient.sendServer("XMKD " + dirName + "\r\n");
-					ftpClient.readServerResponse();
-					ftpClient.cd(dirName);
-				}
+				String path = dirPath.replaceAll("\\\\", "/");
+				await(ftpClient.mkdirs(path));
+				await(ftpClient.cwd(path));
+			}
+		}
+		catch (Exception ex)
+		{
+			throw new Exception(ex);
+		}
+	}
+
+	/**
+	 * 在服务器上创建指定路径的目录（含各级上级目录），不改变当前目录<br>
+	 * 已确认存在的目录在本连接内会被记住，不再重复创建
+	 * 
+	 * @param dirPath
+	 * @throws Exception
+	 */
+	public void mkdirs(String dirPath) throws Exception
+	{
+		try
+		{
+			if (dirPath != null && dirPath.length() > 0)
+			{
+				await(ftpClient.mkdirs(dirPath.replaceAll("\\\\", "/")));
 			}
 		}
 		catch (Exception ex)
@@ -342,17 +420,16 @@ public class FtpUtil
 		{
 			if (directory != null && directory.length() > 0)
 			{
-				ftpClient.cd(directory);
+				await(ftpClient.cwd(directory));
 				try
 				{
 					this.cld();
 				}
 				finally
 				{
-					ftpClient.cdUp();
+					await(ftpClient.cdup());
 				}
-				ftpClient.sendServer("XRMD " + directory + "\r\n");
-				ftpClient.readServerResponse();
+				await(ftpClient.execute("XRMD " + directory));
 			}
 		}
 		catch (Exception ex)
@@ -361,6 +438,40 @@ public class FtpUtil
 		}
 	}
 
+	/**
+	 * 并行删除FTP服务器目录及其下全部内容<br>
+	 * 另开至多 sessions 个会话，每层目录只取一次列表，文件的删除分散到各会话并行执行
+	 * 
+	 * @param directory
+	 *            服务器文件夹路径，可以是相对路径
+	 * @param sessions
+	 *            并行使用的会话数
+	 * @return 删除的文件和文件夹总数
+	 * @throws Exception
+	 */
+	public long rmdParallel(String directory, int sessions) throws Exception
+	{
+		if (directory == null || directory.length() == 0)
+		{
+			return 0;
+		}
+		String absolute = directory.startsWith("/") ? directory : await(ftpClient.pwd()) + "/" + directory;
+		FtpSessionPool pool = new FtpSessionPool(FtpEngine.getDefault(), serverIp, port, user, password, sessions);
+		try
+		{
+			return await(new FtpTreeDeleter(pool).delete(absolute));
+		}
+		catch (Exception ex)
+		{
+			throw new Exception(ex);
+		}
+		finally
+		{
+			pool.close();
+			ftpClient.invalidate(absolute);
+		}
+	}
+
 	/**
 	 * 清空当前目录
 	 * 
@@ -370,15 +481,23 @@ public class FtpUtil
 	 */
 	public void cld() throws Exception
 	{
-		// 删除文件
-		for (Iterator<String> it = getFileList().iterator(); it.hasNext();)
+		// 只取一次目录列表，先删除文件，再删除文件夹
+		List<FtpFileEntry> entries = list();
+		for (Iterator<FtpFileEntry> it = entries.iterator(); it.hasNext();)
 		{
-			this.delf(it.next());
+			FtpFileEntry entry = it.next();
+			if (!entry.isDirectory())
+			{
+				this.delf(entry.getName());
+			}
 		}
-		// 删除文件夹
-		for (Iterator<String> it = getDirList().iterator(); it.hasNext();)
+		for (Iterator<FtpFileEntry> it = entries.iterator(); it.hasNext();)
 		{
-			this.rmd(it.next());
+			FtpFileEntry entry = it.next();
+			if (entry.isDirectory())
+			{
+				this.rmd(entry.getName());
+			}
 		}
 	}
 
@@ -396,8 +515,7 @@ public class FtpUtil
 		{
 			if (filePath != null && filePath.length() > 0)
 			{
-				ftpClient.sendServer("DELE " + filePath + "\r\n");
-				ftpClient.readServerResponse();
+				await(ftpClient.execute("DELE " + filePath));
 			}
 		}
 		catch (Exception ex)
@@ -406,6 +524,28 @@ public class FtpUtil
 		}
 	}
 
+	/**
+	 * 修改FTP服务器文件的修改时间，需服务器支持MFMT
+	 * 
+	 * @param filePath
+	 *            服务器上的文件名
+	 * @param millis
+	 *            修改时间，精确到秒
+	 * @return 服务器不支持时返回false
+	 * @throws Exception
+	 */
+	public boolean setModified(String filePath, long millis) throws Exception
+	{
+		try
+		{
+			return await(ftpClient.setModified(filePath, millis));
+		}
+		catch (Exception ex)
+		{
+			throw new Exception(ex);
+		}
+	}
+
 	/**
 	 * 以指定文件名，将本地文件写到FTP服务器
 	 * 
@@ -419,70 +559,62 @@ public class FtpUtil
 	 * @throws Exception
 	 */
 	private void writeFileToServer(File localFile, String fileName) throws Exception {
-		TelnetOutputStream tos = null;
-		FileInputStream fis = new FileInputStream(localFile);
 		try {
-			tos = ftpClient.put(fileName);
-			byte[] bytes = new byte[102400];
-			int c;
-			while ((c = fis.read(bytes)) != -1) {
-				tos.flush();
-				tos.write(bytes, 0, c);
-			}
+			await(ftpClient.store(fileName, localFile.toPath()));
 		} catch (Exception ex) {
 			throw new Exception(ex);
-		} finally {
-			if (fis != null) {
-				fis.close();
-			}
-			if (tos != null) {
-				tos.flush();
-				tos.close();
-			}
 		}
 	}
 
 	/**
-	 * 取得FTP上某个目录下的所有文件名列表
+	 * 取得当前目录下的全部条目（名称、类型、大小、修改时间）<br>
+	 * 服务器支持时使用MLSD，否则解析LIST；短时间内重复取同一目录使用会话缓存
 	 * 
-	 * @author Link Wang
-	 * @since
 	 * @return
 	 * @throws Exception
 	 */
-	public List<String> getFileList() throws Exception
+	public List<FtpFileEntry> list() throws Exception
+	{
+		return list(null);
+	}
+
+	/**
+	 * 取得指定目录下的全部条目（名称、类型、大小、修改时间）
+	 * 
+	 * @param dirPath
+	 *            服务器文件夹路径，空代表当前目录
+	 * @return
+	 * @throws Exception
+	 */
+	public List<FtpFileEntry> list(String dirPath) throws Exception
 	{
-		List<String> fileList = new ArrayList<String>();
-		BufferedReader br = null;
 		try
 		{
-			String fileItem;
-			br = new BufferedReader(new InputStreamReader(ftpClient.list()));
-			while ((fileItem = br.readLine()) != null)
-			{
-				if (fileItem.startsWith("-") && !fileItem.endsWith(".") && !fileItem.endsWith(".."))
-				{
-					fileList.add(parseFileName(fileItem));
-				}
-			}
+			return await(ftpClient.listEntries(dirPath));
 		}
 		catch (Exception ex)
 		{
 			logger.error("Failure to get directory list from ftp server!", ex);
 			throw new Exception(ex);
 		}
-		finally
+	}
+
+	/**
+	 * 取得FTP上某个目录下的所有文件名列表
+	 * 
+	 * @author Link Wang
+	 * @since
+	 * @return
+	 * @throws Exception
+	 */
+	public List<String> getFileList() throws Exception
+	{
+		List<String> fileList = new ArrayList<String>();
+		for (FtpFileEntry entry : list())
 		{
-			if (br != null)
+			if (entry.isFile())
 			{
-				try
-				{
-					br.close();
-				}
-				catch (Exception ex)
-				{
-					throw new Exception(ex);
-				}
+				fileList.add(entry.getName());
 			}
 		}
 		return fileList;
@@ -499,67 +631,94 @@ public class FtpUtil
 	public List<String> getDirList() throws Exception
 	{
 		List<String> dirList = new ArrayList<String>();
-		BufferedReader br = null;
-		try
-		{
-			String fileItem;
-			br = new BufferedReader(new InputStreamReader(ftpClient.list()));
-			while ((fileItem = br.readLine()) != null)
-			{
-				if (fileItem.startsWith("d") && !fileItem.endsWith(".") && !fileItem.endsWith(".."))
-				{
-					dirList.add(parseFileName(fileItem));
-				}
-			}
-		}
-		catch (Exception ex)
-		{
-			logger.info("Failure to get directory list from ftp server!", ex);
-			throw new Exception(ex);
-		}
-		finally
+		for (FtpFileEntry entry : list())
 		{
-			if (br != null)
+			if (entry.isDirectory())
 			{
-				try
-				{
-					br.close();
-				}
-				catch (Exception ex)
-				{
-					throw new Exception(ex);
-				}
+				dirList.add(entry.getName());
 			}
 		}
 		return dirList;
 	}
 
 	/**
-	 * 从文件信息中解析出文件（文件夹）名
+	 * 设置本连接上传输的限速，运行中修改立即生效
+	 * 
+	 * @param bytesPerSecond
+	 *            字节/秒，不大于0表示不限速
+	 */
+	public void setBandwidthLimit(long bytesPerSecond)
+	{
+		ftpClient.getRateLimiter().setBytesPerSecond(bytesPerSecond);
+	}
+
+	/**
+	 * 设置连接当前服务器的所有传输（包括其它 FtpUtil 实例）共用的限速，各传输平分带宽
+	 * 
+	 * @param bytesPerSecond
+	 *            字节/秒，不大于0表示不限速
+	 */
+	public void setHostBandwidthLimit(long bytesPerSecond)
+	{
+		ftpClient.getEngine().getHostRateLimiter(serverIp).setBytesPerSecond(bytesPerSecond);
+	}
+
+	/**
+	 * 设置进程内所有 FtpUtil 传输共用的总限速，各传输平分带宽
+	 * 
+	 * @param bytesPerSecond
+	 *            字节/秒，不大于0表示不限速
+	 * @throws Exception
+	 */
+	public static void setGlobalBandwidthLimit(long bytesPerSecond) throws Exception
+	{
+		FtpEngine.getDefault().getRateLimiter().setBytesPerSecond(bytesPerSecond);
+	}
+
+	/**
+	 * 设置进程内所有 FtpUtil 连接的度量输出，如 FtpJmxMetrics、FtpMicrometerMetrics
+	 * 
+	 * @param metrics
+	 *            为null时不再记录
+	 * @throws Exception
+	 */
+	public static void setMetrics(FtpMetrics metrics) throws Exception
+	{
+		FtpEngine.getDefault().setMetrics(metrics);
+	}
+
+	/**
+	 * 取得底层会话，用于异步操作或调整目录缓存等设置；未连接时为null
 	 * 
-	 * @author Link Wang
-	 * @since
-	 * @param fileItem
+	 * @return
+	 */
+	public FtpSession getSession()
+	{
+		return ftpClient;
+	}
+
+	/**
+	 * 等待异步操作完成，把 ExecutionException 还原为真正的异常
+	 * 
+	 * @param future
 	 * @return
 	 * @throws Exception
 	 */
-	private String parseFileName(String fileItem) throws Exception
+	private static <T> T await(CompletableFuture<T> future) throws Exception
 	{
-		StringTokenizer st = new StringTokenizer(fileItem);
-		int index = 0;
-		while (st.hasMoreTokens())
+		try
 		{
-			if (index < 8)
-			{
-				st.nextToken();
-			}
-			else
+			return future.get();
+		}
+		catch (ExecutionException ex)
+		{
+			Throwable cause = ex.getCause();
+			if (cause instanceof Exception)
 			{
-				return st.nextToken("").trim();
+				throw (Exception) cause;
 			}
-			index++;
+			throw ex;
 		}
-		return null;
 	}
 
 	/**
@@ -572,34 +731,37 @@ public class FtpUtil
 	 */
 	public static void main(String[] args) throws Exception
 	{
+		// 参数依次为 服务器地址 端口 用户名 密码
+		if (args.length < 4)
+		{
+			System.out.println("usage: FtpUtil host port user password");
+			return;
+		}
 		FtpUtil ftp = new FtpUtil();
 		try
 		{
 			// 连接ftp服务器
-			ftp.connect("192.168.36.151", "sasftp", "sasftp");
+			ftp.connect(args[0], Integer.parseInt(args[1]), args[2], args[3]);
+			ftp.mkd("upload/test");
 			// 上传文件
-			ftp.cd("/home/sasftp");
-			// ftp.cld();
-			// long fileSize = ftp.upload("D:/My Documents/酷6视频",
-			// "xufeitewwst");
-			// if (fileSize == -1) {
-			// logger.info("Uploading file failure! Because file do not exists!");
-			// } else if (fileSize == -2) {
-			// logger.info("Uploading file failure! Because file is empty!");
-			// } else {
-			// logger.info("Uploading file success! File size: " + fileSize);
-			// }
-			// 取得bbbbbb文件夹下的所有文件列表,并下载到本地保存
-
-			List<String> list = new ArrayList<String>();
-			list.add("czybxw.txt");
-			list.add("zjyb.txt");
+			File localFile = File.createTempFile("czybxw", ".txt");
+			localFile.deleteOnExit();
+			Files.write(localFile.toPath(), "FtpUtil test".getBytes("UTF-8"));
+			long fileSize = ftp.upload(localFile, "czybxw.txt");
+			logger.info("Uploading file success! File size: " + fileSize);
+
+			// 取得当前文件夹下的所有文件列表,并下载到本地保存
+			List<String> list = ftp.getFileList();
 			for (int i = 0; i < list.size(); i++)
 			{
-				String fileName = (String) list.get(i);
+				String fileName = list.get(i);
 				System.out.println(fileName);
-				ftp.download(fileName, "E:\\text" + File.separator + fileName);
+				File target = new File(localFile.getParentFile(), "download-" + fileName);
+				target.deleteOnExit();
+				ftp.download(fileName, target.getPath());
 			}
+			ftp.cd("/");
+			ftp.rmd("upload");
 		}
 		catch (Exception ex)
 		{
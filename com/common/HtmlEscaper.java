@@ -0,0 +1,238 @@
+package com.common;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * 功能描述：按对照表一次扫描完成多个字符串的替换，用于HTML转义及反转义
+ * 
+ * 对照表建成字典树，首字符为ASCII时直接查表；每个位置取最长的匹配，替换结果不再参与匹配，
+ * 因此一次扫描即可代替多次 replace，也不会把 &amp;amp;lt; 之类的内容解码两次
+ * 
+ * 建成后只读，可在线程间共用
+ * 
+ * @author renms
+ * @version 1.0
+ */
+public final class HtmlEscaper {
+
+	/** StringUtil.htmlencode：小于号、双引号 */
+	public static final HtmlEscaper HTML_ENCODE = new HtmlEscaper(
+			new String[][] { { "<", "&lt;" }, { "\"", "&quot;" } });
+
+	/** StringUtil.htmldecode */
+	public static final HtmlEscaper HTML_DECODE = new HtmlEscaper(
+			new String[][] { { "&lt;", "<" }, { "&quot;", "\"" } });
+
+	/** StringUtil.htmlshow：小于号、空格、回车、TAB */
+	public static final HtmlEscaper HTML_SHOW = new HtmlEscaper(
+			new String[][] { { "<", "&lt;" }, { " ", "&nbsp;" },
+					{ "\r\n", "<br/>" }, { "\n", "<br/>" },
+					{ "\t", "&nbsp;&nbsp;&nbsp;&nbsp;" } });
+
+	/** StringUtil.encoding */
+	public static final HtmlEscaper ENCODING = new HtmlEscaper(
+			new String[][] { { "\"", "&quot;" }, { "<", "&lt;" },
+					{ ">", "&gt;" }, { "'", "&apos;" }, { "&", "&amp;" },
+					{ "%", "&pc;" }, { "_", "&ul;" }, { "#", "&shap;" },
+					{ "?", "&ques;" } });
+
+	/** StringUtil.decoding，兼容以前不带分号的 &amp;ul 与 &amp;ques */
+	public static final HtmlEscaper DECODING = new HtmlEscaper(
+			new String[][] { { "&quot;", "\"" }, { "&apos;", "'" },
+					{ "&lt;", "<" }, { "&gt;", ">" }, { "&amp;", "&" },
+					{ "&pc;", "%" }, { "&ul;", "_" }, { "&ul", "_" },
+					{ "&shap;", "#" }, { "&ques;", "?" }, { "&ques", "?" } });
+
+	private static final int ASCII = 128;
+
+	private final Node root = new Node(0);
+
+	/** 首字符为ASCII时的第一层节点 */
+	private final Node[] first = new Node[ASCII];
+
+	/**
+	 * @param mappings
+	 *            String[][] 每项为 {原始字符串, 替换字符串}，原始字符串不能为空串
+	 */
+	public HtmlEscaper(String[][] mappings) {
+		for (String[] mapping : mappings) {
+			String from = mapping[0];
+			if (from == null || from.length() == 0 || mapping[1] == null) {
+				throw new IllegalArgumentException("Invalid mapping: "
+						+ Arrays.toString(mapping));
+			}
+			Node node = root;
+			for (int i = 0; i < from.length(); i++) {
+				node = node.add(from.charAt(i));
+			}
+			node.replacement = mapping[1];
+		}
+		for (int c = 0; c < ASCII; c++) {
+			first[c] = root.child((char) c);
+		}
+	}
+
+	/**
+	 * 功能描述：替换字符串
+	 * 
+	 * @param str
+	 *            String 原始字符串
+	 * @return String 替换后的字符串，没有需要替换的内容时返回原字符串
+	 */
+	public String apply(String str) {
+		if (str == null) {
+			return null;
+		}
+		int len = str.length();
+		StringBuilder out = null;
+		int start = 0;
+		int i = 0;
+		while (i < len) {
+			Node match = match(str, i, len);
+			if (match == null) {
+				i++;
+				continue;
+			}
+			if (out == null) {
+				out = new StringBuilder(len + (len >> 3) + 16);
+			}
+			out.append(str, start, i).append(match.replacement);
+			i += match.depth;
+			start = i;
+		}
+		if (out == null) {
+			return str;
+		}
+		return out.append(str, start, len).toString();
+	}
+
+	/**
+	 * 功能描述：替换字符串，结果追加到 out
+	 * 
+	 * @param str
+	 *            CharSequence 原始字符串
+	 * @param out
+	 *            StringBuilder 结果
+	 */
+	public void apply(CharSequence str, StringBuilder out) {
+		try {
+			apply(str, (Appendable) out);
+		} catch (IOException e) {
+			// StringBuilder 不会抛出
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * 功能描述：替换字符串，结果写入 out（如 Writer），不生成中间字符串
+	 * 
+	 * @param str
+	 *            CharSequence 原始字符串
+	 * @param out
+	 *            Appendable 输出
+	 * @throws IOException
+	 */
+	public void apply(CharSequence str, Appendable out) throws IOException {
+		int len = str.length();
+		int start = 0;
+		int i = 0;
+		while (i < len) {
+			Node match = match(str, i, len);
+			if (match == null) {
+				i++;
+				continue;
+			}
+			copy(str, start, i, out);
+			out.append(match.replacement);
+			i += match.depth;
+			start = i;
+		}
+		copy(str, start, len, out);
+	}
+
+	/**
+	 * 从 i 起最长的匹配，没有时返回null
+	 */
+	private Node match(CharSequence str, int i, int len) {
+		char c = str.charAt(i);
+		Node node = c < ASCII ? first[c] : root.child(c);
+		Node found = null;
+		while (node != null) {
+			if (node.replacement != null) {
+				found = node;
+			}
+			if (++i == len || node.keys == null) {
+				break;
+			}
+			node = node.child(str.charAt(i));
+		}
+		return found;
+	}
+
+	/**
+	 * Writer 直接写字符串的一段，避免 append(CharSequence, int, int) 生成子串
+	 */
+	private static void copy(CharSequence str, int start, int end,
+			Appendable out) throws IOException {
+		if (start == end) {
+			return;
+		}
+		if (out instanceof Writer && str instanceof String) {
+			((Writer) out).write((String) str, start, end - start);
+		} else {
+			out.append(str, start, end);
+		}
+	}
+
+	private static final class Node {
+
+		/** 从根到本节点的字符数 */
+		final int depth;
+
+		/** 子节点的字符，有序 */
+		char[] keys;
+
+		Node[] children;
+
+		/** 本节点是某个原始字符串的结尾时为替换字符串 */
+		String replacement;
+
+		Node(int depth) {
+			this.depth = depth;
+		}
+
+		Node child(char c) {
+			if (keys == null) {
+				return null;
+			}
+			int i = Arrays.binarySearch(keys, c);
+			return i < 0 ? null : children[i];
+		}
+
+		Node add(char c) {
+			if (keys == null) {
+				keys = new char[0];
+				children = new Node[0];
+			}
+			int i = Arrays.binarySearch(keys, c);
+			if (i >= 0) {
+				return children[i];
+			}
+			i = -i - 1;
+			char[] k = new char[keys.length + 1];
+			Node[] n = new Node[keys.length + 1];
+			System.arraycopy(keys, 0, k, 0, i);
+			System.arraycopy(children, 0, n, 0, i);
+			System.arraycopy(keys, i, k, i + 1, keys.length - i);
+			System.arraycopy(children, i, n, i + 1, keys.length - i);
+			k[i] = c;
+			n[i] = new Node(depth + 1);
+			keys = k;
+			children = n;
+			return n[i];
+		}
+	}
+}
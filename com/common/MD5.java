@@ -12,6 +12,8 @@ import org.apache.log4j.Logger;
  */
 public class MD5 {
 	private static Logger logger = Logger.getLogger(MD5.class);
+	private static final char HEX_DIGITS[] = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9',
+			'a', 'b', 'c', 'd', 'e', 'f' };
 	/**
 	 * 對字符串進行MD5加密
 	 * @author tianwl
@@ -29,28 +31,32 @@ public class MD5 {
 	 * @return
 	 */
 	public final static String getByteArrayMD5(byte[] source) {
-		char hexDigits[] = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9',
-				'a', 'b', 'c', 'd', 'e', 'f' };
 		try {
 			// 使用MD5创建MessageDigest对象
 			MessageDigest mdTemp = MessageDigest.getInstance("MD5");
 			mdTemp.update(source);
-			byte[] md = mdTemp.digest();
-			int j = md.length;
-			char str[] = new char[j * 2];
-			int k = 0;
-			for (int i = 0; i < j; i++) {
-				byte b = md[i];
-				// 将没个数(int)b进行双字节加密
-				str[k++] = hexDigits[b >> 4 & 0xf];
-				str[k++] = hexDigits[b & 0xf];
-			}
-			return new String(str);
+			return toHex(mdTemp.digest());
 		} catch (Exception e) {
 			logger.error(e,e);
 			return null;
 		}
 	}
+	/**
+	 * 把摘要转为十六进制小写字符串
+	 * @param md 摘要
+	 * @return
+	 */
+	public final static String toHex(byte[] md) {
+		char str[] = new char[md.length * 2];
+		int k = 0;
+		for (int i = 0; i < md.length; i++) {
+			byte b = md[i];
+			// 将没个数(int)b进行双字节加密
+			str[k++] = HEX_DIGITS[b >> 4 & 0xf];
+			str[k++] = HEX_DIGITS[b & 0xf];
+		}
+		return new String(str);
+	}
 	/**
 	 * 得到图片的MD5，也可以用于二级栏目的MD5
 	 * @author tianwl
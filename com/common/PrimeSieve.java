@@ -0,0 +1,566 @@
+package com.common;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 功能描述：质数工具，单个数用确定性的 Miller-Rabin 判断，一段区间用分段筛法
+ * 
+ * 静态方法：isPrime、nextPrime、prevPrime 适用于全部 long；count 统计区间内的质数个数，
+ * 区间较大时按段在公共 ForkJoinPool 中并行筛
+ * 
+ * 实例：区间 [from, to) 的筛选结果，只记奇数，每个奇数一位；建成后只读，可在线程间共用
+ * 
+ * @author renms
+ * @version 1.0
+ */
+public final class PrimeSieve {
+
+	/** 可筛的上限，其平方根以内的质数作为筛子常驻内存（约4MB） */
+	public static final long MAX_LIMIT = 1L << 48;
+
+	/** 每段的奇数个数，位图64KB，可放在二级缓存内 */
+	static final int SEGMENT_ODDS = 1 << 19;
+
+	/** long 范围内最大的质数 */
+	static final long MAX_PRIME = 9223372036854775783L;
+
+	/** 试除的小质数，之后的 Miller-Rabin 只处理与之互质的数 */
+	private static final int[] SMALL_PRIMES = { 2, 3, 5, 7, 11, 13, 17, 19, 23,
+			29, 31, 37 };
+
+	/** 对全部 64 位整数都确定的 Miller-Rabin 底数 */
+	private static final long[] BASES = { 2, 325, 9375, 28178, 450775,
+			9780504, 1795265022 };
+
+	/** 小于此值时用 2、3、5、7 四个底数且乘积不会溢出 */
+	private static final long SMALL_LIMIT = 3037000499L;
+
+	/** 筛子：不超过 sieveLimit 的奇质数 */
+	private static volatile int[] sievePrimes = new int[0];
+
+	private static volatile long sieveLimit = 2;
+
+	private final long from;
+
+	private final long to;
+
+	/** 第一位对应的奇数 */
+	private final long firstOdd;
+
+	private final int odds;
+
+	/** 第 i 位为1表示 firstOdd + 2i 是质数 */
+	private final long[] bits;
+
+	/**
+	 * 功能描述：筛出区间 [from, to) 内的质数
+	 * 
+	 * @param from
+	 *            long 起点（含），不小于0
+	 * @param to
+	 *            long 终点（不含），不超过 MAX_LIMIT
+	 */
+	public PrimeSieve(long from, long to) {
+		checkRange(from, to);
+		this.from = from;
+		this.to = to;
+		this.firstOdd = from | 1;
+		long n = to > firstOdd ? (to - firstOdd + 1) >>> 1 : 0;
+		if (n > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Range too large: [" + from
+					+ ", " + to + ")");
+		}
+		this.odds = (int) n;
+		this.bits = new long[(odds + 63) >>> 6];
+		sieve(firstOdd, odds, bits, primesUpTo(sqrt(to)));
+	}
+
+	public long getFrom() {
+		return from;
+	}
+
+	public long getTo() {
+		return to;
+	}
+
+	/**
+	 * 功能描述：区间内的数是否为质数
+	 * 
+	 * @param n
+	 *            long 区间内的数
+	 * @return boolean
+	 */
+	public boolean contains(long n) {
+		if (n < from || n >= to) {
+			throw new IllegalArgumentException(n + " outside [" + from + ", "
+					+ to + ")");
+		}
+		if ((n & 1) == 0) {
+			return n == 2;
+		}
+		int i = (int) ((n - firstOdd) >>> 1);
+		return (bits[i >>> 6] & (1L << i)) != 0;
+	}
+
+	/**
+	 * @return long 区间内的质数个数
+	 */
+	public long count() {
+		long count = from <= 2 && to > 2 ? 1 : 0;
+		for (long word : bits) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * 功能描述：区间内不小于 n 的第一个质数
+	 * 
+	 * @param n
+	 *            long 数
+	 * @return long 质数，没有时返回-1
+	 */
+	public long next(long n) {
+		if (n >= to) {
+			return -1;
+		}
+		if (n <= 2 && from <= 2 && to > 2) {
+			return 2;
+		}
+		int i = n <= firstOdd ? 0 : (int) Math.min((n - firstOdd + 1) >>> 1,
+				odds);
+		if (i >= odds) {
+			return -1;
+		}
+		int w = i >>> 6;
+		long word = bits[w] & (-1L << i);
+		while (word == 0) {
+			if (++w == bits.length) {
+				return -1;
+			}
+			word = bits[w];
+		}
+		return firstOdd + 2L * ((w << 6) + Long.numberOfTrailingZeros(word));
+	}
+
+	/**
+	 * 功能描述：区间内的全部质数
+	 * 
+	 * @return long[] 质数，从小到大
+	 */
+	public long[] toArray() {
+		long[] primes = new long[(int) count()];
+		int k = 0;
+		if (from <= 2 && to > 2) {
+			primes[k++] = 2;
+		}
+		for (int w = 0; w < bits.length; w++) {
+			for (long word = bits[w]; word != 0; word &= word - 1) {
+				primes[k++] = firstOdd + 2L
+						* ((w << 6) + Long.numberOfTrailingZeros(word));
+			}
+		}
+		return primes;
+	}
+
+	/**
+	 * 功能描述：判断是否为质数
+	 * 
+	 * @param n
+	 *            long 数
+	 * @return boolean 小于2时为false
+	 */
+	public static boolean isPrime(long n) {
+		if (n < 2) {
+			return false;
+		}
+		for (int p : SMALL_PRIMES) {
+			if (n % p == 0) {
+				return n == p;
+			}
+		}
+		if (n < 41 * 41) {
+			return true;
+		}
+		if (n < SMALL_LIMIT) {
+			return millerRabinSmall(n);
+		}
+		return new Montgomery(n).millerRabin();
+	}
+
+	/**
+	 * 功能描述：大于 n 的最小质数
+	 * 
+	 * @param n
+	 *            long 数
+	 * @return long 质数
+	 */
+	public static long nextPrime(long n) {
+		if (n < 2) {
+			return 2;
+		}
+		if (n >= MAX_PRIME) {
+			throw new ArithmeticException("No prime above " + n
+					+ " in long range");
+		}
+		long c = (n + 1) | 1;
+		while (!isPrime(c)) {
+			c += 2;
+		}
+		return c;
+	}
+
+	/**
+	 * 功能描述：小于 n 的最大质数
+	 * 
+	 * @param n
+	 *            long 数
+	 * @return long 质数，n 不大于2时返回-1
+	 */
+	public static long prevPrime(long n) {
+		if (n <= 2) {
+			return -1;
+		}
+		if (n == 3) {
+			return 2;
+		}
+		long c = (n - 2) | 1;
+		while (!isPrime(c)) {
+			c -= 2;
+		}
+		return c;
+	}
+
+	/**
+	 * 功能描述：统计区间 [from, to) 内的质数个数，超过一段时并行
+	 * 
+	 * @param from
+	 *            long 起点（含）
+	 * @param to
+	 *            long 终点（不含），不超过 MAX_LIMIT
+	 * @return long 质数个数
+	 */
+	public static long count(long from, long to) {
+		checkRange(from, to);
+		int[] primes = primesUpTo(sqrt(to));
+		long span = 2L * SEGMENT_ODDS;
+		if (to - from <= span) {
+			return countSegment(from, to, primes);
+		}
+		return ForkJoinPool.commonPool().invoke(
+				new CountTask(from, to, span, primes));
+	}
+
+	private static long countSegment(long from, long to, int[] primes) {
+		long firstOdd = from | 1;
+		if (to <= firstOdd) {
+			return from <= 2 && to > 2 ? 1 : 0;
+		}
+		int odds = (int) ((to - firstOdd + 1) >>> 1);
+		long[] bits = new long[(odds + 63) >>> 6];
+		sieve(firstOdd, odds, bits, primes);
+		long count = from <= 2 && to > 2 ? 1 : 0;
+		for (long word : bits) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * 筛出 firstOdd 起 odds 个奇数中的质数，逐段进行以利用缓存
+	 */
+	private static void sieve(long firstOdd, int odds, long[] bits,
+			int[] primes) {
+		for (int w = 0; w < bits.length; w++) {
+			bits[w] = -1L;
+		}
+		if ((odds & 63) != 0) {
+			bits[bits.length - 1] = (1L << odds) - 1;
+		}
+		if (firstOdd == 1 && odds > 0) {
+			bits[0] &= ~1L;
+		}
+		for (int segment = 0; segment < odds; segment += SEGMENT_ODDS) {
+			int segmentEnd = (int) Math.min((long) segment + SEGMENT_ODDS,
+					odds);
+			long low = firstOdd + 2L * segment;
+			long high = firstOdd + 2L * (segmentEnd - 1);
+			for (int p : primes) {
+				long square = (long) p * p;
+				if (square > high) {
+					break;
+				}
+				// 段内 p 的第一个奇数倍，且不小于 p*p
+				long m = Math.max(square, (low + p - 1) / p * p);
+				if ((m & 1) == 0) {
+					m += p;
+				}
+				for (int i = (int) ((m - firstOdd) >>> 1); i < segmentEnd; i += p) {
+					bits[i >>> 6] &= ~(1L << i);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 不超过 limit 的奇质数，按需扩充
+	 */
+	private static int[] primesUpTo(long limit) {
+		if (limit <= sieveLimit) {
+			return sievePrimes;
+		}
+		synchronized (PrimeSieve.class) {
+			if (limit > sieveLimit) {
+				// 多筛一些，避免区间逐步增大时反复重建
+				long newLimit = Math.min(Math.max(limit, sieveLimit * 2),
+						sqrt(MAX_LIMIT));
+				int n = (int) ((newLimit - 1) >>> 1);
+				long[] bits = new long[(n + 63) >>> 6];
+				sieve(3, n, bits, simplePrimes((int) sqrt(newLimit)));
+				int[] primes = new int[bitCount(bits)];
+				int k = 0;
+				for (int w = 0; w < bits.length; w++) {
+					for (long word = bits[w]; word != 0; word &= word - 1) {
+						primes[k++] = 3 + 2 * ((w << 6) + Long
+								.numberOfTrailingZeros(word));
+					}
+				}
+				sievePrimes = primes;
+				sieveLimit = newLimit;
+			}
+			return sievePrimes;
+		}
+	}
+
+	/**
+	 * 不超过 limit 的奇质数，普通筛法，limit 很小
+	 */
+	private static int[] simplePrimes(int limit) {
+		boolean[] composite = new boolean[limit + 1];
+		int count = 0;
+		for (int i = 3; i <= limit; i += 2) {
+			if (!composite[i]) {
+				count++;
+				for (long j = (long) i * i; j <= limit; j += 2 * i) {
+					composite[(int) j] = true;
+				}
+			}
+		}
+		int[] primes = new int[count];
+		int k = 0;
+		for (int i = 3; i <= limit; i += 2) {
+			if (!composite[i]) {
+				primes[k++] = i;
+			}
+		}
+		return primes;
+	}
+
+	private static int bitCount(long[] bits) {
+		int count = 0;
+		for (long word : bits) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * 向下取整的平方根
+	 */
+	private static long sqrt(long n) {
+		long r = (long) Math.sqrt((double) n);
+		while (r * r > n) {
+			r--;
+		}
+		while ((r + 1) * (r + 1) <= n) {
+			r++;
+		}
+		return r;
+	}
+
+	private static void checkRange(long from, long to) {
+		if (from < 0 || from > to || to > MAX_LIMIT) {
+			throw new IllegalArgumentException("Invalid range [" + from + ", "
+					+ to + "), limit " + MAX_LIMIT);
+		}
+	}
+
+	/**
+	 * n 小于 SMALL_LIMIT 时平方不溢出，底数 2、3、5、7 即可确定
+	 */
+	private static boolean millerRabinSmall(long n) {
+		long d = n - 1;
+		int s = Long.numberOfTrailingZeros(d);
+		d >>= s;
+		for (int a = 2; a <= 7; a = a == 2 ? 3 : a + 2) {
+			long x = powMod(a, d, n);
+			if (x == 1 || x == n - 1) {
+				continue;
+			}
+			int r = 1;
+			for (; r < s; r++) {
+				x = x * x % n;
+				if (x == n - 1) {
+					break;
+				}
+			}
+			if (r == s) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static long powMod(long base, long exponent, long n) {
+		long result = 1;
+		base %= n;
+		while (exponent > 0) {
+			if ((exponent & 1) != 0) {
+				result = result * base % n;
+			}
+			base = base * base % n;
+			exponent >>= 1;
+		}
+		return result;
+	}
+
+	/**
+	 * 奇数 n 的 Montgomery 乘法，只用 64 位运算，不经过 BigInteger
+	 */
+	private static final class Montgomery {
+
+		private final long n;
+
+		/** -n^-1 mod 2^64 */
+		private final long inverse;
+
+		/** 2^64 mod n，即 Montgomery 形式的1 */
+		private final long one;
+
+		/** 2^128 mod n */
+		private final long r2;
+
+		Montgomery(long n) {
+			this.n = n;
+			long inv = n;
+			// 牛顿迭代，每次正确的位数翻倍
+			for (int i = 0; i < 5; i++) {
+				inv *= 2 - n * inv;
+			}
+			this.inverse = -inv;
+			this.one = Long.remainderUnsigned(-n, n);
+			long r = one;
+			for (int i = 0; i < 64; i++) {
+				r = addMod(r, r);
+			}
+			this.r2 = r;
+		}
+
+		boolean millerRabin() {
+			long d = n - 1;
+			int s = Long.numberOfTrailingZeros(d);
+			d >>>= s;
+			long minusOne = n - one;
+			for (long base : BASES) {
+				long a = base % n;
+				if (a == 0) {
+					continue;
+				}
+				long x = pow(multiply(a, r2), d);
+				if (x == one || x == minusOne) {
+					continue;
+				}
+				int r = 1;
+				for (; r < s; r++) {
+					x = multiply(x, x);
+					if (x == minusOne) {
+						break;
+					}
+				}
+				if (r == s) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private long pow(long base, long exponent) {
+			long result = one;
+			while (exponent > 0) {
+				if ((exponent & 1) != 0) {
+					result = multiply(result, base);
+				}
+				base = multiply(base, base);
+				exponent >>>= 1;
+			}
+			return result;
+		}
+
+		/**
+		 * a*b*2^-64 mod n，a、b 小于 n
+		 */
+		private long multiply(long a, long b) {
+			long low = a * b;
+			long high = multiplyHigh(a, b);
+			long m = low * inverse;
+			// low + m*n 的低64位为0，仅当 low 不为0时进位
+			long t = high + multiplyHigh(m, n) + (low != 0 ? 1 : 0);
+			return Long.compareUnsigned(t, n) >= 0 ? t - n : t;
+		}
+
+		private long addMod(long a, long b) {
+			long s = a + b;
+			return Long.compareUnsigned(s, n) >= 0 ? s - n : s;
+		}
+
+		/**
+		 * 无符号乘积的高64位
+		 */
+		private static long multiplyHigh(long a, long b) {
+			long a0 = a & 0xFFFFFFFFL;
+			long a1 = a >>> 32;
+			long b0 = b & 0xFFFFFFFFL;
+			long b1 = b >>> 32;
+			long p00 = a0 * b0;
+			long p01 = a0 * b1;
+			long p10 = a1 * b0;
+			long middle = (p00 >>> 32) + (p01 & 0xFFFFFFFFL)
+					+ (p10 & 0xFFFFFFFFL);
+			return a1 * b1 + (p01 >>> 32) + (p10 >>> 32) + (middle >>> 32);
+		}
+	}
+
+	private static final class CountTask extends RecursiveTask<Long> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long from;
+
+		private final long to;
+
+		private final long span;
+
+		private final int[] primes;
+
+		CountTask(long from, long to, long span, int[] primes) {
+			this.from = from;
+			this.to = to;
+			this.span = span;
+			this.primes = primes;
+		}
+
+		protected Long compute() {
+			if (to - from <= span) {
+				return countSegment(from, to, primes);
+			}
+			// 按段对齐拆分
+			long segments = (to - from + span - 1) / span;
+			long mid = from + segments / 2 * span;
+			CountTask left = new CountTask(from, mid, span, primes);
+			left.fork();
+			long right = new CountTask(mid, to, span, primes).compute();
+			return left.join() + right;
+		}
+	}
+}
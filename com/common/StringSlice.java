@@ -0,0 +1,55 @@
+package com.common;
+
+/**
+ * 功能描述：字符序列中一段的视图，不复制字符；toString 时才生成字符串
+ * 
+ * 原序列改变时视图随之改变，TokenIterator 会复用同一个视图对象
+ * 
+ * @author renms
+ * @version 1.0
+ */
+final class StringSlice implements CharSequence {
+
+	private CharSequence source;
+
+	private int start;
+
+	private int end;
+
+	StringSlice(CharSequence source, int start, int end) {
+		set(source, start, end);
+	}
+
+	StringSlice set(CharSequence source, int start, int end) {
+		this.source = source;
+		this.start = start;
+		this.end = end;
+		return this;
+	}
+
+	public int length() {
+		return end - start;
+	}
+
+	public char charAt(int index) {
+		if (index < 0 || index >= end - start) {
+			throw new StringIndexOutOfBoundsException(index);
+		}
+		return source.charAt(start + index);
+	}
+
+	public CharSequence subSequence(int from, int to) {
+		if (from < 0 || to > end - start || from > to) {
+			throw new StringIndexOutOfBoundsException("begin " + from
+					+ ", end " + to + ", length " + (end - start));
+		}
+		return new StringSlice(source, start + from, start + to);
+	}
+
+	public String toString() {
+		if (source instanceof String) {
+			return ((String) source).substring(start, end);
+		}
+		return source.subSequence(start, end).toString();
+	}
+}
@@ -1,10 +1,11 @@
 package com.common;
 
-import java.util.ArrayList;
-import java.util.LinkedHashSet;
-import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
 
 /**
  * 功能描述：关于字符串的一些实用操作
@@ -16,6 +17,7 @@ import java.util.regex.Pattern;
  */
 public class StringUtil {
 
+	private static final Charset GBK = Charset.forName("GBK");
 
 	/**
 	 * 功能描述：判断是否为空或空串
@@ -43,19 +45,151 @@ public class StringUtil {
 	 *            String 分隔符
 	 * @return String[] 分割后的字符串数组
 	 */
-	@SuppressWarnings("unchecked")
 	public static String[] split(String str, String splitsign) {
+		if (str == null || splitsign == null) {
+			return null;
+		}
+		if (splitsign.length() == 0) {
+			return new String[] { str };
+		}
+		String[] result = new String[count(str, splitsign) + 1];
+		int start = 0;
 		int index;
+		int n = 0;
+		while ((index = str.indexOf(splitsign, start)) != -1) {
+			result[n++] = str.substring(start, index);
+			start = index + splitsign.length();
+		}
+		result[n] = str.substring(start);
+		return result;
+	}
+
+	/**
+	 * 功能描述：分割字符串，只返回各段的位置，规则同 split
+	 * 
+	 * @param str
+	 *            CharSequence 原始字符串
+	 * @param splitsign
+	 *            String 分隔符
+	 * @return int[] 第 i 段为 [offsets[2i], offsets[2i+1])
+	 */
+	public static int[] splitOffsets(CharSequence str, String splitsign) {
 		if (str == null || splitsign == null) {
 			return null;
 		}
-		ArrayList al = new ArrayList();
-		while ((index = str.indexOf(splitsign)) != -1) {
-			al.add(str.substring(0, index));
-			str = str.substring(index + splitsign.length());
+		if (splitsign.length() == 0) {
+			return new int[] { 0, str.length() };
+		}
+		int[] offsets = new int[(count(str, splitsign) + 1) * 2];
+		int start = 0;
+		int index;
+		int n = 0;
+		while ((index = indexOf(str, splitsign, start)) != -1) {
+			offsets[n++] = start;
+			offsets[n++] = index;
+			start = index + splitsign.length();
+		}
+		offsets[n++] = start;
+		offsets[n] = str.length();
+		return offsets;
+	}
+
+	/**
+	 * 功能描述：分割字符串，各段为原始字符串的视图，取用时才生成，不复制字符
+	 * 
+	 * @param str
+	 *            CharSequence 原始字符串
+	 * @param splitsign
+	 *            String 分隔符
+	 * @return List 各段，只读
+	 */
+	public static List<CharSequence> splitView(final CharSequence str,
+			String splitsign) {
+		final int[] offsets = splitOffsets(str, splitsign);
+		if (offsets == null) {
+			return null;
+		}
+		return new SliceList(str, offsets);
+	}
+
+	/**
+	 * 功能描述：逐个取出分割后的各段，不建数组，见 TokenIterator
+	 * 
+	 * @param str
+	 *            CharSequence 原始字符串
+	 * @param splitsign
+	 *            String 分隔符，不能为空串
+	 * @return TokenIterator
+	 */
+	public static TokenIterator tokens(CharSequence str, String splitsign) {
+		return new TokenIterator(str, splitsign);
+	}
+
+	/**
+	 * 分隔符出现的次数，不重叠
+	 */
+	private static int count(CharSequence str, String splitsign) {
+		int count = 0;
+		int index = 0;
+		while ((index = indexOf(str, splitsign, index)) != -1) {
+			count++;
+			index += splitsign.length();
+		}
+		return count;
+	}
+
+	/**
+	 * 在字符序列中从 from 起查找 target，String 直接用 String.indexOf
+	 */
+	static int indexOf(CharSequence str, String target, int from) {
+		if (str instanceof String) {
+			return ((String) str).indexOf(target, from);
+		}
+		int length = target.length();
+		if (length == 0) {
+			return from <= str.length() ? from : -1;
+		}
+		char first = target.charAt(0);
+		int last = str.length() - length;
+		for (int i = from; i <= last; i++) {
+			if (str.charAt(i) != first) {
+				continue;
+			}
+			int k = 1;
+			while (k < length && str.charAt(i + k) == target.charAt(k)) {
+				k++;
+			}
+			if (k == length) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static final class SliceList extends AbstractList<CharSequence>
+			implements RandomAccess {
+
+		private final CharSequence str;
+
+		private final int[] offsets;
+
+		SliceList(CharSequence str, int[] offsets) {
+			this.str = str;
+			this.offsets = offsets;
+		}
+
+		public CharSequence get(int index) {
+			if (index < 0 || index >= size()) {
+				throw new IndexOutOfBoundsException("Index: " + index
+						+ ", Size: " + size());
+			}
+			return new StringSlice(str, offsets[index * 2],
+					offsets[index * 2 + 1]);
+		}
+
+		public int size() {
+			return offsets.length / 2;
 		}
-		al.add(str);
-		return (String[]) al.toArray(new String[0]);
 	}
 
 	/**
@@ -72,17 +206,49 @@ public class StringUtil {
 	public static String replace(String from, String to, String source) {
 		if (source == null || from == null || to == null)
 			return null;
-		StringBuffer str = new StringBuffer("");
-		int index = -1;
-		while ((index = source.indexOf(from)) != -1) {
-			str.append(source.substring(0, index) + to);
-			source = source.substring(index + from.length());
-			index = source.indexOf(from);
+		int index = from.length() == 0 ? -1 : source.indexOf(from);
+		if (index == -1) {
+			return source;
 		}
-		str.append(source);
+		int growth = to.length() - from.length();
+		StringBuilder str = new StringBuilder(source.length()
+				+ (growth > 0 ? growth * 16 : 0));
+		replace(from, to, source, index, str);
 		return str.toString();
 	}
 
+	/**
+	 * 功能描述：替换字符串，结果追加到 out，可复用同一个 StringBuilder 处理多条记录
+	 * 
+	 * @param from
+	 *            String 原始字符串
+	 * @param to
+	 *            String 目标字符串
+	 * @param source
+	 *            CharSequence 母字符串
+	 * @param out
+	 *            StringBuilder 结果
+	 */
+	public static void replace(String from, String to, CharSequence source,
+			StringBuilder out) {
+		if (from.length() == 0) {
+			out.append(source);
+			return;
+		}
+		replace(from, to, source, indexOf(source, from, 0), out);
+	}
+
+	private static void replace(String from, String to, CharSequence source,
+			int index, StringBuilder out) {
+		int start = 0;
+		while (index != -1) {
+			out.append(source, start, index).append(to);
+			start = index + from.length();
+			index = indexOf(source, from, start);
+		}
+		out.append(source, start, source.length());
+	}
+
 	/**
 	 * 替换字符串，能能够在HTML页面上直接显示(替换双引号和小于号)
 	 * 
@@ -94,7 +260,21 @@ public class StringUtil {
 		if (str == null) {
 			return null;
 		}
-		return replace("\"", "&quot;", replace("<", "&lt;", str));
+		return HtmlEscaper.HTML_ENCODE.apply(str);
+	}
+
+	/**
+	 * 功能描述：同 htmlencode，结果写入 out（如 Writer）
+	 * 
+	 * @param str
+	 *            CharSequence 原始字符串
+	 * @param out
+	 *            Appendable 输出
+	 * @throws IOException
+	 */
+	public static void htmlencode(CharSequence str, Appendable out)
+			throws IOException {
+		HtmlEscaper.HTML_ENCODE.apply(str, out);
 	}
 
 	/**
@@ -108,11 +288,22 @@ public class StringUtil {
 		if (str == null) {
 			return null;
 		}
-
-		return replace("&quot;", "\"", replace("&lt;", "<", str));
+		return HtmlEscaper.HTML_DECODE.apply(str);
 	}
 
-	private static final String _BR = "<br/>";
+	/**
+	 * 功能描述：同 htmldecode，结果写入 out（如 Writer）
+	 * 
+	 * @param str
+	 *            CharSequence 原始字符串
+	 * @param out
+	 *            Appendable 输出
+	 * @throws IOException
+	 */
+	public static void htmldecode(CharSequence str, Appendable out)
+			throws IOException {
+		HtmlEscaper.HTML_DECODE.apply(str, out);
+	}
 
 	/**
 	 * 功能描述：在页面上直接显示文本内容，替换小于号，空格，回车，TAB
@@ -125,17 +316,25 @@ public class StringUtil {
 		if (str == null) {
 			return null;
 		}
+		return HtmlEscaper.HTML_SHOW.apply(str);
+	}
 
-		str = replace("<", "&lt;", str);
-		str = replace(" ", "&nbsp;", str);
-		str = replace("\r\n", _BR, str);
-		str = replace("\n", _BR, str);
-		str = replace("\t", "&nbsp;&nbsp;&nbsp;&nbsp;", str);
-		return str;
+	/**
+	 * 功能描述：同 htmlshow，结果写入 out（如 Writer）
+	 * 
+	 * @param str
+	 *            CharSequence 原始字符串
+	 * @param out
+	 *            Appendable 输出
+	 * @throws IOException
+	 */
+	public static void htmlshow(CharSequence str, Appendable out)
+			throws IOException {
+		HtmlEscaper.HTML_SHOW.apply(str, out);
 	}
 
 	/**
-	 * 功能描述：返回指定字节长度的字符串
+	 * 功能描述：返回指定字节长度的字符串，按GBK编码计算，超长时截断并以 ... 结尾
 	 * 
 	 * @param str
 	 *            String 字符串
@@ -144,36 +343,28 @@ public class StringUtil {
 	 * @return String 返回的字符串
 	 */
 	public static String toLength(String str, int length) {
+		return toLength(str, length, GBK);
+	}
+
+	/**
+	 * 功能描述：返回按指定字符集编码后不超过指定字节数的字符串，超长时截断并以 ... 结尾
+	 * 
+	 * @param str
+	 *            String 字符串
+	 * @param length
+	 *            int 指定字节数
+	 * @param charset
+	 *            Charset 字符集
+	 * @return String 返回的字符串
+	 */
+	public static String toLength(String str, int length, Charset charset) {
 		if (str == null) {
 			return null;
 		}
 		if (length <= 0) {
 			return "";
 		}
-		try {
-			if (str.getBytes("GBK").length <= length) {
-				return str;
-			}
-		} catch (Exception e) {
-		}
-		StringBuffer buff = new StringBuffer();
-
-		int index = 0;
-		char c;
-		length -= 3;
-		while (length > 0) {
-			c = str.charAt(index);
-			if (c < 128) {
-				length--;
-			} else {
-				length--;
-				length--;
-			}
-			buff.append(c);
-			index++;
-		}
-		buff.append("...");
-		return buff.toString();
+		return ByteTruncator.get(charset).truncate(str, length, "...");
 	}
 
 	/**
@@ -184,8 +375,7 @@ public class StringUtil {
 	 * @return 是整数返回true,否则返回false
 	 */
 	public static boolean isInteger(String str) {
-		Pattern pattern = Pattern.compile("^[-\\+]?[\\d]+$");
-		return pattern.matcher(str).matches();
+		return StringValidator.INTEGER.isValid(str);
 	}
 
 	/**
@@ -196,69 +386,27 @@ public class StringUtil {
 	 * @return 是浮点数返回true,否则返回false
 	 */
 	public static boolean isDouble(String str) {
-		Pattern pattern = Pattern.compile("^[-\\+]?\\d+\\.\\d+$");
-		return pattern.matcher(str).matches();
+		return StringValidator.DOUBLE.isValid(str);
 	}
 
 	/**
 	 * 判断是不是合法字符 c 要判断的字符
 	 */
 	public static boolean isLetter(String str) {
-		if (str == null || str.length() < 0) {
-			return false;
-		}
-		Pattern pattern = Pattern.compile("[\\w\\.-_]*");
-		return pattern.matcher(str).matches();
+		return StringValidator.LETTER.isValid(str);
 	}
 
 	/**
-	 * 从指定的字符串中提取Email content 指定的字符串
+	 * 从指定的字符串中提取第一个Email content 指定的字符串，全部提取见 EmailExtractor
 	 * 
 	 * @param content
 	 * @return
 	 */
 	public static String parse(String content) {
-		String email = null;
 		if (content == null || content.length() < 1) {
-			return email;
-		}
-		// 找出含有@
-		int beginPos;
-		int i;
-		String token = "@";
-		String preHalf = "";
-		String sufHalf = "";
-
-		beginPos = content.indexOf(token);
-		if (beginPos > -1) {
-			// 前项扫描
-			String s = null;
-			i = beginPos;
-			while (i > 0) {
-				s = content.substring(i - 1, i);
-				if (isLetter(s))
-					preHalf = s + preHalf;
-				else
-					break;
-				i--;
-			}
-			// 后项扫描
-			i = beginPos + 1;
-			while (i < content.length()) {
-				s = content.substring(i, i + 1);
-				if (isLetter(s))
-					sufHalf = sufHalf + s;
-				else
-					break;
-				i++;
-			}
-			// 判断合法性
-			email = preHalf + "@" + sufHalf;
-			if (isEmail(email)) {
-				return email;
-			}
+			return null;
 		}
-		return null;
+		return EmailExtractor.first(content);
 	}
 
 	/**
@@ -269,12 +417,7 @@ public class StringUtil {
 	 * @return 是Email样式返回true,否则返回false
 	 */
 	public static boolean isEmail(String email) {
-		if (email == null || email.length() < 1 || email.length() > 256) {
-			return false;
-		}
-		Pattern pattern = Pattern
-				.compile("^\\w+([-+.]\\w+)*@\\w+([-.]\\w+)*\\.\\w+([-.]\\w+)*$");
-		return pattern.matcher(email).matches();
+		return StringValidator.EMAIL.isValid(email);
 	}
 
 	/**
@@ -285,8 +428,7 @@ public class StringUtil {
 	 * @return 如果是纯汉字返回true,否则返回false
 	 */
 	public static boolean isChinese(String str) {
-		Pattern pattern = Pattern.compile("[\u0391-\uFFE5]+$");
-		return pattern.matcher(str).matches();
+		return StringValidator.CHINESE.isValid(str);
 	}
 
 	/**
@@ -300,126 +442,34 @@ public class StringUtil {
 	}
 
 	/**
-	 * 功能描述：判断是否为质数
+	 * 功能描述：判断是否为质数，批量及区间运算见 PrimeSieve
 	 * 
 	 * @param x
 	 * @return
 	 */
 	public static boolean isPrime(int x) {
-		if (x <= 7) {
-			if (x == 2 || x == 3 || x == 5 || x == 7)
-				return true;
-		}
-		int c = 7;
-		if (x % 2 == 0)
-			return false;
-		if (x % 3 == 0)
-			return false;
-		if (x % 5 == 0)
-			return false;
-		int end = (int) Math.sqrt(x);
-		while (c <= end) {
-			if (x % c == 0) {
-				return false;
-			}
-			c += 4;
-			if (x % c == 0) {
-				return false;
-			}
-			c += 2;
-			if (x % c == 0) {
-				return false;
-			}
-			c += 4;
-			if (x % c == 0) {
-				return false;
-			}
-			c += 2;
-			if (x % c == 0) {
-				return false;
-			}
-			c += 4;
-			if (x % c == 0) {
-				return false;
-			}
-			c += 6;
-			if (x % c == 0) {
-				return false;
-			}
-			c += 2;
-			if (x % c == 0) {
-				return false;
-			}
-			c += 6;
-		}
-		return true;
+		return PrimeSieve.isPrime(x);
 	}
 
 	/**
-	 * 功能描述：人民币转成大写
+	 * 功能描述：人民币转成大写，按四舍五入保留到分，见 ChineseAmountFormat
 	 * 
 	 * @param str
 	 *            数字字符串
-	 * @return String 人民币转换成大写后的字符串
+	 * @return String 人民币转换成大写后的字符串，不是数字或超出范围时返回null
 	 */
 	public static String hangeToBig(String str) {
-		double value;
+		BigDecimal value;
 		try {
-			value = Double.parseDouble(str.trim());
+			value = new BigDecimal(str.trim());
 		} catch (Exception e) {
 			return null;
 		}
-		char[] hunit = { '拾', '佰', '仟' }; // 段内位置表示
-		char[] vunit = { '万', '亿' }; // 段名表示
-		char[] digit = { '零', '壹', '贰', '叁', '肆', '伍', '陆', '柒', '捌', '玖' }; // 数字表示
-		long midVal = (long) (value * 100); // 转化成整形
-		String valStr = String.valueOf(midVal); // 转化成字符串
-
-		String head = valStr.substring(0, valStr.length() - 2); // 取整数部分
-		String rail = valStr.substring(valStr.length() - 2); // 取小数部分
-
-		String prefix = ""; // 整数部分转化的结果
-		String suffix = ""; // 小数部分转化的结果
-		// 处理小数点后面的数
-		if (rail.equals("00")) { // 如果小数部分为0
-			suffix = "整";
-		} else {
-			suffix = digit[rail.charAt(0) - '0'] + "角"
-					+ digit[rail.charAt(1) - '0'] + "分"; // 否则把角分转化出来
-		}
-		// 处理小数点前面的数
-		char[] chDig = head.toCharArray(); // 把整数部分转化成字符数组
-		char zero = '0'; // 标志'0'表示出现过0
-		byte zeroSerNum = 0; // 连续出现0的次数
-		for (int i = 0; i < chDig.length; i++) { // 循环处理每个数字
-			int idx = (chDig.length - i - 1) % 4; // 取段内位置
-			int vidx = (chDig.length - i - 1) / 4; // 取段位置
-			if (chDig[i] == '0') { // 如果当前字符是0
-				zeroSerNum++; // 连续0次数递增
-				if (zero == '0') { // 标志
-					zero = digit[0];
-				} else if (idx == 0 && vidx > 0 && zeroSerNum < 4) {
-					prefix += vunit[vidx - 1];
-					zero = '0';
-				}
-				continue;
-			}
-			zeroSerNum = 0; // 连续0次数清零
-			if (zero != '0') { // 如果标志不为0,则加上,例如万,亿什么的
-				prefix += zero;
-				zero = '0';
-			}
-			prefix += digit[chDig[i] - '0']; // 转化该数字表示
-			if (idx > 0)
-				prefix += hunit[idx - 1];
-			if (idx == 0 && vidx > 0) {
-				prefix += vunit[vidx - 1]; // 段结束位置应该加上段名如万,亿
-			}
+		try {
+			return ChineseAmountFormat.format(value);
+		} catch (IllegalArgumentException e) {
+			return null;
 		}
-
-		if (prefix.length() > 0)
-			prefix += '圆'; // 如果整数部分存在,则有圆的字样
-		return prefix + suffix; // 返回正确表示
 	}
 
 	/**
@@ -427,21 +477,32 @@ public class StringUtil {
 	 * 
 	 * @param str
 	 *            原字符串，如果有子字符串则用空格隔开以表示子字符串
-	 * @return String 返回去掉重复子字符串后的字符串
+	 * @return String 返回去掉重复子字符串后的字符串，每个子字符串后跟一个空格；
+	 *         与按空格 split 一致，连续空格间的空子字符串保留一个，末尾的空格忽略，空串返回一个空格；
+	 *         大量数据见 DedupTokenizer
 	 */
 	@SuppressWarnings("unused")
 	private static String removeSameString(String str) {
-		Set<String> mLinkedSet = new LinkedHashSet<String>();// set集合的特征：其子集不可以重复
-		String[] strArray = str.split(" ");// 根据空格(正则表达式)分割字符串
-		StringBuffer sb = new StringBuffer();
-
-		for (int i = 0; i < strArray.length; i++) {
-			if (!mLinkedSet.contains(strArray[i])) {
-				mLinkedSet.add(strArray[i]);
-				sb.append(strArray[i] + " ");
+		int end = str.length();
+		while (end > 0 && str.charAt(end - 1) == ' ') {
+			end--;
+		}
+		if (end == 0) {
+			return str.length() == 0 ? " " : "";
+		}
+		DedupTokenizer tokenizer = new DedupTokenizer(" ");
+		StringBuilder sb = new StringBuilder(end + 1);
+		int start = 0;
+		while (start <= end) {
+			int index = str.indexOf(' ', start);
+			if (index < 0 || index > end) {
+				index = end;
+			}
+			if (tokenizer.add(str, start, index)) {
+				sb.append(str, start, index).append(' ');
 			}
+			start = index + 1;
 		}
-		System.out.println(mLinkedSet);
 		return sb.toString();
 	}
 
@@ -454,45 +515,7 @@ public class StringUtil {
 	public static String encoding(String src) {
 		if (src == null)
 			return "";
-		StringBuilder result = new StringBuilder();
-		if (src != null) {
-			src = src.trim();
-			for (int pos = 0; pos < src.length(); pos++) {
-				switch (src.charAt(pos)) {
-				case '\"':
-					result.append("&quot;");
-					break;
-				case '<':
-					result.append("&lt;");
-					break;
-				case '>':
-					result.append("&gt;");
-					break;
-				case '\'':
-					result.append("&apos;");
-					break;
-				case '&':
-					result.append("&amp;");
-					break;
-				case '%':
-					result.append("&pc;");
-					break;
-				case '_':
-					result.append("&ul;");
-					break;
-				case '#':
-					result.append("&shap;");
-					break;
-				case '?':
-					result.append("&ques;");
-					break;
-				default:
-					result.append(src.charAt(pos));
-					break;
-				}
-			}
-		}
-		return result.toString();
+		return HtmlEscaper.ENCODING.apply(src.trim());
 	}
 
 	/**
@@ -502,15 +525,7 @@ public class StringUtil {
 	 * @return boolean
 	 */
 	public static boolean isHandset(String handset) {
-		try {
-			String regex = "^1[\\d]{10}$";
-			Pattern pattern = Pattern.compile(regex);
-			Matcher matcher = pattern.matcher(handset);
-			return matcher.matches();
-
-		} catch (RuntimeException e) {
-			return false;
-		}
+		return StringValidator.HANDSET.isValid(handset);
 	}
 
 	/**
@@ -522,13 +537,7 @@ public class StringUtil {
 	public static String decoding(String src) {
 		if (src == null)
 			return "";
-		String result = src;
-		result = result.replace("&quot;", "\"").replace("&apos;", "\'");
-		result = result.replace("&lt;", "<").replace("&gt;", ">");
-		result = result.replace("&amp;", "&");
-		result = result.replace("&pc;", "%").replace("&ul", "_");
-		result = result.replace("&shap;", "#").replace("&ques", "?");
-		return result;
+		return HtmlEscaper.DECODING.apply(src);
 	}
 
 	/**
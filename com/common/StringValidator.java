@@ -0,0 +1,303 @@
+package com.common;
+
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.regex.Pattern;
+
+/**
+ * 功能描述：字符串校验器，供 StringUtil 的 isInteger、isDouble、isLetter、isHandset、isEmail、
+ * isChinese 使用
+ * 
+ * 数字、手机号码、合法字符逐字符判断，不用正则；其余校验的正则只编译一次。
+ * 校验器按名称登记，批量校验一列数据时超过 PARALLEL_THRESHOLD 个即并行，结果为位图
+ * 
+ * 校验器无状态，可在线程间共用；null 一律视为不合法
+ * 
+ * @author renms
+ * @version 1.0
+ */
+public abstract class StringValidator {
+
+	/** 批量校验超过此数量时并行 */
+	static final int PARALLEL_THRESHOLD = 8192;
+
+	/** 正则校验器缓存的上限，超过后不再缓存 */
+	static final int MAX_CACHED_PATTERNS = 256;
+
+	private static final ConcurrentHashMap<String, StringValidator> PATTERNS = new ConcurrentHashMap<String, StringValidator>();
+
+	private static final ConcurrentHashMap<String, StringValidator> REGISTRY = new ConcurrentHashMap<String, StringValidator>();
+
+	/** 整数：可带正负号的一个或多个数字 */
+	public static final StringValidator INTEGER = new StringValidator() {
+		public boolean isValid(String str) {
+			return str != null && digits(str, sign(str)) == str.length();
+		}
+	};
+
+	/** 浮点数：可带正负号，小数点前后都有数字 */
+	public static final StringValidator DOUBLE = new StringValidator() {
+		public boolean isValid(String str) {
+			if (str == null) {
+				return false;
+			}
+			int point = digits(str, sign(str));
+			return point > 0 && point < str.length() && str.charAt(point) == '.'
+					&& digits(str, point + 1) == str.length();
+		}
+	};
+
+	/** 合法字符：字母、数字及 . 至 _ 之间的ASCII字符（含 @），可为空串 */
+	public static final StringValidator LETTER = new StringValidator() {
+		public boolean isValid(String str) {
+			if (str == null) {
+				return false;
+			}
+			for (int i = 0; i < str.length(); i++) {
+				if (!isLetter(str.charAt(i))) {
+					return false;
+				}
+			}
+			return true;
+		}
+	};
+
+	/** 手机号码：1开头的11位数字 */
+	public static final StringValidator HANDSET = new StringValidator() {
+		public boolean isValid(String str) {
+			return str != null && str.length() == 11 && str.charAt(0) == '1'
+					&& digits(str, 1) == 11;
+		}
+	};
+
+	/** Email，最长256个字符 */
+	public static final StringValidator EMAIL = new StringValidator() {
+		private final StringValidator pattern = compile("^\\w+([-+.]\\w+)*@\\w+([-.]\\w+)*\\.\\w+([-.]\\w+)*$");
+
+		public boolean isValid(String str) {
+			return str != null && str.length() > 0 && str.length() <= 256
+					&& pattern.isValid(str);
+		}
+	};
+
+	/** 纯汉字（及全角字符） */
+	public static final StringValidator CHINESE = compile("[\u0391-\uFFE5]+$");
+
+	static {
+		register("integer", INTEGER);
+		register("double", DOUBLE);
+		register("letter", LETTER);
+		register("handset", HANDSET);
+		register("email", EMAIL);
+		register("chinese", CHINESE);
+	}
+
+	/**
+	 * 功能描述：校验字符串
+	 * 
+	 * @param str
+	 *            String 字符串
+	 * @return boolean 合法返回true
+	 */
+	public abstract boolean isValid(String str);
+
+	/**
+	 * 功能描述：批量校验
+	 * 
+	 * @param values
+	 *            String[] 字符串
+	 * @return BitSet 第 i 位为 values[i] 是否合法
+	 */
+	public BitSet validate(String[] values) {
+		return validate(values, 0, values.length);
+	}
+
+	/**
+	 * 功能描述：批量校验数组的一段
+	 * 
+	 * @param values
+	 *            String[] 字符串
+	 * @param from
+	 *            int 起始位置
+	 * @param to
+	 *            int 结束位置（不含）
+	 * @return BitSet 第 i 位为 values[from + i] 是否合法
+	 */
+	public BitSet validate(String[] values, int from, int to) {
+		if (from < 0 || to > values.length || from > to) {
+			throw new IndexOutOfBoundsException("from " + from + ", to " + to
+					+ ", length " + values.length);
+		}
+		long[] words = new long[(to - from + 63) >>> 6];
+		if (to - from < PARALLEL_THRESHOLD) {
+			fill(values, from, words, 0, words.length, to);
+		} else {
+			ForkJoinPool.commonPool().invoke(
+					new ValidateTask(this, values, from, to, words, 0,
+							words.length));
+		}
+		return BitSet.valueOf(words);
+	}
+
+	/**
+	 * 功能描述：批量校验，返回合法的个数
+	 * 
+	 * @param values
+	 *            String[] 字符串
+	 * @return int 合法的个数
+	 */
+	public int count(String[] values) {
+		return validate(values).cardinality();
+	}
+
+	/**
+	 * 计算 words[fromWord, toWord)，每个字对应 64 个元素，最后一个字截止到 end
+	 */
+	private void fill(String[] values, int base, long[] words, int fromWord,
+			int toWord, int end) {
+		for (int w = fromWord; w < toWord; w++) {
+			int start = base + (w << 6);
+			int stop = Math.min(start + 64, end);
+			long word = 0;
+			for (int i = start; i < stop; i++) {
+				if (isValid(values[i])) {
+					word |= 1L << (i - start);
+				}
+			}
+			words[w] = word;
+		}
+	}
+
+	/**
+	 * 功能描述：取得正则校验器，同一正则只编译一次
+	 * 
+	 * @param regex
+	 *            String 正则表达式，须整串匹配
+	 * @return StringValidator
+	 */
+	public static StringValidator compile(String regex) {
+		StringValidator validator = PATTERNS.get(regex);
+		if (validator == null) {
+			validator = new PatternValidator(Pattern.compile(regex));
+			if (PATTERNS.size() < MAX_CACHED_PATTERNS) {
+				StringValidator existing = PATTERNS.putIfAbsent(regex,
+						validator);
+				if (existing != null) {
+					validator = existing;
+				}
+			}
+		}
+		return validator;
+	}
+
+	/**
+	 * 功能描述：按名称登记校验器，同名的覆盖
+	 * 
+	 * @param name
+	 *            String 名称
+	 * @param validator
+	 *            StringValidator 校验器
+	 */
+	public static void register(String name, StringValidator validator) {
+		REGISTRY.put(name, validator);
+	}
+
+	/**
+	 * 功能描述：按名称取得校验器，内置 integer、double、letter、handset、email、chinese
+	 * 
+	 * @param name
+	 *            String 名称
+	 * @return StringValidator 未登记时返回null
+	 */
+	public static StringValidator get(String name) {
+		return REGISTRY.get(name);
+	}
+
+	/**
+	 * 开头的正负号占用的字符数
+	 */
+	private static int sign(String str) {
+		if (str.length() > 0) {
+			char c = str.charAt(0);
+			if (c == '+' || c == '-') {
+				return 1;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * 从 i 起连续数字之后的位置，i 处不是数字时返回 -1
+	 */
+	private static int digits(String str, int i) {
+		int start = i;
+		while (i < str.length() && str.charAt(i) >= '0' && str.charAt(i) <= '9') {
+			i++;
+		}
+		return i == start ? -1 : i;
+	}
+
+	/**
+	 * 与原正则 [\w\.-_] 相同：字母、数字、下划线及 '.'(0x2E) 至 '_'(0x5F) 的字符
+	 */
+	private static boolean isLetter(char c) {
+		return (c >= '.' && c <= '_') || (c >= 'a' && c <= 'z');
+	}
+
+	private static final class PatternValidator extends StringValidator {
+
+		private final Pattern pattern;
+
+		PatternValidator(Pattern pattern) {
+			this.pattern = pattern;
+		}
+
+		public boolean isValid(String str) {
+			return str != null && pattern.matcher(str).matches();
+		}
+	}
+
+	private static final class ValidateTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final StringValidator validator;
+
+		private final String[] values;
+
+		private final int base;
+
+		private final int end;
+
+		private final long[] words;
+
+		private final int fromWord;
+
+		private final int toWord;
+
+		ValidateTask(StringValidator validator, String[] values, int base,
+				int end, long[] words, int fromWord, int toWord) {
+			this.validator = validator;
+			this.values = values;
+			this.base = base;
+			this.end = end;
+			this.words = words;
+			this.fromWord = fromWord;
+			this.toWord = toWord;
+		}
+
+		protected void compute() {
+			// 按字拆分，各任务写不同的字，无需同步
+			if ((toWord - fromWord) << 6 <= PARALLEL_THRESHOLD) {
+				validator.fill(values, base, words, fromWord, toWord, end);
+				return;
+			}
+			int mid = (fromWord + toWord) >>> 1;
+			invokeAll(new ValidateTask(validator, values, base, end, words,
+					fromWord, mid), new ValidateTask(validator, values, base,
+					end, words, mid, toWord));
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package com.common;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 功能描述：按分隔符逐个取出字段，与 StringUtil.split 的切分规则相同（相邻分隔符之间为空串，
+ * 首尾分隔符前后各有一个空串），但不建数组、不复制字符
+ * 
+ * next() 每次返回同一个视图对象，只在下一次调用前有效，需要保留时调用其 toString()；
+ * 调用 reset 可换一个字符串继续使用，适合逐行处理大量记录
+ * 
+ * @author renms
+ * @version 1.0
+ */
+public final class TokenIterator implements Iterator<CharSequence> {
+
+	private final String separator;
+
+	private final StringSlice token = new StringSlice("", 0, 0);
+
+	private CharSequence text;
+
+	/** 下一个字段的起点，-1 表示已取完 */
+	private int position;
+
+	private int tokenStart;
+
+	private int tokenEnd;
+
+	/**
+	 * @param text
+	 *            CharSequence 原始字符串
+	 * @param separator
+	 *            String 分隔符，不能为空串
+	 */
+	public TokenIterator(CharSequence text, String separator) {
+		if (separator == null || separator.length() == 0) {
+			throw new IllegalArgumentException("Empty separator");
+		}
+		this.separator = separator;
+		reset(text);
+	}
+
+	/**
+	 * 功能描述：改为遍历另一个字符串
+	 * 
+	 * @param text
+	 *            CharSequence 原始字符串
+	 * @return TokenIterator 本对象
+	 */
+	public TokenIterator reset(CharSequence text) {
+		this.text = text;
+		this.position = 0;
+		return this;
+	}
+
+	public boolean hasNext() {
+		return position >= 0;
+	}
+
+	public CharSequence next() {
+		if (position < 0) {
+			throw new NoSuchElementException();
+		}
+		int index = StringUtil.indexOf(text, separator, position);
+		tokenStart = position;
+		if (index < 0) {
+			tokenEnd = text.length();
+			position = -1;
+		} else {
+			tokenEnd = index;
+			position = index + separator.length();
+		}
+		return token.set(text, tokenStart, tokenEnd);
+	}
+
+	/**
+	 * @return int 当前字段在原始字符串中的起点
+	 */
+	public int start() {
+		return tokenStart;
+	}
+
+	/**
+	 * @return int 当前字段在原始字符串中的终点（不含）
+	 */
+	public int end() {
+		return tokenEnd;
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+}
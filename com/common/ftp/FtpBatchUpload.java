@@ -0,0 +1,269 @@
+package com.common.ftp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 小文件批量上传，在一个会话上依次 STOR 一批文件<br>
+ * 1. 预读：后面若干个文件提前异步读入缓冲池中的缓冲区，超过一个缓冲区大小的文件仍按流方式上传；<br>
+ * 2. 流水线：上一个文件的数据连接关闭后，不等其 226 应答，立即把下一个文件的 PASV 和 STOR 一起发出，
+ * 每个文件只剩约一次往返。流水线模式下出错时会话被关闭，因为已发出的命令的应答无法再对齐
+ *
+ * @author renms
+ * @version 1.0.0
+ */
+final class FtpBatchUpload
+{
+
+	private static final int READ_AHEAD = 16;
+
+	private final FtpSession session;
+
+	private final List<Path> files;
+
+	private final boolean pipelined;
+
+	private final FtpEngine engine;
+
+	private final FtpBufferPool pool;
+
+	private final List<CompletableFuture<ByteBuffer>> loads;
+
+	private final CompletableFuture<Long> result = new CompletableFuture<Long>();
+
+	private long total;
+
+	FtpBatchUpload(FtpSession session, List<Path> files, boolean pipelined)
+	{
+		this.session = session;
+		this.files = files;
+		this.pipelined = pipelined;
+		this.engine = session.getEngine();
+		this.pool = engine.getBufferPool();
+		this.loads = new ArrayList<CompletableFuture<ByteBuffer>>(Collections.nCopies(files.size(),
+				(CompletableFuture<ByteBuffer>) null));
+	}
+
+	CompletableFuture<Long> start()
+	{
+		for (int i = 0; i < READ_AHEAD; i++)
+		{
+			prefetch(i);
+		}
+		next(0, false);
+		return result;
+	}
+
+	/**
+	 * 上传第 i 个文件
+	 *
+	 * @param pendingFinal
+	 *            上一个文件的最终应答是否还未读取（仅流水线模式）
+	 */
+	private void next(final int i, final boolean pendingFinal)
+	{
+		if (i == files.size())
+		{
+			if (!pendingFinal)
+			{
+				result.complete(total);
+				return;
+			}
+			readFinal(i - 1).whenComplete((reply, ex) -> done(ex));
+			return;
+		}
+		prefetch(i + READ_AHEAD);
+		final long start = System.nanoTime();
+		final String stor = storCommand(i);
+		final String pasv = session.passiveCommand();
+		CompletableFuture<FtpReply> passiveReply;
+		if (pipelined)
+		{
+			passiveReply = session.send(pasv + "\r\n" + stor)
+					.thenCompose(v -> pendingFinal ? readFinal(i - 1) : CompletableFuture.completedFuture(null))
+					.thenCompose(v -> session.readReply());
+		}
+		else
+		{
+			passiveReply = session.sendAndRead(pasv);
+		}
+		passiveReply.thenCompose(reply -> {
+			if (pipelined && !reply.isPositiveCompletion())
+			{
+				// STOR 已经发出，读掉它的应答
+				return session.readReply().thenCompose(
+						r -> FtpSession.<AsynchronousSocketChannel> failed(new FtpException(pasv, reply)));
+			}
+			return session.connectPassive(pasv, reply);
+		}).thenCompose(data -> (pipelined ? session.readReply() : session.sendAndRead(stor)).thenCompose(reply -> {
+			FtpSession.expectPreliminary(stor, reply);
+			return send(data, i);
+		}).whenComplete((n, ex) -> FtpSession.closeQuietly(data))).thenCompose(n -> {
+			if (pipelined)
+			{
+				return CompletableFuture.completedFuture(n);
+			}
+			return readFinal(i).thenApply(reply -> n);
+		}).whenComplete((n, ex) -> {
+			if (ex != null)
+			{
+				done(ex);
+				return;
+			}
+			total += n;
+			// 流水线模式下此时 226 尚未读到，若随后失败则整批以失败结束
+			engine.getMetrics().transferred(session.getHost(), "STOR", n, System.nanoTime() - start);
+			next(i + 1, pipelined);
+		});
+	}
+
+	private CompletableFuture<FtpReply> readFinal(final int i)
+	{
+		final String stor = storCommand(i);
+		return session.readReply().thenApply(reply -> {
+			session.track(stor, reply);
+			return FtpSession.expectCompletion(stor, reply);
+		});
+	}
+
+	/**
+	 * 把第 i 个文件写入数据连接并关闭数据连接
+	 */
+	private CompletableFuture<Long> send(final AsynchronousSocketChannel data, final int i)
+	{
+		return loads.get(i).thenCompose(buffer -> {
+			loads.set(i, null);
+			if (buffer == null)
+			{
+				// 大文件：按流方式上传
+				final FileChannel in;
+				try
+				{
+					in = FileChannel.open(files.get(i), StandardOpenOption.READ);
+				}
+				catch (IOException ex)
+				{
+					return FtpSession.<Long> failed(ex);
+				}
+				return FtpSession.pump(data, in, engine, session.newThrottle())
+						.whenComplete((n, ex) -> FtpSession.closeQuietly(in));
+			}
+			final long size = buffer.remaining();
+			final CompletableFuture<Void> written = new CompletableFuture<Void>();
+			// 小文件一次预约整个文件的令牌
+			FtpThrottle throttle = session.newThrottle();
+			long delay = throttle.reserve(buffer.remaining());
+			throttle.close();
+			Runnable write = () -> FtpSession.writeFully(data, buffer, engine.getTimeoutMillis(), written);
+			if (delay > 0)
+			{
+				engine.schedule(write, delay);
+			}
+			else
+			{
+				write.run();
+			}
+			return written.handle((v, ex) -> {
+				pool.release(buffer);
+				if (ex != null)
+				{
+					throw FtpSession.unchecked(ex);
+				}
+				FtpSession.closeQuietly(data);
+				return size;
+			});
+		});
+	}
+
+	private void prefetch(int i)
+	{
+		if (i < files.size() && loads.get(i) == null)
+		{
+			loads.set(i, load(files.get(i)));
+		}
+	}
+
+	/**
+	 * 异步把小文件整个读入一个池化缓冲区；超过缓冲区大小的文件返回null，留待流式上传
+	 */
+	private CompletableFuture<ByteBuffer> load(Path file)
+	{
+		final CompletableFuture<ByteBuffer> future = new CompletableFuture<ByteBuffer>();
+		final AsynchronousFileChannel channel;
+		try
+		{
+			if (Files.size(file) > pool.getBufferSize())
+			{
+				future.complete(null);
+				return future;
+			}
+			channel = AsynchronousFileChannel.open(file, StandardOpenOption.READ);
+		}
+		catch (IOException ex)
+		{
+			future.completeExceptionally(ex);
+			return future;
+		}
+		final ByteBuffer buffer = pool.acquire();
+		channel.read(buffer, 0, null, new CompletionHandler<Integer, Void>()
+		{
+			public void completed(Integer n, Void attachment)
+			{
+				if (n >= 0 && buffer.hasRemaining())
+				{
+					channel.read(buffer, buffer.position(), null, this);
+					return;
+				}
+				FtpSession.closeQuietly(channel);
+				buffer.flip();
+				future.complete(buffer);
+			}
+
+			public void failed(Throwable ex, Void attachment)
+			{
+				FtpSession.closeQuietly(channel);
+				pool.release(buffer);
+				future.completeExceptionally(ex);
+			}
+		});
+		return future;
+	}
+
+	private void done(Throwable ex)
+	{
+		if (ex == null)
+		{
+			result.complete(total);
+			return;
+		}
+		// 归还已预读但未上传的缓冲区
+		for (CompletableFuture<ByteBuffer> load : loads)
+		{
+			if (load != null)
+			{
+				load.thenAccept(buffer -> pool.release(buffer));
+			}
+		}
+		if (pipelined)
+		{
+			session.close();
+		}
+		result.completeExceptionally(FtpSession.unwrap(ex));
+	}
+
+	private String storCommand(int i)
+	{
+		return "STOR " + files.get(i).getFileName();
+	}
+}
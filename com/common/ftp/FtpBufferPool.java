@@ -0,0 +1,68 @@
+package com.common.ftp;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 定长直接缓冲区池，传输和小文件预读共用，避免每次传输分配新的直接内存
+ *
+ * @author renms
+ * @version 1.0.0
+ */
+final class FtpBufferPool
+{
+
+	private final int bufferSize;
+
+	private final int maxPooled;
+
+	private final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+
+	private final AtomicInteger pooled = new AtomicInteger();
+
+	FtpBufferPool(int bufferSize, int maxPooled)
+	{
+		this.bufferSize = bufferSize;
+		this.maxPooled = maxPooled;
+	}
+
+	int getBufferSize()
+	{
+		return bufferSize;
+	}
+
+	/**
+	 * 取得一个已清空的缓冲区，池中没有时新分配
+	 */
+	ByteBuffer acquire()
+	{
+		ByteBuffer buffer = buffers.poll();
+		if (buffer == null)
+		{
+			return ByteBuffer.allocateDirect(bufferSize);
+		}
+		pooled.decrementAndGet();
+		buffer.clear();
+		return buffer;
+	}
+
+	/**
+	 * 归还缓冲区，池满时丢弃
+	 */
+	void release(ByteBuffer buffer)
+	{
+		if (buffer == null || buffer.capacity() != bufferSize)
+		{
+			return;
+		}
+		if (pooled.incrementAndGet() <= maxPooled)
+		{
+			buffers.offer(buffer);
+		}
+		else
+		{
+			pooled.decrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,423 @@
+package com.common.ftp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * 压缩阶段，上传时边读边压缩，下载时边收边解压，本地不产生临时文件<br>
+ * gzip 格式与 gzip 命令兼容（下载时支持多个成员拼接），deflate 为 zlib 格式
+ *
+ * @author renms
+ * @version 1.0.0
+ */
+public class FtpCompressionStage implements FtpStage
+{
+
+	private static final int CHUNK_SIZE = 16 * 1024;
+
+	private static final int GZIP_MAGIC = 0x8b1f;
+
+	private static final int FHCRC = 2;
+
+	private static final int FEXTRA = 4;
+
+	private static final int FNAME = 8;
+
+	private static final int FCOMMENT = 16;
+
+	private final boolean gzip;
+
+	private final int level;
+
+	private FtpCompressionStage(boolean gzip, int level)
+	{
+		this.gzip = gzip;
+		this.level = level;
+	}
+
+	public static FtpCompressionStage gzip()
+	{
+		return gzip(Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * @param level
+	 *            压缩级别 0-9
+	 */
+	public static FtpCompressionStage gzip(int level)
+	{
+		return new FtpCompressionStage(true, level);
+	}
+
+	public static FtpCompressionStage deflate()
+	{
+		return deflate(Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * @param level
+	 *            压缩级别 0-9
+	 */
+	public static FtpCompressionStage deflate(int level)
+	{
+		return new FtpCompressionStage(false, level);
+	}
+
+	public ReadableByteChannel wrapUpload(ReadableByteChannel source)
+	{
+		return new DeflatingChannel(source, new Deflater(level, gzip), gzip);
+	}
+
+	public WritableByteChannel wrapDownload(WritableByteChannel sink)
+	{
+		return new InflatingChannel(sink, new Inflater(gzip), gzip);
+	}
+
+	private static int transfer(ByteBuffer src, ByteBuffer dst)
+	{
+		int n = Math.min(src.remaining(), dst.remaining());
+		ByteBuffer slice = src.duplicate();
+		slice.limit(slice.position() + n);
+		dst.put(slice);
+		src.position(src.position() + n);
+		return n;
+	}
+
+	/**
+	 * 返回 gzip 头部长度，数据不足时返回-1
+	 */
+	private static int gzipHeaderLength(byte[] header) throws IOException
+	{
+		if (header.length < 10)
+		{
+			return -1;
+		}
+		if (((header[0] & 0xff) | (header[1] & 0xff) << 8) != GZIP_MAGIC || header[2] != 8)
+		{
+			throw new ZipException("Not in GZIP format");
+		}
+		int flags = header[3] & 0xff;
+		int pos = 10;
+		if ((flags & FEXTRA) != 0)
+		{
+			if (header.length < pos + 2)
+			{
+				return -1;
+			}
+			pos += 2 + ((header[pos] & 0xff) | (header[pos + 1] & 0xff) << 8);
+		}
+		if ((flags & FNAME) != 0)
+		{
+			pos = skipZeroTerminated(header, pos);
+		}
+		if (pos >= 0 && (flags & FCOMMENT) != 0)
+		{
+			pos = skipZeroTerminated(header, pos);
+		}
+		if (pos >= 0 && (flags & FHCRC) != 0)
+		{
+			pos += 2;
+		}
+		return pos >= 0 && pos <= header.length ? pos : -1;
+	}
+
+	private static int skipZeroTerminated(byte[] bytes, int pos)
+	{
+		for (int i = pos; i < bytes.length; i++)
+		{
+			if (bytes[i] == 0)
+			{
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * 读出时压缩 source 的数据
+	 */
+	private static final class DeflatingChannel implements ReadableByteChannel
+	{
+		private final ReadableByteChannel source;
+
+		private final Deflater deflater;
+
+		private final boolean gzip;
+
+		private final CRC32 crc = new CRC32();
+
+		private final byte[] input = new byte[CHUNK_SIZE];
+
+		private final byte[] output = new byte[CHUNK_SIZE];
+
+		/** 待输出的 gzip 头部或尾部 */
+		private ByteBuffer pending;
+
+		private boolean eof;
+
+		private boolean trailerQueued;
+
+		private boolean open = true;
+
+		DeflatingChannel(ReadableByteChannel source, Deflater deflater, boolean gzip)
+		{
+			this.source = source;
+			this.deflater = deflater;
+			this.gzip = gzip;
+			if (gzip)
+			{
+				pending = ByteBuffer.wrap(new byte[] { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff });
+			}
+		}
+
+		public int read(ByteBuffer dst) throws IOException
+		{
+			int count = 0;
+			while (dst.hasRemaining())
+			{
+				if (pending != null && pending.hasRemaining())
+				{
+					count += transfer(pending, dst);
+					continue;
+				}
+				if (deflater.finished())
+				{
+					if (gzip && !trailerQueued)
+					{
+						trailerQueued = true;
+						pending = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+						pending.putInt((int) crc.getValue()).putInt((int) deflater.getBytesRead()).flip();
+						continue;
+					}
+					return count == 0 ? -1 : count;
+				}
+				if (!eof && deflater.needsInput())
+				{
+					int n = source.read(ByteBuffer.wrap(input));
+					if (n < 0)
+					{
+						eof = true;
+						deflater.finish();
+					}
+					else if (n == 0)
+					{
+						break;
+					}
+					else
+					{
+						crc.update(input, 0, n);
+						deflater.setInput(input, 0, n);
+					}
+					continue;
+				}
+				int n = deflater.deflate(output, 0, Math.min(output.length, dst.remaining()));
+				dst.put(output, 0, n);
+				count += n;
+			}
+			return count;
+		}
+
+		public boolean isOpen()
+		{
+			return open;
+		}
+
+		public void close() throws IOException
+		{
+			if (open)
+			{
+				open = false;
+				deflater.end();
+				source.close();
+			}
+		}
+	}
+
+	/**
+	 * 写入时解压，解压后的数据写入 sink；关闭时检查数据是否完整
+	 */
+	private static final class InflatingChannel implements WritableByteChannel
+	{
+		private static final int HEADER = 0;
+
+		private static final int BODY = 1;
+
+		private static final int TRAILER = 2;
+
+		private static final int END = 3;
+
+		private final WritableByteChannel sink;
+
+		private final Inflater inflater;
+
+		private final boolean gzip;
+
+		private final CRC32 crc = new CRC32();
+
+		private final byte[] input = new byte[CHUNK_SIZE];
+
+		private final byte[] output = new byte[CHUNK_SIZE];
+
+		/** 未收全的 gzip 头部或尾部 */
+		private final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+
+		private int state;
+
+		/** 是否停在一个完整的压缩流之后 */
+		private boolean complete;
+
+		private boolean open = true;
+
+		InflatingChannel(WritableByteChannel sink, Inflater inflater, boolean gzip)
+		{
+			this.sink = sink;
+			this.inflater = inflater;
+			this.gzip = gzip;
+			this.state = gzip ? HEADER : BODY;
+		}
+
+		public int write(ByteBuffer src) throws IOException
+		{
+			int written = src.remaining();
+			while (src.hasRemaining())
+			{
+				int n = Math.min(src.remaining(), input.length);
+				src.get(input, 0, n);
+				process(input, 0, n);
+			}
+			return written;
+		}
+
+		private void process(byte[] bytes, int off, int len) throws IOException
+		{
+			while (len > 0)
+			{
+				complete = false;
+				if (state == HEADER)
+				{
+					frame.write(bytes, off, len);
+					byte[] header = frame.toByteArray();
+					int headerLength = gzipHeaderLength(header);
+					if (headerLength < 0)
+					{
+						return;
+					}
+					frame.reset();
+					state = BODY;
+					bytes = header;
+					off = headerLength;
+					len = header.length - headerLength;
+				}
+				else if (state == BODY)
+				{
+					inflater.setInput(bytes, off, len);
+					inflate();
+					if (!inflater.finished())
+					{
+						return;
+					}
+					int rest = inflater.getRemaining();
+					off += len - rest;
+					len = rest;
+					state = gzip ? TRAILER : END;
+					complete = !gzip;
+				}
+				else if (state == TRAILER)
+				{
+					int n = Math.min(8 - frame.size(), len);
+					frame.write(bytes, off, n);
+					off += n;
+					len -= n;
+					if (frame.size() == 8)
+					{
+						checkTrailer();
+						frame.reset();
+						inflater.reset();
+						crc.reset();
+						state = HEADER;
+						complete = true;
+					}
+				}
+				else
+				{
+					throw new ZipException("Unexpected data after end of compressed stream");
+				}
+			}
+		}
+
+		private void inflate() throws IOException
+		{
+			try
+			{
+				while (!inflater.finished() && !inflater.needsInput())
+				{
+					int n = inflater.inflate(output);
+					if (n == 0 && inflater.needsDictionary())
+					{
+						throw new ZipException("Preset dictionary is not supported");
+					}
+					if (gzip)
+					{
+						crc.update(output, 0, n);
+					}
+					ByteBuffer buffer = ByteBuffer.wrap(output, 0, n);
+					while (buffer.hasRemaining())
+					{
+						sink.write(buffer);
+					}
+				}
+			}
+			catch (DataFormatException ex)
+			{
+				throw new ZipException(ex.getMessage());
+			}
+		}
+
+		private void checkTrailer() throws IOException
+		{
+			ByteBuffer trailer = ByteBuffer.wrap(frame.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+			long expectedCrc = trailer.getInt() & 0xffffffffL;
+			long expectedSize = trailer.getInt() & 0xffffffffL;
+			if (expectedCrc != crc.getValue() || expectedSize != (inflater.getBytesWritten() & 0xffffffffL))
+			{
+				throw new ZipException("Corrupt GZIP trailer");
+			}
+		}
+
+		public boolean isOpen()
+		{
+			return open;
+		}
+
+		public void close() throws IOException
+		{
+			if (!open)
+			{
+				return;
+			}
+			open = false;
+			try
+			{
+				if (!complete)
+				{
+					throw new EOFException("Unexpected end of compressed stream");
+				}
+			}
+			finally
+			{
+				inflater.end();
+				sink.close();
+			}
+		}
+	}
+}
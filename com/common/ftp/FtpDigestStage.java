@@ -0,0 +1,138 @@
+package com.common.ftp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.common.MD5;
+
+/**
+ * 摘要阶段，数据原样通过，同时计算经过本阶段的数据的摘要（默认MD5）<br>
+ * 放在压缩阶段之前得到原文件的摘要，放在之后得到服务器上压缩文件的摘要
+ *
+ * @author renms
+ * @version 1.0.0
+ */
+public class FtpDigestStage implements FtpStage
+{
+
+	private final MessageDigest digest;
+
+	private byte[] result;
+
+	/**
+	 * MD5 摘要
+	 */
+	public FtpDigestStage()
+	{
+		try
+		{
+			this.digest = MessageDigest.getInstance("MD5");
+		}
+		catch (NoSuchAlgorithmException ex)
+		{
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	/**
+	 * @param algorithm
+	 *            摘要算法，如 SHA-256
+	 * @throws NoSuchAlgorithmException
+	 */
+	public FtpDigestStage(String algorithm) throws NoSuchAlgorithmException
+	{
+		this.digest = MessageDigest.getInstance(algorithm);
+	}
+
+	public ReadableByteChannel wrapUpload(final ReadableByteChannel source)
+	{
+		reset();
+		return new ReadableByteChannel()
+		{
+			public int read(ByteBuffer dst) throws IOException
+			{
+				int start = dst.position();
+				int n = source.read(dst);
+				if (n > 0)
+				{
+					ByteBuffer view = dst.duplicate();
+					view.flip();
+					view.position(start);
+					digest.update(view);
+				}
+				return n;
+			}
+
+			public boolean isOpen()
+			{
+				return source.isOpen();
+			}
+
+			public void close() throws IOException
+			{
+				source.close();
+			}
+		};
+	}
+
+	public WritableByteChannel wrapDownload(final WritableByteChannel sink)
+	{
+		reset();
+		return new WritableByteChannel()
+		{
+			public int write(ByteBuffer src) throws IOException
+			{
+				int start = src.position();
+				int n = sink.write(src);
+				if (n > 0)
+				{
+					ByteBuffer view = src.duplicate();
+					view.limit(start + n);
+					view.position(start);
+					digest.update(view);
+				}
+				return n;
+			}
+
+			public boolean isOpen()
+			{
+				return sink.isOpen();
+			}
+
+			public void close() throws IOException
+			{
+				sink.close();
+			}
+		};
+	}
+
+	/**
+	 * 本次传输的摘要，须在传输完成后调用
+	 */
+	public byte[] getDigest()
+	{
+		if (result == null)
+		{
+			result = digest.digest();
+		}
+		return result.clone();
+	}
+
+	/**
+	 * 本次传输摘要的十六进制小写字符串，与 MD5.getByteArrayMD5 的格式相同
+	 */
+	public String getHex()
+	{
+		return MD5.toHex(getDigest());
+	}
+
+	private void reset()
+	{
+		digest.reset();
+		result = null;
+	}
+}
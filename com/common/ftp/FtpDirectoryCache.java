@@ -0,0 +1,88 @@
+package com.common.ftp;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 会话级目录列表缓存，按目录绝对路径保存，过期时间很短<br>
+ * 会话上执行的 STOR、DELE、MKD、RMD、RNFR/RNTO 等会自动让相关目录失效；
+ * 其它客户端对服务器的修改只能等过期，ttl 为 0 表示不缓存
+ *
+ * @author renms
+ * @version 1.0.0
+ */
+public class FtpDirectoryCache
+{
+
+	public static final long DEFAULT_TTL_MILLIS = 5000L;
+
+	private final ConcurrentMap<String, Item> items = new ConcurrentHashMap<String, Item>();
+
+	private volatile long ttlMillis = DEFAULT_TTL_MILLIS;
+
+	public long getTtlMillis()
+	{
+		return ttlMillis;
+	}
+
+	public void setTtlMillis(long ttlMillis)
+	{
+		this.ttlMillis = ttlMillis;
+		if (ttlMillis <= 0)
+		{
+			items.clear();
+		}
+	}
+
+	/**
+	 * 取得未过期的列表，没有时返回null
+	 *
+	 * @param dirPath
+	 *            目录绝对路径
+	 */
+	public List<FtpFileEntry> get(String dirPath)
+	{
+		Item item = items.get(dirPath);
+		if (item == null)
+		{
+			return null;
+		}
+		if (System.nanoTime() - item.loaded > ttlMillis * 1000000L)
+		{
+			items.remove(dirPath, item);
+			return null;
+		}
+		return item.entries;
+	}
+
+	public void put(String dirPath, List<FtpFileEntry> entries)
+	{
+		if (ttlMillis > 0)
+		{
+			items.put(dirPath, new Item(entries));
+		}
+	}
+
+	public void invalidate(String dirPath)
+	{
+		items.remove(dirPath);
+	}
+
+	public void clear()
+	{
+		items.clear();
+	}
+
+	private static final class Item
+	{
+		final List<FtpFileEntry> entries;
+
+		final long loaded = System.nanoTime();
+
+		Item(List<FtpFileEntry> entries)
+		{
+			this.entries = entries;
+		}
+	}
+}
@@ -0,0 +1,347 @@
+package com.common.ftp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.InterruptedByTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于 NIO2（AsynchronousSocketChannel）的FTP协议引擎<br>
+ * 引擎内所有会话的控制连接和数据连接共用一个 AsynchronousChannelGroup，
+ * 少量I/O线程即可驱动成千上万个并发会话，不依赖 sun.net.ftp 等JDK内部类
+ *
+ * @author renms
+ * @version 1.0.0
+ */
+public class FtpEngine implements Closeable
+{
+
+	public static final int DEFAULT_PORT = 21;
+
+	private static final AtomicInteger ENGINE_SEQ = new AtomicInteger();
+
+	private static volatile FtpEngine defaultEngine;
+
+	private final AsynchronousChannelGroup group;
+
+	private volatile long timeoutMillis = 60000L;
+
+	private volatile FtpMetrics metrics = FtpMetrics.NONE;
+
+	private final FtpBufferPool bufferPool = new FtpBufferPool(FtpSession.TRANSFER_BUFFER_SIZE, 1024);
+
+	private final FtpRateLimiter rateLimiter = new FtpRateLimiter();
+
+	private final ConcurrentHashMap<String, FtpRateLimiter> hostRateLimiters = new ConcurrentHashMap<String, FtpRateLimiter>();
+
+	/** 限速时延后继续传输，不占用I/O线程 */
+	private final ScheduledExecutorService timer;
+
+	/**
+	 * 创建引擎
+	 *
+	 * @param threads
+	 *            I/O线程数
+	 * @throws IOException
+	 */
+	public FtpEngine(int threads) throws IOException
+	{
+		int engineId = ENGINE_SEQ.incrementAndGet();
+		this.group = AsynchronousChannelGroup.withFixedThreadPool(threads,
+				new EngineThreadFactory("ftp-engine-" + engineId + "-"));
+		this.timer = Executors.newSingleThreadScheduledExecutor(new EngineThreadFactory("ftp-timer-" + engineId + "-"));
+	}
+
+	/**
+	 * 取得进程内共享的默认引擎，线程数等于CPU核数，线程为守护线程
+	 */
+	public static FtpEngine getDefault() throws IOException
+	{
+		FtpEngine engine = defaultEngine;
+		if (engine == null)
+		{
+			synchronized (FtpEngine.class)
+			{
+				engine = defaultEngine;
+				if (engine == null)
+				{
+					engine = new FtpEngine(Runtime.getRuntime().availableProcessors());
+					defaultEngine = engine;
+				}
+			}
+		}
+		return engine;
+	}
+
+	/**
+	 * 建立控制连接并读取欢迎应答
+	 *
+	 * @param host
+	 *            服务器地址
+	 * @param port
+	 *            服务器FTP端口号
+	 * @return 未登录的会话
+	 */
+	public CompletableFuture<FtpSession> open(final String host, final int port)
+	{
+		final CompletableFuture<FtpSession> future = new CompletableFuture<FtpSession>();
+		final long start = System.nanoTime();
+		final AsynchronousSocketChannel channel;
+		try
+		{
+			channel = newChannel();
+		}
+		catch (IOException ex)
+		{
+			metrics.failed(host, "CONNECT", -1);
+			future.completeExceptionally(ex);
+			return future;
+		}
+		connect(channel, new InetSocketAddress(host, port), new CompletionHandler<Void, Void>()
+		{
+			public void completed(Void result, Void attachment)
+			{
+				final FtpSession session = new FtpSession(FtpEngine.this, channel, host);
+				session.readReply().whenComplete((reply, ex) -> {
+					if (ex != null)
+					{
+						session.close();
+						metrics.failed(host, "CONNECT", -1);
+						future.completeExceptionally(ex);
+					}
+					else if (!reply.isPositiveCompletion())
+					{
+						session.close();
+						metrics.failed(host, "CONNECT", reply.getCode());
+						future.completeExceptionally(new FtpException("CONNECT", reply));
+					}
+					else
+					{
+						metrics.connected(host, System.nanoTime() - start);
+						future.complete(session);
+					}
+				});
+			}
+
+			public void failed(Throwable ex, Void attachment)
+			{
+				FtpSession.closeQuietly(channel);
+				metrics.failed(host, "CONNECT", -1);
+				future.completeExceptionally(ex);
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * 建立控制连接、登录并切换为二进制传输
+	 *
+	 * @param host
+	 *            服务器地址
+	 * @param port
+	 *            服务器FTP端口号
+	 * @param user
+	 *            登陆用户
+	 * @param password
+	 *            密码
+	 * @return 已登录的会话
+	 */
+	public CompletableFuture<FtpSession> open(final String host, int port, final String user, final String password)
+	{
+		return open(host, port).thenCompose(session -> {
+			final long start = System.nanoTime();
+			return session.login(user, password)
+					.thenCompose(v -> session.binary())
+					.handle((v, ex) -> {
+						if (ex != null)
+						{
+							session.close();
+							throw FtpSession.unchecked(ex);
+						}
+						metrics.loggedIn(host, System.nanoTime() - start);
+						return session;
+					});
+		});
+	}
+
+	/**
+	 * 建立连接、控制连接单次读写及数据连接的超时时间（毫秒）
+	 */
+	public long getTimeoutMillis()
+	{
+		return timeoutMillis;
+	}
+
+	public void setTimeoutMillis(long timeoutMillis)
+	{
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * 引擎内全部传输共用的限速器，默认不限速
+	 */
+	public FtpRateLimiter getRateLimiter()
+	{
+		return rateLimiter;
+	}
+
+	/**
+	 * 连接同一服务器的全部传输共用的限速器，默认不限速
+	 *
+	 * @param host
+	 *            服务器地址，与 open 时使用的一致
+	 */
+	public FtpRateLimiter getHostRateLimiter(String host)
+	{
+		FtpRateLimiter limiter = hostRateLimiters.get(host);
+		if (limiter == null)
+		{
+			FtpRateLimiter created = new FtpRateLimiter();
+			limiter = hostRateLimiters.putIfAbsent(host, created);
+			if (limiter == null)
+			{
+				limiter = created;
+			}
+		}
+		return limiter;
+	}
+
+	/**
+	 * 延后执行；引擎已关闭时立即执行，随后的I/O会因连接已关闭而失败
+	 *
+	 * @return 可用于取消的句柄，已立即执行时为 null
+	 */
+	Future<?> schedule(Runnable task, long delayNanos)
+	{
+		try
+		{
+			return timer.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+		}
+		catch (RejectedExecutionException ex)
+		{
+			task.run();
+			return null;
+		}
+	}
+
+	/**
+	 * 度量回调，默认 FtpMetrics.NONE
+	 */
+	public FtpMetrics getMetrics()
+	{
+		return metrics;
+	}
+
+	public void setMetrics(FtpMetrics metrics)
+	{
+		this.metrics = metrics == null ? FtpMetrics.NONE : metrics;
+	}
+
+	FtpBufferPool getBufferPool()
+	{
+		return bufferPool;
+	}
+
+	AsynchronousSocketChannel newChannel() throws IOException
+	{
+		AsynchronousSocketChannel channel = AsynchronousSocketChannel.open(group);
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, Boolean.TRUE);
+		channel.setOption(StandardSocketOptions.SO_KEEPALIVE, Boolean.TRUE);
+		return channel;
+	}
+
+	/**
+	 * 带超时的连接：超过 timeoutMillis 仍未连上时关闭通道，以 InterruptedByTimeoutException 失败；
+	 * handler 只会被回调一次
+	 */
+	void connect(final AsynchronousSocketChannel channel, InetSocketAddress address,
+			final CompletionHandler<Void, Void> handler)
+	{
+		final AtomicBoolean done = new AtomicBoolean();
+		long timeout = timeoutMillis;
+		final Future<?> timeoutTask = timeout <= 0 ? null : schedule(() -> {
+			if (done.compareAndSet(false, true))
+			{
+				FtpSession.closeQuietly(channel);
+				handler.failed(new InterruptedByTimeoutException(), null);
+			}
+		}, TimeUnit.MILLISECONDS.toNanos(timeout));
+		channel.connect(address, null, new CompletionHandler<Void, Void>()
+		{
+			public void completed(Void result, Void attachment)
+			{
+				if (done.compareAndSet(false, true))
+				{
+					cancel(timeoutTask);
+					handler.completed(result, null);
+				}
+			}
+
+			public void failed(Throwable ex, Void attachment)
+			{
+				if (done.compareAndSet(false, true))
+				{
+					cancel(timeoutTask);
+					handler.failed(ex, null);
+				}
+			}
+		});
+	}
+
+	private static void cancel(Future<?> task)
+	{
+		if (task != null)
+		{
+			task.cancel(false);
+		}
+	}
+
+	/**
+	 * 关闭引擎，引擎上所有未关闭的连接随之关闭
+	 */
+	public void close() throws IOException
+	{
+		synchronized (FtpEngine.class)
+		{
+			if (defaultEngine == this)
+			{
+				defaultEngine = null;
+			}
+		}
+		timer.shutdownNow();
+		group.shutdownNow();
+	}
+
+	private static class EngineThreadFactory implements ThreadFactory
+	{
+		private final String prefix;
+
+		private final AtomicInteger threadSeq = new AtomicInteger();
+
+		EngineThreadFactory(String prefix)
+		{
+			this.prefix = prefix;
+		}
+
+		public Thread newThread(Runnable r)
+		{
+			Thread t = new Thread(r, prefix + threadSeq.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package com.common.ftp;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * FTP服务器返回否定应答（4xx/5xx）或应答不符合协议时抛出
+ *
+ * @author renms
+ * @version 1.0.0
+ */
+public class FtpException extends IOException
+{
+
+	private static final long serialVersionUID = 1L;
+
+	private final int replyCode;
+
+	private final String command;
+
+	public FtpException(String message)
+	{
+		super(message);
+		this.replyCode = -1;
+		this.command = null;
+	}
+
+	public FtpException(String command, FtpReply reply)
+	{
+		super(command + " failed: " + reply);
+		this.replyCode = reply.getCode();
+		int space = command.indexOf(' ');
+		this.command = (space < 0 ? command : command.substring(0, space)).toUpperCase(Locale.ROOT);
+	}
+
+	/**
+	 * 失败的命令动词（如 STOR），不含参数；非应答引起的异常返回 null
+	 */
+	public String getCommand()
+	{
+		return command;
+	}
+
+	/**
+	 * 服务器应答码，非应答引起的异常返回 -1
+	 */
+	public int getReplyCode()
+	{
+		return replyCode;
+	}
+}
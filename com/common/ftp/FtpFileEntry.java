@@ -0,0 +1,83 @@
+package com.common.ftp;
+
+/**
+ * 目录列表中的一项：名称、类型、大小、修改时间
+ *
+ * @author renms
+ * @version 1.0.0
+ */
+public class FtpFileEntry
+{
+
+	public enum Type
+	{
+		FILE, DIRECTORY, LINK, OTHER
+	}
+
+	private final String name;
+
+	private final Type type;
+
+	private final long size;
+
+	private final long modified;
+
+	/**
+	 * @param name
+	 *            文件（文件夹）名，不含路径
+	 * @param type
+	 *            类型
+	 * @param size
+	 *            字节数，未知时为 -1
+	 * @param modified
+	 *            修改时间（毫秒），未知时为 -1
+	 */
+	public FtpFileEntry(String name, Type type, long size, long modified)
+	{
+		this.name = name;
+		this.type = type;
+		this.size = size;
+		this.modified = modified;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public Type getType()
+	{
+		return type;
+	}
+
+	public boolean isFile()
+	{
+		return type == Type.FILE;
+	}
+
+	public boolean isDirectory()
+	{
+		return type == Type.DIRECTORY;
+	}
+
+	/**
+	 * 字节数，未知时为 -1
+	 */
+	public long getSize()
+	{
+		return size;
+	}
+
+	/**
+	 * 修改时间（毫秒），未知时为 -1；MLSD 给出的是UTC时间，LIST 按本地时区解析
+	 */
+	public long getModified()
+	{
+		return modified;
+	}
+
+	public String toString()
+	{
+		return type + " " + name + " " + size + " " + modified;
+	}
+}
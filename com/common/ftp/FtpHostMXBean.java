@@ -0,0 +1,62 @@
+package com.common.ftp;
+
+import java.util.Map;
+
+/**
+ * 单个FTP服务器的统计，FtpJmxMetrics 以 com.common.ftp:type=FtpHost,name=服务器地址 注册<br>
+ * 时间单位为毫秒，吞吐单位为字节/秒，均从统计开始累计
+ *
+ * @author renms
+ * @version 1.0.0
+ */
+public interface FtpHostMXBean
+{
+
+	String getHost();
+
+	long getConnects();
+
+	double getConnectLatencyMeanMillis();
+
+	double getConnectLatencyP99Millis();
+
+	double getLoginLatencyMeanMillis();
+
+	double getLoginLatencyP99Millis();
+
+	long getUploads();
+
+	long getDownloads();
+
+	long getBytesUploaded();
+
+	long getBytesDownloaded();
+
+	double getTransferDurationP50Millis();
+
+	double getTransferDurationP99Millis();
+
+	long getThroughputP50BytesPerSecond();
+
+	/**
+	 * 最慢的10%传输的吞吐上限，用于发现慢速服务器
+	 */
+	long getThroughputP10BytesPerSecond();
+
+	long getErrors();
+
+	/**
+	 * 按应答码统计的失败次数，非应答引起的失败记在 "io" 下
+	 */
+	Map<String, Long> getErrorCounts();
+
+	int getPoolMaxSessions();
+
+	int getPoolOpenSessions();
+
+	int getPoolBusySessions();
+
+	int getPoolWaiters();
+
+	double getPoolWaitP99Millis();
+}
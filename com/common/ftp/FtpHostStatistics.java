@@ -0,0 +1,288 @@
+package com.common.ftp;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个FTP服务器（或全部服务器合计）的统计，由 FtpStatistics 维护
+ *
+ * @author renms
+ * @version 1.0.0
+ */
+public class FtpHostStatistics implements FtpHostMXBean
+{
+
+	private static final double NANOS_PER_MILLI = 1000000.0;
+
+	private final String host;
+
+	private final FtpHistogram connectLatency = new FtpHistogram();
+
+	private final FtpHistogram loginLatency = new FtpHistogram();
+
+	private final FtpHistogram transferDuration = new FtpHistogram();
+
+	private final FtpHistogram throughput = new FtpHistogram();
+
+	private final FtpHistogram poolWait = new FtpHistogram();
+
+	private final LongAdder uploads = new LongAdder();
+
+	private final LongAdder downloads = new LongAdder();
+
+	private final LongAdder bytesUploaded = new LongAdder();
+
+	private final LongAdder bytesDownloaded = new LongAdder();
+
+	private final ConcurrentHashMap<String, LongAdder> errors = new ConcurrentHashMap<String, LongAdder>();
+
+	private final Set<FtpSessionPool> pools = ConcurrentHashMap.newKeySet();
+
+	FtpHostStatistics(String host)
+	{
+		this.host = host;
+	}
+
+	void connected(long nanos)
+	{
+		connectLatency.record(nanos);
+	}
+
+	void loggedIn(long nanos)
+	{
+		loginLatency.record(nanos);
+	}
+
+	void transferred(String command, long bytes, long nanos)
+	{
+		if (isUpload(command))
+		{
+			uploads.increment();
+			bytesUploaded.add(bytes);
+		}
+		else
+		{
+			downloads.increment();
+			bytesDownloaded.add(bytes);
+		}
+		transferDuration.record(nanos);
+		// 太短的传输算不出有意义的吞吐
+		if (nanos > 0 && bytes >= FtpSession.TRANSFER_BUFFER_SIZE)
+		{
+			throughput.record((long) (bytes * 1e9 / nanos));
+		}
+	}
+
+	void failed(int replyCode)
+	{
+		String key = replyCode < 0 ? "io" : String.valueOf(replyCode);
+		LongAdder counter = errors.get(key);
+		if (counter == null)
+		{
+			LongAdder created = new LongAdder();
+			counter = errors.putIfAbsent(key, created);
+			if (counter == null)
+			{
+				counter = created;
+			}
+		}
+		counter.increment();
+	}
+
+	void poolAcquired(long nanos)
+	{
+		poolWait.record(nanos);
+	}
+
+	void poolOpened(FtpSessionPool pool)
+	{
+		pools.add(pool);
+	}
+
+	void poolClosed(FtpSessionPool pool)
+	{
+		pools.remove(pool);
+	}
+
+	static boolean isUpload(String command)
+	{
+		return "STOR".equals(command) || "APPE".equals(command) || "STOU".equals(command);
+	}
+
+	public String getHost()
+	{
+		return host;
+	}
+
+	public FtpHistogram getConnectLatency()
+	{
+		return connectLatency;
+	}
+
+	public FtpHistogram getLoginLatency()
+	{
+		return loginLatency;
+	}
+
+	/**
+	 * 传输耗时（纳秒）
+	 */
+	public FtpHistogram getTransferDuration()
+	{
+		return transferDuration;
+	}
+
+	/**
+	 * 单次传输的吞吐（字节/秒），只统计不小于64K的传输
+	 */
+	public FtpHistogram getThroughput()
+	{
+		return throughput;
+	}
+
+	public FtpHistogram getPoolWait()
+	{
+		return poolWait;
+	}
+
+	public long getConnects()
+	{
+		return connectLatency.getCount();
+	}
+
+	public double getConnectLatencyMeanMillis()
+	{
+		return connectLatency.getMean() / NANOS_PER_MILLI;
+	}
+
+	public double getConnectLatencyP99Millis()
+	{
+		return connectLatency.getPercentile(0.99) / NANOS_PER_MILLI;
+	}
+
+	public double getLoginLatencyMeanMillis()
+	{
+		return loginLatency.getMean() / NANOS_PER_MILLI;
+	}
+
+	public double getLoginLatencyP99Millis()
+	{
+		return loginLatency.getPercentile(0.99) / NANOS_PER_MILLI;
+	}
+
+	public long getUploads()
+	{
+		return uploads.sum();
+	}
+
+	public long getDownloads()
+	{
+		return downloads.sum();
+	}
+
+	public long getBytesUploaded()
+	{
+		return bytesUploaded.sum();
+	}
+
+	public long getBytesDownloaded()
+	{
+		return bytesDownloaded.sum();
+	}
+
+	public double getTransferDurationP50Millis()
+	{
+		return transferDuration.getPercentile(0.5) / NANOS_PER_MILLI;
+	}
+
+	public double getTransferDurationP99Millis()
+	{
+		return transferDuration.getPercentile(0.99) / NANOS_PER_MILLI;
+	}
+
+	public long getThroughputP50BytesPerSecond()
+	{
+		return throughput.getPercentile(0.5);
+	}
+
+	public long getThroughputP10BytesPerSecond()
+	{
+		return throughput.getPercentile(0.1);
+	}
+
+	public long getErrors()
+	{
+		long total = 0;
+		for (LongAdder counter : errors.values())
+		{
+			total += counter.sum();
+		}
+		return total;
+	}
+
+	public Map<String, Long> getErrorCounts()
+	{
+		Map<String, Long> counts = new TreeMap<String, Long>();
+		for (Map.Entry<String, LongAdder> entry : errors.entrySet())
+		{
+			counts.put(entry.getKey(), entry.getValue().sum());
+		}
+		return counts;
+	}
+
+	public int getPoolMaxSessions()
+	{
+		int total = 0;
+		for (FtpSessionPool pool : pools)
+		{
+			total += pool.getMaxSessions();
+		}
+		return total;
+	}
+
+	public int getPoolOpenSessions()
+	{
+		int total = 0;
+		for (FtpSessionPool pool : pools)
+		{
+			total += pool.getOpenSessions();
+		}
+		return total;
+	}
+
+	public int getPoolBusySessions()
+	{
+		int total = 0;
+		for (FtpSessionPool pool : pools)
+		{
+			total += pool.getBusySessions();
+		}
+		return total;
+	}
+
+	public int getPoolWaiters()
+	{
+		int total = 0;
+		for (FtpSessionPool pool : pools)
+		{
+			total += pool.getWaiters();
+		}
+		return total;
+	}
+
+	public double getPoolWaitP99Millis()
+	{
+		return poolWait.getPercentile(0.99) / NANOS_PER_MILLI;
+	}
+
+	public String toString()
+	{
+		return host + ": connects=" + getConnects() + ", uploads=" + getUploads() + " (" + getBytesUploaded()
+				+ " bytes), downloads=" + getDownloads() + " (" + getBytesDownloaded() + " bytes), transfer p99="
+				+ getTransferDurationP99Millis() + "ms, throughput p50=" + getThroughputP50BytesPerSecond()
+				+ "B/s, errors=" + getErrorCounts();
+	}
+}
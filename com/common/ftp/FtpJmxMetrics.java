@@ -0,0 +1,88 @@
+package com.common.ftp;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.apache.log4j.Logger;
+
+/**
+ * 把 FtpStatistics 发布到JMX：合计及每个服务器各一个 FtpHostMXBean，
+ * 名称为 domain:type=FtpHost,name=服务器地址（合计为 *），可用 jconsole 等工具查看
+ *
+ * @author renms
+ * @version 1.0.0
+ */
+public class FtpJmxMetrics extends FtpStatistics implements Closeable
+{
+
+	public static final String DEFAULT_DOMAIN = "com.common.ftp";
+
+	private static Logger logger = Logger.getLogger(FtpJmxMetrics.class);
+
+	private final MBeanServer server;
+
+	private final String domain;
+
+	private final List<ObjectName> registered = new CopyOnWriteArrayList<ObjectName>();
+
+	/**
+	 * 注册到平台 MBeanServer
+	 */
+	public FtpJmxMetrics()
+	{
+		this(ManagementFactory.getPlatformMBeanServer(), DEFAULT_DOMAIN);
+	}
+
+	/**
+	 * @param server
+	 *            MBeanServer
+	 * @param domain
+	 *            ObjectName 的域，同一进程有多个引擎时用以区分
+	 */
+	public FtpJmxMetrics(MBeanServer server, String domain)
+	{
+		this.server = server;
+		this.domain = domain;
+		hostAdded(getTotal());
+	}
+
+	protected void hostAdded(FtpHostStatistics statistics)
+	{
+		try
+		{
+			ObjectName name = new ObjectName(domain + ":type=FtpHost,name=" + ObjectName.quote(statistics.getHost()));
+			server.registerMBean(new StandardMBean(statistics, FtpHostMXBean.class, true), name);
+			registered.add(name);
+		}
+		catch (JMException ex)
+		{
+			logger.warn("Failed to register FTP metrics MBean for " + statistics.getHost(), ex);
+		}
+	}
+
+	/**
+	 * 注销全部 MBean
+	 */
+	public void close()
+	{
+		for (ObjectName name : registered)
+		{
+			try
+			{
+				server.unregisterMBean(name);
+			}
+			catch (JMException ex)
+			{
+				logger.warn("Failed to unregister FTP metrics MBean " + name, ex);
+			}
+		}
+		registered.clear();
+	}
+}
@@ -0,0 +1,330 @@
+package com.common.ftp;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 目录列表解析：MLSD 标准格式，以及 LIST 常见的 UNIX 格式和 Windows(DOS) 格式
+ *
+ * @author renms
+ * @version 1.0.0
+ */
+final class FtpListParser
+{
+
+	private static final String MONTHS = "janfebmaraprmayjunjulaugsepoctnovdec";
+
+	private static final Pattern DOS_PATTERN = Pattern
+			.compile("^(\\d{2})-(\\d{2})-(\\d{2,4})\\s+(\\d{1,2}):(\\d{2})\\s*([AaPp][Mm])?\\s+(<DIR>|\\d+)\\s+(.+)$");
+
+	private FtpListParser()
+	{
+	}
+
+	/**
+	 * 解析一行 MLSD 输出，如 type=file;size=1024;modify=20160817120000; name
+	 *
+	 * @return 无法解析或是 . / .. 时返回null
+	 */
+	static FtpFileEntry parseMlsd(String line)
+	{
+		int space = line.indexOf(' ');
+		if (space < 0)
+		{
+			return null;
+		}
+		String name = line.substring(space + 1);
+		FtpFileEntry.Type type = FtpFileEntry.Type.OTHER;
+		long size = -1;
+		long modified = -1;
+		int pos = 0;
+		while (pos < space)
+		{
+			int semi = line.indexOf(';', pos);
+			if (semi < 0 || semi > space)
+			{
+				semi = space;
+			}
+			int eq = line.indexOf('=', pos);
+			if (eq > 0 && eq < semi)
+			{
+				String fact = line.substring(pos, eq);
+				String value = line.substring(eq + 1, semi);
+				if ("type".equalsIgnoreCase(fact))
+				{
+					if ("cdir".equalsIgnoreCase(value) || "pdir".equalsIgnoreCase(value))
+					{
+						return null;
+					}
+					if ("file".equalsIgnoreCase(value))
+					{
+						type = FtpFileEntry.Type.FILE;
+					}
+					else if ("dir".equalsIgnoreCase(value))
+					{
+						type = FtpFileEntry.Type.DIRECTORY;
+					}
+					else if (value.regionMatches(true, 0, "os.unix=slink", 0, 13))
+					{
+						type = FtpFileEntry.Type.LINK;
+					}
+				}
+				else if ("size".equalsIgnoreCase(fact))
+				{
+					size = parseLong(value);
+				}
+				else if ("modify".equalsIgnoreCase(fact))
+				{
+					modified = parseTimeval(value);
+				}
+			}
+			pos = semi + 1;
+		}
+		return isDotName(name) ? null : new FtpFileEntry(name, type, size, modified);
+	}
+
+	/**
+	 * 解析一行 LIST 输出
+	 *
+	 * @param line
+	 *            LIST 的一行
+	 * @param zone
+	 *            服务器时区，LIST 给出的时间没有时区信息
+	 * @return 无法解析、是 total 行或 . / .. 时返回null
+	 */
+	static FtpFileEntry parseList(String line, ZoneId zone)
+	{
+		if (line.length() == 0)
+		{
+			return null;
+		}
+		char c = line.charAt(0);
+		if (Character.isDigit(c))
+		{
+			return parseDos(line, zone);
+		}
+		FtpFileEntry.Type type;
+		switch (c)
+		{
+		case '-':
+			type = FtpFileEntry.Type.FILE;
+			break;
+		case 'd':
+			type = FtpFileEntry.Type.DIRECTORY;
+			break;
+		case 'l':
+			type = FtpFileEntry.Type.LINK;
+			break;
+		case 'b':
+		case 'c':
+		case 'p':
+		case 's':
+			type = FtpFileEntry.Type.OTHER;
+			break;
+		default:
+			return null;
+		}
+		// 记录前10个字段的起止位置，文件名从日期之后的位置截取以保留其中的空格
+		int[] starts = new int[10];
+		int[] ends = new int[10];
+		int count = 0;
+		int i = 0;
+		int len = line.length();
+		while (count < starts.length)
+		{
+			while (i < len && line.charAt(i) == ' ')
+			{
+				i++;
+			}
+			if (i >= len)
+			{
+				break;
+			}
+			starts[count] = i;
+			while (i < len && line.charAt(i) != ' ')
+			{
+				i++;
+			}
+			ends[count++] = i;
+		}
+		// 找到 "月 日 时间/年" 三个字段，前一个字段是大小
+		for (int m = 3; m + 3 < count; m++)
+		{
+			int month = month(line, starts[m], ends[m]);
+			if (month < 0)
+			{
+				continue;
+			}
+			long size = parseLong(line.substring(starts[m - 1], ends[m - 1]));
+			long day = parseLong(line.substring(starts[m + 1], ends[m + 1]));
+			if (size < 0 || day < 1 || day > 31)
+			{
+				continue;
+			}
+			String name = line.substring(starts[m + 3]);
+			if (type == FtpFileEntry.Type.LINK)
+			{
+				int arrow = name.indexOf(" -> ");
+				if (arrow > 0)
+				{
+					name = name.substring(0, arrow);
+				}
+			}
+			if (isDotName(name))
+			{
+				return null;
+			}
+			long modified = parseUnixTime(month, (int) day, line.substring(starts[m + 2], ends[m + 2]), zone);
+			return new FtpFileEntry(name, type, size, modified);
+		}
+		// 不认识的日期格式：按第9个字段起为文件名处理
+		if (count >= 9)
+		{
+			String name = line.substring(starts[8]);
+			return isDotName(name) ? null : new FtpFileEntry(name, type, parseLong(line.substring(starts[4], ends[4])), -1);
+		}
+		return null;
+	}
+
+	/**
+	 * 01-31-20 03:04PM &lt;DIR&gt; name 或 01-31-2020 15:04 1024 name
+	 */
+	private static FtpFileEntry parseDos(String line, ZoneId zone)
+	{
+		Matcher m = DOS_PATTERN.matcher(line);
+		if (!m.matches())
+		{
+			return null;
+		}
+		int year = Integer.parseInt(m.group(3));
+		if (year < 100)
+		{
+			year += year < 70 ? 2000 : 1900;
+		}
+		int hour = Integer.parseInt(m.group(4));
+		String ampm = m.group(6);
+		if (ampm != null)
+		{
+			hour = hour % 12 + (Character.toUpperCase(ampm.charAt(0)) == 'P' ? 12 : 0);
+		}
+		long modified = -1;
+		try
+		{
+			modified = LocalDateTime.of(year, Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)), hour,
+					Integer.parseInt(m.group(5))).atZone(zone).toInstant().toEpochMilli();
+		}
+		catch (RuntimeException ex)
+		{
+			// 非法日期只丢弃时间，不丢弃条目
+		}
+		String name = m.group(8);
+		if (isDotName(name))
+		{
+			return null;
+		}
+		if ("<DIR>".equals(m.group(7)))
+		{
+			return new FtpFileEntry(name, FtpFileEntry.Type.DIRECTORY, -1, modified);
+		}
+		return new FtpFileEntry(name, FtpFileEntry.Type.FILE, Long.parseLong(m.group(7)), modified);
+	}
+
+	/**
+	 * UNIX 格式的时间字段：半年内为 HH:mm（年份省略），否则为 yyyy
+	 */
+	private static long parseUnixTime(int month, int day, String timeOrYear, ZoneId zone)
+	{
+		try
+		{
+			int colon = timeOrYear.indexOf(':');
+			if (colon < 0)
+			{
+				return LocalDate.of(Integer.parseInt(timeOrYear), month, day).atStartOfDay(zone).toInstant()
+						.toEpochMilli();
+			}
+			LocalDate today = LocalDate.now(zone);
+			LocalDate date = LocalDate.of(today.getYear(), month, day);
+			if (date.isAfter(today.plusDays(1)))
+			{
+				date = date.minusYears(1);
+			}
+			return date.atTime(Integer.parseInt(timeOrYear.substring(0, colon)),
+					Integer.parseInt(timeOrYear.substring(colon + 1))).atZone(zone).toInstant().toEpochMilli();
+		}
+		catch (RuntimeException ex)
+		{
+			return -1;
+		}
+	}
+
+	/**
+	 * MLSD/MDTM 时间格式 YYYYMMDDHHMMSS[.sss]，UTC
+	 */
+	static long parseTimeval(String value)
+	{
+		if (value.length() < 14)
+		{
+			return -1;
+		}
+		try
+		{
+			LocalDateTime time = LocalDateTime.of(Integer.parseInt(value.substring(0, 4)),
+					Integer.parseInt(value.substring(4, 6)), Integer.parseInt(value.substring(6, 8)),
+					Integer.parseInt(value.substring(8, 10)), Integer.parseInt(value.substring(10, 12)),
+					Integer.parseInt(value.substring(12, 14)));
+			long millis = time.toInstant(ZoneOffset.UTC).toEpochMilli();
+			if (value.length() > 15 && value.charAt(14) == '.')
+			{
+				String fraction = (value.substring(15) + "00").substring(0, 3);
+				millis += Integer.parseInt(fraction);
+			}
+			return millis;
+		}
+		catch (RuntimeException ex)
+		{
+			return -1;
+		}
+	}
+
+	/**
+	 * 格式化为 MFMT/MDTM 时间格式 YYYYMMDDHHMMSS，UTC
+	 */
+	static String formatTimeval(long millis)
+	{
+		LocalDateTime time = LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L), 0, ZoneOffset.UTC);
+		return String.format("%04d%02d%02d%02d%02d%02d", time.getYear(), time.getMonthValue(), time.getDayOfMonth(),
+				time.getHour(), time.getMinute(), time.getSecond());
+	}
+
+	private static int month(String line, int start, int end)
+	{
+		if (end - start != 3)
+		{
+			return -1;
+		}
+		int index = MONTHS.indexOf(line.substring(start, end).toLowerCase(Locale.ROOT));
+		return index < 0 || index % 3 != 0 ? -1 : index / 3 + 1;
+	}
+
+	private static long parseLong(String value)
+	{
+		try
+		{
+			return Long.parseLong(value);
+		}
+		catch (NumberFormatException ex)
+		{
+			return -1;
+		}
+	}
+
+	private static boolean isDotName(String name)
+	{
+		return name.length() == 0 || ".".equals(name) || "..".equals(name);
+	}
+}
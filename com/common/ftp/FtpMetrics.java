@@ -0,0 +1,84 @@
+package com.common.ftp;
+
+/**
+ * FTP引擎的度量回调，通过 FtpEngine.setMetrics 安装<br>
+ * 回调在I/O线程上同步执行，实现必须线程安全且不能阻塞。内置实现：FtpStatistics（内存统计）、
+ * FtpJmxMetrics（在 FtpStatistics 基础上按服务器注册 MXBean）、FtpMicrometerMetrics（输出到 Micrometer）
+ *
+ * @author renms
+ * @version 1.0.0
+ */
+public interface FtpMetrics
+{
+
+	/**
+	 * 不记录任何度量
+	 */
+	FtpMetrics NONE = new FtpMetrics()
+	{
+	};
+
+	/**
+	 * 控制连接建立并收到欢迎应答
+	 *
+	 * @param connectNanos
+	 *            从发起连接到收到欢迎应答的时间
+	 */
+	default void connected(String host, long connectNanos)
+	{
+	}
+
+	/**
+	 * 登录完成（USER/PASS 及切换二进制）
+	 */
+	default void loggedIn(String host, long loginNanos)
+	{
+	}
+
+	/**
+	 * 一次数据传输成功结束
+	 *
+	 * @param command
+	 *            命令动词：STOR、APPE、RETR、LIST、MLSD 等
+	 * @param bytes
+	 *            数据连接上传输的字节数
+	 * @param nanos
+	 *            从打开数据连接到收到结束应答的时间
+	 */
+	default void transferred(String host, String command, long bytes, long nanos)
+	{
+	}
+
+	/**
+	 * 一次操作失败
+	 *
+	 * @param command
+	 *            失败的命令动词，连接失败为 CONNECT；I/O错误、超时等无法确定命令时为 null
+	 * @param replyCode
+	 *            服务器应答码，非应答引起的失败为 -1
+	 */
+	default void failed(String host, String command, int replyCode)
+	{
+	}
+
+	/**
+	 * 从会话池借出一个会话
+	 *
+	 * @param waitNanos
+	 *            排队和新建连接所花的时间
+	 */
+	default void poolAcquired(String host, long waitNanos)
+	{
+	}
+
+	/**
+	 * 会话池创建，可据此登记池的容量、占用情况等指标；安装度量之前创建的池不会通知
+	 */
+	default void poolOpened(FtpSessionPool pool)
+	{
+	}
+
+	default void poolClosed(FtpSessionPool pool)
+	{
+	}
+}
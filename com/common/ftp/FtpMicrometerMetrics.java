@@ -0,0 +1,105 @@
+package com.common.ftp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * 把度量输出到 Micrometer 的 MeterRegistry，由其转发到 Prometheus 等监控系统<br>
+ * 指标：ftp.connect、ftp.login、ftp.transfer（计时，按 host 及 command 分）、ftp.transfer.bytes、
+ * ftp.transfer.throughput（字节/秒）、ftp.errors（按 host、command、code 计数）、ftp.pool.wait，
+ * 以及会话池的 ftp.pool.sessions.max/open/busy 和 ftp.pool.waiters
+ *
+ * @author renms
+ * @version 1.0.0
+ */
+public class FtpMicrometerMetrics implements FtpMetrics
+{
+
+	private final MeterRegistry registry;
+
+	private final AtomicInteger poolSeq = new AtomicInteger();
+
+	private final Map<FtpSessionPool, List<Meter>> poolMeters = new ConcurrentHashMap<FtpSessionPool, List<Meter>>();
+
+	public FtpMicrometerMetrics(MeterRegistry registry)
+	{
+		this.registry = registry;
+	}
+
+	public void connected(String host, long connectNanos)
+	{
+		Timer.builder("ftp.connect").tag("host", host).publishPercentileHistogram().register(registry)
+				.record(connectNanos, TimeUnit.NANOSECONDS);
+	}
+
+	public void loggedIn(String host, long loginNanos)
+	{
+		Timer.builder("ftp.login").tag("host", host).publishPercentileHistogram().register(registry)
+				.record(loginNanos, TimeUnit.NANOSECONDS);
+	}
+
+	public void transferred(String host, String command, long bytes, long nanos)
+	{
+		Timer.builder("ftp.transfer").tag("host", host).tag("command", command).publishPercentileHistogram()
+				.register(registry).record(nanos, TimeUnit.NANOSECONDS);
+		DistributionSummary.builder("ftp.transfer.bytes").baseUnit("bytes").tag("host", host).tag("command", command)
+				.register(registry).record(bytes);
+		if (nanos > 0 && bytes >= FtpSession.TRANSFER_BUFFER_SIZE)
+		{
+			DistributionSummary.builder("ftp.transfer.throughput").baseUnit("bytes/s").tag("host", host)
+					.tag("command", command).publishPercentileHistogram().register(registry)
+					.record(bytes * 1e9 / nanos);
+		}
+	}
+
+	public void failed(String host, String command, int replyCode)
+	{
+		Counter.builder("ftp.errors").tag("host", host).tag("command", command == null ? "none" : command)
+				.tag("code", replyCode < 0 ? "io" : String.valueOf(replyCode)).register(registry).increment();
+	}
+
+	public void poolAcquired(String host, long waitNanos)
+	{
+		Timer.builder("ftp.pool.wait").tag("host", host).publishPercentileHistogram().register(registry)
+				.record(waitNanos, TimeUnit.NANOSECONDS);
+	}
+
+	public void poolOpened(FtpSessionPool pool)
+	{
+		String host = pool.getHost();
+		String id = String.valueOf(poolSeq.incrementAndGet());
+		List<Meter> meters = new ArrayList<Meter>(4);
+		meters.add(Gauge.builder("ftp.pool.sessions.max", pool, p -> p.getMaxSessions()).tag("host", host)
+				.tag("pool", id).register(registry));
+		meters.add(Gauge.builder("ftp.pool.sessions.open", pool, p -> p.getOpenSessions()).tag("host", host)
+				.tag("pool", id).register(registry));
+		meters.add(Gauge.builder("ftp.pool.sessions.busy", pool, p -> p.getBusySessions()).tag("host", host)
+				.tag("pool", id).register(registry));
+		meters.add(Gauge.builder("ftp.pool.waiters", pool, p -> p.getWaiters()).tag("host", host).tag("pool", id)
+				.register(registry));
+		poolMeters.put(pool, meters);
+	}
+
+	public void poolClosed(FtpSessionPool pool)
+	{
+		List<Meter> meters = poolMeters.remove(pool);
+		if (meters != null)
+		{
+			for (Meter meter : meters)
+			{
+				registry.remove(meter);
+			}
+		}
+	}
+}
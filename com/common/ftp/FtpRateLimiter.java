@@ -0,0 +1,146 @@
+package com.common.ftp;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 令牌桶限速器，单位字节/秒，可在运行时修改速率<br>
+ * 可作用于单个会话、单个服务器或整个引擎，一次传输同时受这三级限速器约束，取其中最慢的一级。
+ * 传输按块预约令牌，块大小随同时传输的数量缩小，各传输按预约顺序轮流发送，平分带宽；
+ * 空闲后积累的令牌最多够 burstMillis 毫秒的流量，小文件和目录列表因此不会被批量传输拖慢。
+ * 等待令牌时不占用线程，由引擎的定时器延后继续传输
+ *
+ * @author renms
+ * @version 1.0.0
+ */
+public class FtpRateLimiter
+{
+
+	public static final long UNLIMITED = 0;
+
+	static final int MIN_CHUNK_SIZE = 4 * 1024;
+
+	private static final long DEFAULT_BURST_MILLIS = 100;
+
+	private volatile long bytesPerSecond;
+
+	private volatile long burstMillis = DEFAULT_BURST_MILLIS;
+
+	/** 令牌被预约到的时刻（System.nanoTime），早于当前时刻表示有积累的令牌 */
+	private long nextFreeNanos = System.nanoTime();
+
+	private final AtomicInteger activeTransfers = new AtomicInteger();
+
+	/**
+	 * 不限速
+	 */
+	public FtpRateLimiter()
+	{
+		this(UNLIMITED);
+	}
+
+	/**
+	 * @param bytesPerSecond
+	 *            速率（字节/秒），不大于0表示不限速
+	 */
+	public FtpRateLimiter(long bytesPerSecond)
+	{
+		this.bytesPerSecond = Math.max(bytesPerSecond, UNLIMITED);
+	}
+
+	public long getBytesPerSecond()
+	{
+		return bytesPerSecond;
+	}
+
+	/**
+	 * 修改速率，立即对进行中的传输生效
+	 *
+	 * @param bytesPerSecond
+	 *            速率（字节/秒），不大于0表示不限速
+	 */
+	public synchronized void setBytesPerSecond(long bytesPerSecond)
+	{
+		long now = System.nanoTime();
+		if (nextFreeNanos > now)
+		{
+			// 已预约的流量按新速率重新计算等待时间
+			long old = this.bytesPerSecond;
+			nextFreeNanos = bytesPerSecond <= 0 || old <= 0 ? now : now
+					+ (long) ((nextFreeNanos - now) * ((double) old / bytesPerSecond));
+		}
+		this.bytesPerSecond = Math.max(bytesPerSecond, UNLIMITED);
+	}
+
+	public boolean isLimited()
+	{
+		return bytesPerSecond > 0;
+	}
+
+	/**
+	 * 空闲时最多积累多少毫秒流量的令牌，默认100
+	 */
+	public long getBurstMillis()
+	{
+		return burstMillis;
+	}
+
+	public void setBurstMillis(long burstMillis)
+	{
+		this.burstMillis = Math.max(burstMillis, 0);
+	}
+
+	/**
+	 * 正在受本限速器约束的传输数
+	 */
+	public int getActiveTransfers()
+	{
+		return activeTransfers.get();
+	}
+
+	/**
+	 * 预约 bytes 个字节的令牌
+	 *
+	 * @return 发送这些字节前需要等待的纳秒数
+	 */
+	synchronized long reserve(long bytes)
+	{
+		long rate = bytesPerSecond;
+		if (rate <= 0)
+		{
+			return 0;
+		}
+		long now = System.nanoTime();
+		long earliest = now - TimeUnit.MILLISECONDS.toNanos(burstMillis);
+		if (nextFreeNanos < earliest)
+		{
+			nextFreeNanos = earliest;
+		}
+		nextFreeNanos += bytes * 1000000000L / rate;
+		return Math.max(nextFreeNanos - now, 0);
+	}
+
+	/**
+	 * 每次预约的块大小：约等于10毫秒的流量，并按同时传输数平分，使一轮轮转的时间不随传输数增长
+	 */
+	int chunkSize(int max)
+	{
+		long rate = bytesPerSecond;
+		if (rate <= 0)
+		{
+			return max;
+		}
+		long chunk = rate / 100 / Math.max(activeTransfers.get(), 1);
+		return (int) Math.max(Math.min(chunk, max), MIN_CHUNK_SIZE);
+	}
+
+	void register()
+	{
+		activeTransfers.incrementAndGet();
+	}
+
+	void unregister()
+	{
+		activeTransfers.decrementAndGet();
+	}
+}
@@ -0,0 +1,96 @@
+package com.common.ftp;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * FTP服务器应答<br>
+ * 多行应答（如 211-xxx ... 211 End）合并为一个对象，保留全部文本行
+ *
+ * @author renms
+ * @version 1.0.0
+ */
+public class FtpReply
+{
+
+	private final int code;
+
+	private final List<String> lines;
+
+	public FtpReply(int code, List<String> lines)
+	{
+		this.code = code;
+		this.lines = Collections.unmodifiableList(lines);
+	}
+
+	/**
+	 * 应答码，如 200、226、550
+	 */
+	public int getCode()
+	{
+		return code;
+	}
+
+	/**
+	 * 应答的全部文本行（含应答码）
+	 */
+	public List<String> getLines()
+	{
+		return lines;
+	}
+
+	/**
+	 * 应答文本，多行以换行符连接，已去掉行首的应答码
+	 */
+	public String getMessage()
+	{
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < lines.size(); i++)
+		{
+			String line = lines.get(i);
+			if (i > 0)
+			{
+				sb.append('\n');
+			}
+			sb.append(line.length() > 4 ? line.substring(4) : "");
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * 1xx 初步肯定应答，后续还会有一个最终应答
+	 */
+	public boolean isPositivePreliminary()
+	{
+		return code >= 100 && code < 200;
+	}
+
+	/**
+	 * 2xx 肯定完成应答
+	 */
+	public boolean isPositiveCompletion()
+	{
+		return code >= 200 && code < 300;
+	}
+
+	/**
+	 * 3xx 肯定中间应答，需要继续发送命令（如 USER 之后的 PASS）
+	 */
+	public boolean isPositiveIntermediate()
+	{
+		return code >= 300 && code < 400;
+	}
+
+	/**
+	 * 4xx/5xx 否定应答
+	 */
+	public boolean isNegative()
+	{
+		return code >= 400;
+	}
+
+	public String toString()
+	{
+		return lines.isEmpty() ? String.valueOf(code) : lines.get(lines.size() - 1);
+	}
+}
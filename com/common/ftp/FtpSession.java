@@ -0,0 +1,1467 @@
+package com.common.ftp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.Channel;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * FTP会话（一条控制连接）<br>
+ * 所有操作均为异步，返回 CompletableFuture，不占用调用线程；同一会话上的操作按提交顺序串行执行，
+ * 数据连接统一使用被动模式（PASV/EPSV）
+ *
+ * @author renms
+ * @version 1.0.0
+ */
+public class FtpSession implements Closeable
+{
+
+	static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+
+	private static final Pattern PASV_PATTERN = Pattern.compile("(\\d+),(\\d+),(\\d+),(\\d+),(\\d+),(\\d+)");
+
+	private final FtpEngine engine;
+
+	private final AsynchronousSocketChannel control;
+
+	private final String host;
+
+	private final ByteBuffer readBuffer = ByteBuffer.allocate(8192);
+
+	private final ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream(128);
+
+	private volatile Charset charset = StandardCharsets.UTF_8;
+
+	private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+
+	private volatile boolean closed;
+
+	private final FtpDirectoryCache directoryCache = new FtpDirectoryCache();
+
+	private final FtpRateLimiter rateLimiter = new FtpRateLimiter();
+
+	private volatile ZoneId serverZone = ZoneId.systemDefault();
+
+	/** 当前目录的绝对路径，未知时为null；只在串行化的操作中修改 */
+	private volatile String workingDirectory;
+
+	private volatile Set<String> features;
+
+	private volatile boolean mlsdRejected;
+
+	/** 已确认存在的目录（绝对路径），mkdirs 据此跳过已存在的上级目录 */
+	private final Set<String> knownDirectories = ConcurrentHashMap.newKeySet();
+
+	FtpSession(FtpEngine engine, AsynchronousSocketChannel control, String host)
+	{
+		this.engine = engine;
+		this.control = control;
+		this.host = host;
+		this.readBuffer.flip();
+	}
+
+	public FtpEngine getEngine()
+	{
+		return engine;
+	}
+
+	public String getHost()
+	{
+		return host;
+	}
+
+	/**
+	 * 控制连接上命令及应答使用的字符集，默认UTF-8
+	 */
+	public Charset getCharset()
+	{
+		return charset;
+	}
+
+	public void setCharset(Charset charset)
+	{
+		this.charset = charset;
+	}
+
+	/**
+	 * 服务器时区，用于解析 LIST 输出中不带时区的时间，默认为本机时区
+	 */
+	public ZoneId getServerZone()
+	{
+		return serverZone;
+	}
+
+	public void setServerZone(ZoneId serverZone)
+	{
+		this.serverZone = serverZone;
+	}
+
+	/**
+	 * 本会话的目录列表缓存
+	 */
+	public FtpDirectoryCache getDirectoryCache()
+	{
+		return directoryCache;
+	}
+
+	/**
+	 * 本会话的限速器，会话上的传输串行执行，因此也就是每个传输的限速，默认不限速<br>
+	 * 同一服务器、整个引擎的限速见 FtpEngine.getHostRateLimiter、FtpEngine.getRateLimiter
+	 */
+	public FtpRateLimiter getRateLimiter()
+	{
+		return rateLimiter;
+	}
+
+	public boolean isClosed()
+	{
+		return closed || !control.isOpen();
+	}
+
+	/**
+	 * 发送一条命令并返回应答，不检查应答码
+	 *
+	 * @param command
+	 *            FTP命令，不含结尾的CRLF
+	 */
+	public CompletableFuture<FtpReply> execute(final String command)
+	{
+		return serialize(() -> sendAndRead(command));
+	}
+
+	/**
+	 * 发送一条命令，应答不是2xx时以 FtpException 失败
+	 *
+	 * @param command
+	 *            FTP命令，不含结尾的CRLF
+	 */
+	public CompletableFuture<FtpReply> command(final String command)
+	{
+		return serialize(() -> sendAndRead(command).thenApply(reply -> expectCompletion(command, reply)));
+	}
+
+	/**
+	 * 登录
+	 *
+	 * @param user
+	 *            登陆用户
+	 * @param password
+	 *            密码
+	 */
+	public CompletableFuture<Void> login(final String user, final String password)
+	{
+		return serialize(() -> sendAndRead("USER " + user).thenCompose(reply -> {
+			if (reply.isPositiveCompletion())
+			{
+				return CompletableFuture.<Void> completedFuture(null);
+			}
+			if (!reply.isPositiveIntermediate())
+			{
+				throw unchecked(new FtpException("USER", reply));
+			}
+			// 异常信息中不能带出密码
+			return sendAndRead("PASS " + password).thenApply(r -> {
+				expectCompletion("PASS", r);
+				return (Void) null;
+			});
+		}));
+	}
+
+	/**
+	 * 用二进制传输数据
+	 */
+	public CompletableFuture<Void> binary()
+	{
+		return command("TYPE I").thenApply(reply -> (Void) null);
+	}
+
+	/**
+	 * 切换当前目录
+	 */
+	public CompletableFuture<Void> cwd(String dirPath)
+	{
+		return command("CWD " + dirPath).thenApply(reply -> (Void) null);
+	}
+
+	/**
+	 * 切换到上级目录
+	 */
+	public CompletableFuture<Void> cdup()
+	{
+		return command("CDUP").thenApply(reply -> (Void) null);
+	}
+
+	/**
+	 * 取得当前目录的绝对路径
+	 */
+	public CompletableFuture<String> pwd()
+	{
+		return serialize(() -> currentDirectory());
+	}
+
+	/**
+	 * 服务器在 FEAT 中声明的扩展命令（大写），服务器不支持 FEAT 时为空集合；结果在会话内缓存
+	 */
+	public CompletableFuture<Set<String>> features()
+	{
+		return serialize(() -> loadFeatures());
+	}
+
+	/**
+	 * 取得目录下的全部条目（不含 . 和 ..），一次往返同时得到文件和子文件夹<br>
+	 * 服务器支持时用 MLSD，否则用 LIST 并解析；结果放入会话的目录缓存
+	 *
+	 * @param path
+	 *            目录，空代表当前目录
+	 */
+	public CompletableFuture<List<FtpFileEntry>> listEntries(final String path)
+	{
+		return serialize(() -> resolve(path).thenCompose(dir -> {
+			List<FtpFileEntry> cached = directoryCache.get(dir);
+			if (cached != null)
+			{
+				return CompletableFuture.completedFuture(cached);
+			}
+			return loadFeatures().thenCompose(feat -> fetchEntries(path, feat)).thenApply(entries -> {
+				directoryCache.put(dir, entries);
+				rememberDirectories(dir, entries);
+				return entries;
+			});
+		}));
+	}
+
+	public CompletableFuture<Void> mkd(String dirPath)
+	{
+		return command("MKD " + dirPath).thenApply(reply -> (Void) null);
+	}
+
+	/**
+	 * 创建目录及所有不存在的上级目录，不改变当前目录<br>
+	 * 已确认存在的目录会被记住，重复调用不访问服务器；先直接创建最深一级，
+	 * 上级目录不存在时才从最深的已知目录往下逐级 MKD
+	 *
+	 * @param dirPath
+	 *            目录，可以是绝对路径，也可以是相对路径
+	 */
+	public CompletableFuture<Void> mkdirs(final String dirPath)
+	{
+		return serialize(() -> resolve(dirPath).thenCompose(dir -> {
+			if ("/".equals(dir) || knownDirectories.contains(dir))
+			{
+				return CompletableFuture.<Void> completedFuture(null);
+			}
+			return sendAndRead("MKD " + dir).thenCompose(reply -> {
+				if (reply.isPositiveCompletion())
+				{
+					rememberAncestors(dir);
+					return CompletableFuture.<Void> completedFuture(null);
+				}
+				// 失败可能是目录已存在，也可能是上级不存在，用上级目录的列表区分
+				final String parent = normalize(dir, "..");
+				return fetchEntries(parent, features == null ? Collections.<String> emptySet() : features)
+						.handle((entries, ex) -> {
+							if (ex == null)
+							{
+								directoryCache.put(parent, entries);
+								rememberDirectories(parent, entries);
+								if (!knownDirectories.contains(dir))
+								{
+									throw unchecked(new FtpException("MKD " + dir, reply));
+								}
+								return CompletableFuture.<Void> completedFuture(null);
+							}
+							if (!(unwrap(ex) instanceof FtpException))
+							{
+								throw unchecked(unwrap(ex));
+							}
+							return createParents(dir);
+						}).thenCompose(f -> f);
+			});
+		}));
+	}
+
+	/**
+	 * 从最深的已知目录往下逐级创建到 dir
+	 */
+	private CompletableFuture<Void> createParents(final String dir)
+	{
+		List<String> missing = new ArrayList<String>();
+		String current = dir;
+		while (!"/".equals(current) && !knownDirectories.contains(current))
+		{
+			missing.add(0, current);
+			current = normalize(current, "..");
+		}
+		CompletableFuture<FtpReply> chain = CompletableFuture.completedFuture(null);
+		for (final String path : missing)
+		{
+			chain = chain.thenCompose(previous -> sendAndRead("MKD " + path));
+		}
+		return chain.thenApply(last -> {
+			if (!knownDirectories.contains(dir))
+			{
+				throw unchecked(new FtpException("MKD " + dir, last));
+			}
+			return (Void) null;
+		});
+	}
+
+	/**
+	 * 忘记某个目录及其下级的缓存列表和已知目录记录，其它会话修改了该目录时调用
+	 *
+	 * @param dirPath
+	 *            目录的绝对路径
+	 */
+	public void invalidate(String dirPath)
+	{
+		String dir = normalize("/", dirPath);
+		String prefix = "/".equals(dir) ? "/" : dir + "/";
+		knownDirectories.removeIf(path -> path.equals(dir) || path.startsWith(prefix));
+		directoryCache.invalidate(dir);
+		directoryCache.invalidate(normalize(dir, ".."));
+	}
+
+	/**
+	 * 修改服务器上文件的修改时间（MFMT）
+	 *
+	 * @param filePath
+	 *            服务器上的文件名
+	 * @param millis
+	 *            修改时间，精确到秒
+	 * @return 服务器未声明支持 MFMT 时为 false
+	 */
+	public CompletableFuture<Boolean> setModified(final String filePath, final long millis)
+	{
+		return serialize(() -> loadFeatures().thenCompose(feat -> {
+			if (!feat.contains("MFMT"))
+			{
+				return CompletableFuture.completedFuture(Boolean.FALSE);
+			}
+			final String command = "MFMT " + FtpListParser.formatTimeval(millis) + " " + filePath;
+			return sendAndRead(command).thenApply(reply -> {
+				expectCompletion(command, reply);
+				return Boolean.TRUE;
+			});
+		}));
+	}
+
+	public CompletableFuture<Void> rmd(String dirPath)
+	{
+		return command("RMD " + dirPath).thenApply(reply -> (Void) null);
+	}
+
+	public CompletableFuture<Void> dele(String filePath)
+	{
+		return command("DELE " + filePath).thenApply(reply -> (Void) null);
+	}
+
+	/**
+	 * 下载远程文件到本地，本地文件已存在时覆盖<br>
+	 * 先写入同目录下的临时文件，收到传输完成的应答后再替换本地文件，下载失败时原文件不受影响
+	 *
+	 * @param remoteFilePath
+	 *            服务器上的文件名
+	 * @param localFile
+	 *            本地文件
+	 * @param stages
+	 *            处理阶段，按本地到服务器的顺序排列，收到的数据逆序经过各阶段后写入本地文件
+	 * @return 从服务器接收的字节数
+	 */
+	public CompletableFuture<Long> retrieve(final String remoteFilePath, final Path localFile, FtpStage... stages)
+	{
+		// 临时文件在排队前建立，建立失败不影响会话
+		final Path target = localFile.toAbsolutePath();
+		Path temp;
+		FileChannel out;
+		while (true)
+		{
+			// 不用 Files.createTempFile：它建立的文件只有属主可读写，不受 umask 影响
+			temp = target.resolveSibling(target.getFileName() + "."
+					+ Long.toHexString(ThreadLocalRandom.current().nextLong() >>> 1) + ".part");
+			try
+			{
+				out = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+				break;
+			}
+			catch (FileAlreadyExistsException ex)
+			{
+				// 重名时换一个名字
+			}
+			catch (IOException ex)
+			{
+				return failed(ex);
+			}
+		}
+		final Path part = temp;
+		final FileChannel file = out;
+		WritableByteChannel sink = out;
+		for (FtpStage stage : stages)
+		{
+			sink = stage.wrapDownload(sink);
+		}
+		final WritableByteChannel chain = sink;
+		return serialize(() -> download("RETR " + remoteFilePath, chain)).handle((n, ex) -> {
+			// 关闭时各阶段检查数据是否完整
+			Throwable failure = ex;
+			try
+			{
+				chain.close();
+			}
+			catch (IOException closeEx)
+			{
+				if (failure == null)
+				{
+					failure = closeEx;
+				}
+			}
+			closeQuietly(file);
+			if (failure == null)
+			{
+				try
+				{
+					replace(part, target);
+				}
+				catch (IOException moveEx)
+				{
+					failure = moveEx;
+				}
+			}
+			if (failure != null)
+			{
+				deleteQuietly(part);
+				throw unchecked(failure);
+			}
+			return n;
+		});
+	}
+
+	/**
+	 * 用下载完成的临时文件替换本地文件，文件系统支持时为原子操作；本地文件已存在时沿用其 POSIX 权限
+	 */
+	private static void replace(Path temp, Path target) throws IOException
+	{
+		try
+		{
+			Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(target));
+		}
+		catch (NoSuchFileException | UnsupportedOperationException ex)
+		{
+			// 本地文件不存在，或文件系统不支持 POSIX 权限
+		}
+		try
+		{
+			Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (AtomicMoveNotSupportedException ex)
+		{
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static void deleteQuietly(Path file)
+	{
+		try
+		{
+			Files.deleteIfExists(file);
+		}
+		catch (IOException ex)
+		{
+			// ignore
+		}
+	}
+
+	/**
+	 * 上传本地文件
+	 *
+	 * @param remoteFilePath
+	 *            写入服务器的文件名
+	 * @param localFile
+	 *            本地文件
+	 * @param stages
+	 *            处理阶段，按本地到服务器的顺序排列，本地文件的数据依次经过各阶段后发出
+	 * @return 发送到服务器的字节数
+	 */
+	public CompletableFuture<Long> store(final String remoteFilePath, final Path localFile, FtpStage... stages)
+	{
+		final FileChannel in;
+		try
+		{
+			in = FileChannel.open(localFile, StandardOpenOption.READ);
+		}
+		catch (IOException ex)
+		{
+			return failed(ex);
+		}
+		ReadableByteChannel source = in;
+		for (FtpStage stage : stages)
+		{
+			source = stage.wrapUpload(source);
+		}
+		final ReadableByteChannel chain = source;
+		return serialize(() -> upload("STOR " + remoteFilePath, chain)).whenComplete((n, ex) -> {
+			closeQuietly(chain);
+			closeQuietly(in);
+		});
+	}
+
+	/**
+	 * 批量上传小文件到当前目录，保持原文件名，使用流水线模式
+	 *
+	 * @param localFiles
+	 *            本地文件
+	 * @return 上传的总字节数
+	 */
+	public CompletableFuture<Long> storeBatch(List<Path> localFiles)
+	{
+		return storeBatch(localFiles, true);
+	}
+
+	/**
+	 * 批量上传小文件到当前目录，保持原文件名<br>
+	 * 后续文件提前读入缓冲区；流水线模式下每个文件的 PASV 和 STOR 与上一个文件的结束应答重叠，
+	 * 服务器不支持命令流水线时传 false
+	 *
+	 * @param localFiles
+	 *            本地文件
+	 * @param pipelined
+	 *            是否使用流水线模式
+	 * @return 上传的总字节数
+	 */
+	public CompletableFuture<Long> storeBatch(final List<Path> localFiles, final boolean pipelined)
+	{
+		// 本地文件先检查，避免传输中途才发现而打乱应答
+		for (Path file : localFiles)
+		{
+			if (!Files.isRegularFile(file) || !Files.isReadable(file))
+			{
+				return failed(new NoSuchFileException(file.toString()));
+			}
+		}
+		return serialize(() -> new FtpBatchUpload(this, localFiles, pipelined).start());
+	}
+
+	/**
+	 * LIST 命令，返回服务器输出的原始文本行
+	 *
+	 * @param path
+	 *            目录，空代表当前目录
+	 */
+	public CompletableFuture<List<String>> list(final String path)
+	{
+		return serialize(() -> {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+			String command = path == null || path.length() == 0 ? "LIST" : "LIST " + path;
+			return download(command, Channels.newChannel(bytes)).thenApply(n -> splitLines(bytes.toByteArray()));
+		});
+	}
+
+	/**
+	 * 发送 QUIT 并关闭控制连接
+	 */
+	public CompletableFuture<Void> quit()
+	{
+		return execute("QUIT").handle((reply, ex) -> {
+			close();
+			return (Void) null;
+		});
+	}
+
+	/**
+	 * 直接关闭控制连接，未完成的操作以异常结束
+	 */
+	public void close()
+	{
+		closed = true;
+		closeQuietly(control);
+	}
+
+	// ---------------------------------------------------------------
+	// 以下方法不做串行化，只能在 serialize 提交的操作内部调用
+
+	/**
+	 * 把一个操作排到本会话的队尾，上一个操作完成（无论成败）后才开始执行
+	 */
+	<T> CompletableFuture<T> serialize(final Supplier<CompletableFuture<T>> operation)
+	{
+		final CompletableFuture<T> result = new CompletableFuture<T>();
+		final CompletableFuture<Void> done = new CompletableFuture<Void>();
+		CompletableFuture<Void> previous;
+		synchronized (this)
+		{
+			previous = tail;
+			tail = done;
+		}
+		previous.whenComplete((v, e) -> {
+			CompletableFuture<T> f;
+			if (isClosed())
+			{
+				f = failed(new ClosedChannelException());
+			}
+			else
+			{
+				try
+				{
+					f = operation.get();
+				}
+				catch (Throwable ex)
+				{
+					f = failed(ex);
+				}
+			}
+			f.whenComplete((value, ex) -> {
+				if (ex != null)
+				{
+					Throwable cause = unwrap(ex);
+					if (cause instanceof FtpException)
+					{
+						FtpException ftpEx = (FtpException) cause;
+						engine.getMetrics().failed(host, ftpEx.getCommand(), ftpEx.getReplyCode());
+					}
+					else
+					{
+						// 超时或I/O错误后应答流已不可靠，会话作废
+						engine.getMetrics().failed(host, null, -1);
+						close();
+					}
+					result.completeExceptionally(cause);
+				}
+				else
+				{
+					result.complete(value);
+				}
+				done.complete(null);
+			});
+		});
+		return result;
+	}
+
+	CompletableFuture<FtpReply> sendAndRead(final String command)
+	{
+		return send(command).thenCompose(v -> readReply()).thenApply(reply -> {
+			track(command, reply);
+			return reply;
+		});
+	}
+
+	/**
+	 * 把相对路径转换为绝对路径，当前目录未知时先发送 PWD
+	 */
+	CompletableFuture<String> resolve(final String path)
+	{
+		String absolute = absolutePath(path);
+		if (absolute != null)
+		{
+			return CompletableFuture.completedFuture(absolute);
+		}
+		return currentDirectory().thenApply(cwd -> normalize(cwd, path));
+	}
+
+	/**
+	 * 取得当前目录，已知时不访问服务器
+	 */
+	CompletableFuture<String> currentDirectory()
+	{
+		String cwd = workingDirectory;
+		if (cwd != null)
+		{
+			return CompletableFuture.completedFuture(cwd);
+		}
+		return sendAndRead("PWD").thenApply(reply -> {
+			String dir = parseQuotedPath(expectCompletion("PWD", reply));
+			workingDirectory = dir;
+			return dir;
+		});
+	}
+
+	CompletableFuture<Set<String>> loadFeatures()
+	{
+		Set<String> feat = features;
+		if (feat != null)
+		{
+			return CompletableFuture.completedFuture(feat);
+		}
+		return sendAndRead("FEAT").thenApply(reply -> {
+			Set<String> result = new HashSet<String>();
+			if (reply.isPositiveCompletion())
+			{
+				List<String> lines = reply.getLines();
+				for (int i = 1; i < lines.size() - 1; i++)
+				{
+					String line = lines.get(i).trim();
+					int space = line.indexOf(' ');
+					result.add((space < 0 ? line : line.substring(0, space)).toUpperCase(Locale.ROOT));
+				}
+			}
+			features = Collections.unmodifiableSet(result);
+			return features;
+		});
+	}
+
+	CompletableFuture<Void> send(String command)
+	{
+		CompletableFuture<Void> future = new CompletableFuture<Void>();
+		writeFully(control, charset.encode(command + "\r\n"), engine.getTimeoutMillis(), future);
+		return future;
+	}
+
+	CompletableFuture<FtpReply> readReply()
+	{
+		CompletableFuture<FtpReply> future = new CompletableFuture<FtpReply>();
+		collectReply(new ArrayList<String>(), future);
+		return future;
+	}
+
+	/**
+	 * 被动模式打开数据连接；IPv6使用EPSV，否则使用PASV<br>
+	 * 应答中的地址被忽略，始终连接控制连接的对端地址，避免NAT内网地址和PASV端口劫持
+	 */
+	CompletableFuture<AsynchronousSocketChannel> openPassive()
+	{
+		final String command = passiveCommand();
+		return sendAndRead(command).thenCompose(reply -> connectPassive(command, reply));
+	}
+
+	/**
+	 * IPv6 控制连接使用 EPSV，否则使用 PASV
+	 */
+	String passiveCommand()
+	{
+		try
+		{
+			return ((InetSocketAddress) control.getRemoteAddress()).getAddress() instanceof Inet6Address ? "EPSV"
+					: "PASV";
+		}
+		catch (IOException ex)
+		{
+			return "PASV";
+		}
+	}
+
+	/**
+	 * 按 PASV/EPSV 应答连接数据端口
+	 */
+	CompletableFuture<AsynchronousSocketChannel> connectPassive(String command, FtpReply reply)
+	{
+		final InetSocketAddress remote;
+		try
+		{
+			remote = (InetSocketAddress) control.getRemoteAddress();
+		}
+		catch (IOException ex)
+		{
+			return failed(ex);
+		}
+		expectCompletion(command, reply);
+		int port = "EPSV".equals(command) ? parseEpsvPort(reply) : parsePasvPort(reply);
+		return connectData(new InetSocketAddress(remote.getAddress(), port));
+	}
+
+	/**
+	 * 本会话一次传输的限速：会话、服务器、引擎三级
+	 */
+	FtpThrottle newThrottle()
+	{
+		return new FtpThrottle(rateLimiter, engine.getHostRateLimiter(host), engine.getRateLimiter());
+	}
+
+	/**
+	 * 把 source 的数据全部写入数据连接，写完后关闭数据连接
+	 */
+	static CompletableFuture<Long> pump(AsynchronousSocketChannel data, ReadableByteChannel source, FtpEngine engine,
+			FtpThrottle throttle)
+	{
+		CompletableFuture<Long> future = new CompletableFuture<Long>();
+		new SendPump(data, source, engine, throttle, future).next();
+		return future;
+	}
+
+	/**
+	 * 执行一个带下行数据的命令（RETR、LIST等），数据写入 sink
+	 */
+	CompletableFuture<Long> download(final String command, final WritableByteChannel sink)
+	{
+		final long start = System.nanoTime();
+		return openPassive().thenCompose(data -> sendAndRead(command)
+				.thenCompose(reply -> {
+					expectPreliminary(command, reply);
+					CompletableFuture<Long> future = new CompletableFuture<Long>();
+					new ReceivePump(data, sink, engine, newThrottle(), future).start();
+					return future;
+				})
+				.thenCompose(count -> readReply().thenApply(reply -> {
+					expectCompletion(command, reply);
+					engine.getMetrics().transferred(host, verb(command), count, System.nanoTime() - start);
+					return count;
+				}))
+				.whenComplete((count, ex) -> closeQuietly(data)));
+	}
+
+	/**
+	 * 执行一个带上行数据的命令（STOR、APPE等），数据从 source 读出
+	 */
+	CompletableFuture<Long> upload(final String command, final ReadableByteChannel source)
+	{
+		final long start = System.nanoTime();
+		return openPassive().thenCompose(data -> sendAndRead(command)
+				.thenCompose(reply -> {
+					expectPreliminary(command, reply);
+					return pump(data, source, engine, newThrottle());
+				})
+				.thenCompose(count -> readReply().thenApply(reply -> {
+					expectCompletion(command, reply);
+					engine.getMetrics().transferred(host, verb(command), count, System.nanoTime() - start);
+					return count;
+				}))
+				.whenComplete((count, ex) -> closeQuietly(data)));
+	}
+
+	// ---------------------------------------------------------------
+
+	/**
+	 * MLSD 优先；服务器未声明 MLST/MLSD 或以 500/502/504 拒绝时改用 LIST，并在会话内记住
+	 */
+	private CompletableFuture<List<FtpFileEntry>> fetchEntries(final String path, Set<String> feat)
+	{
+		if (mlsdRejected || !(feat.contains("MLST") || feat.contains("MLSD")))
+		{
+			return fetchList(path, "LIST", false);
+		}
+		return fetchList(path, "MLSD", true).handle((entries, ex) -> {
+			if (ex == null)
+			{
+				return CompletableFuture.completedFuture(entries);
+			}
+			Throwable cause = unwrap(ex);
+			int code = cause instanceof FtpException ? ((FtpException) cause).getReplyCode() : -1;
+			if (code == 500 || code == 502 || code == 504)
+			{
+				mlsdRejected = true;
+				return fetchList(path, "LIST", false);
+			}
+			return FtpSession.<List<FtpFileEntry>> failed(cause);
+		}).thenCompose(f -> f);
+	}
+
+	private CompletableFuture<List<FtpFileEntry>> fetchList(String path, String verb, final boolean mlsd)
+	{
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+		String command = path == null || path.length() == 0 ? verb : verb + " " + path;
+		return download(command, Channels.newChannel(bytes)).thenApply(n -> {
+			ZoneId zone = serverZone;
+			List<FtpFileEntry> entries = new ArrayList<FtpFileEntry>();
+			for (String line : splitLines(bytes.toByteArray()))
+			{
+				FtpFileEntry entry = mlsd ? FtpListParser.parseMlsd(line) : FtpListParser.parseList(line, zone);
+				if (entry != null)
+				{
+					entries.add(entry);
+				}
+			}
+			return Collections.unmodifiableList(entries);
+		});
+	}
+
+	private void rememberAncestors(String dir)
+	{
+		for (String path = dir; !"/".equals(path); path = normalize(path, ".."))
+		{
+			knownDirectories.add(path);
+		}
+	}
+
+	private void rememberDirectories(String dir, List<FtpFileEntry> entries)
+	{
+		knownDirectories.add(dir);
+		for (FtpFileEntry entry : entries)
+		{
+			if (entry.isDirectory())
+			{
+				knownDirectories.add(normalize(dir, entry.getName()));
+			}
+		}
+	}
+
+	/**
+	 * 根据已执行的命令维护当前目录，并让被修改的目录的缓存失效
+	 */
+	void track(String command, FtpReply reply)
+	{
+		int space = command.indexOf(' ');
+		String verb = verb(command);
+		String arg = space < 0 ? "" : command.substring(space + 1);
+		if ("CWD".equals(verb) || "XCWD".equals(verb))
+		{
+			if (reply.isPositiveCompletion())
+			{
+				workingDirectory = absolutePath(arg);
+				if (workingDirectory != null)
+				{
+					knownDirectories.add(workingDirectory);
+				}
+			}
+		}
+		else if ("CDUP".equals(verb) || "XCUP".equals(verb))
+		{
+			if (reply.isPositiveCompletion())
+			{
+				workingDirectory = absolutePath("..");
+			}
+		}
+		else if ("STOR".equals(verb) || "APPE".equals(verb) || "STOU".equals(verb) || "DELE".equals(verb)
+				|| "MKD".equals(verb) || "XMKD".equals(verb) || "RMD".equals(verb) || "XRMD".equals(verb)
+				|| "RNFR".equals(verb) || "RNTO".equals(verb) || "MFMT".equals(verb))
+		{
+			String target = absolutePath(arg);
+			if (target == null || "STOU".equals(verb))
+			{
+				directoryCache.clear();
+				if (!"STOR".equals(verb) && !"APPE".equals(verb) && !"STOU".equals(verb))
+				{
+					knownDirectories.clear();
+				}
+			}
+			else if (("MKD".equals(verb) || "XMKD".equals(verb)) && reply.isPositiveCompletion())
+			{
+				directoryCache.invalidate(normalize(target, ".."));
+				knownDirectories.add(target);
+			}
+			else if ("STOR".equals(verb) || "APPE".equals(verb))
+			{
+				directoryCache.invalidate(normalize(target, ".."));
+			}
+			else
+			{
+				invalidate(target);
+			}
+		}
+	}
+
+	/**
+	 * 路径的绝对形式；相对路径且当前目录未知时返回null
+	 */
+	private String absolutePath(String path)
+	{
+		if (path != null && path.startsWith("/"))
+		{
+			return normalize("/", path);
+		}
+		String cwd = workingDirectory;
+		return cwd == null ? null : normalize(cwd, path);
+	}
+
+	/**
+	 * 拼接并规范化路径，处理 . 和 ..
+	 */
+	static String normalize(String base, String path)
+	{
+		String full = path == null || path.length() == 0 ? base : path.startsWith("/") ? path : base + "/" + path;
+		List<String> parts = new ArrayList<String>();
+		for (String part : full.split("/"))
+		{
+			if (part.length() == 0 || ".".equals(part))
+			{
+				continue;
+			}
+			if ("..".equals(part))
+			{
+				if (!parts.isEmpty())
+				{
+					parts.remove(parts.size() - 1);
+				}
+			}
+			else
+			{
+				parts.add(part);
+			}
+		}
+		return "/" + String.join("/", parts);
+	}
+
+	private CompletableFuture<AsynchronousSocketChannel> connectData(InetSocketAddress address)
+	{
+		final CompletableFuture<AsynchronousSocketChannel> future = new CompletableFuture<AsynchronousSocketChannel>();
+		final AsynchronousSocketChannel data;
+		try
+		{
+			data = engine.newChannel();
+		}
+		catch (IOException ex)
+		{
+			future.completeExceptionally(ex);
+			return future;
+		}
+		engine.connect(data, address, new CompletionHandler<Void, Void>()
+		{
+			public void completed(Void result, Void attachment)
+			{
+				future.complete(data);
+			}
+
+			public void failed(Throwable ex, Void attachment)
+			{
+				closeQuietly(data);
+				future.completeExceptionally(ex);
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * 从缓冲区中尽量解析出完整应答，不够时再异步读取控制连接
+	 */
+	private void collectReply(final List<String> lines, final CompletableFuture<FtpReply> future)
+	{
+		String line;
+		while ((line = pollLine()) != null)
+		{
+			lines.add(line);
+			String first = lines.get(0);
+			if (first.length() < 3 || !Character.isDigit(first.charAt(0)) || !Character.isDigit(first.charAt(1))
+					|| !Character.isDigit(first.charAt(2)))
+			{
+				future.completeExceptionally(new FtpException("Malformed reply: " + first));
+				return;
+			}
+			String code = first.substring(0, 3);
+			boolean multiLine = first.length() > 3 && first.charAt(3) == '-';
+			boolean last = !multiLine
+					|| (lines.size() > 1 && line.startsWith(code) && (line.length() == 3 || line.charAt(3) == ' '));
+			if (last)
+			{
+				future.complete(new FtpReply(Integer.parseInt(code), lines));
+				return;
+			}
+		}
+		readBuffer.clear();
+		control.read(readBuffer, engine.getTimeoutMillis(), TimeUnit.MILLISECONDS, null,
+				new CompletionHandler<Integer, Void>()
+				{
+					public void completed(Integer n, Void attachment)
+					{
+						readBuffer.flip();
+						if (n < 0)
+						{
+							future.completeExceptionally(new EOFException("FTP control connection closed by " + host));
+							return;
+						}
+						collectReply(lines, future);
+					}
+
+					public void failed(Throwable ex, Void attachment)
+					{
+						readBuffer.limit(0);
+						future.completeExceptionally(ex);
+					}
+				});
+	}
+
+	/**
+	 * 从缓冲区中取出一行，不足一行时把已读字节留在 lineBuffer 中并返回null
+	 */
+	private String pollLine()
+	{
+		while (readBuffer.hasRemaining())
+		{
+			byte b = readBuffer.get();
+			if (b == '\n')
+			{
+				byte[] bytes = lineBuffer.toByteArray();
+				lineBuffer.reset();
+				int len = bytes.length;
+				if (len > 0 && bytes[len - 1] == '\r')
+				{
+					len--;
+				}
+				return new String(bytes, 0, len, charset);
+			}
+			lineBuffer.write(b);
+		}
+		return null;
+	}
+
+	private List<String> splitLines(byte[] bytes)
+	{
+		List<String> lines = new ArrayList<String>();
+		int start = 0;
+		for (int i = 0; i <= bytes.length; i++)
+		{
+			if (i == bytes.length || bytes[i] == '\n')
+			{
+				int end = i;
+				if (end > start && bytes[end - 1] == '\r')
+				{
+					end--;
+				}
+				if (end > start)
+				{
+					lines.add(new String(bytes, start, end - start, charset));
+				}
+				start = i + 1;
+			}
+		}
+		return lines;
+	}
+
+	private static int parsePasvPort(FtpReply reply)
+	{
+		Matcher m = PASV_PATTERN.matcher(reply.getMessage());
+		if (!m.find())
+		{
+			throw unchecked(new FtpException("Malformed PASV reply: " + reply));
+		}
+		return Integer.parseInt(m.group(5)) * 256 + Integer.parseInt(m.group(6));
+	}
+
+	private static int parseEpsvPort(FtpReply reply)
+	{
+		String message = reply.getMessage();
+		int begin = message.indexOf("|||");
+		int end = begin < 0 ? -1 : message.indexOf('|', begin + 3);
+		if (end < 0)
+		{
+			throw unchecked(new FtpException("Malformed EPSV reply: " + reply));
+		}
+		return Integer.parseInt(message.substring(begin + 3, end));
+	}
+
+	private static String parseQuotedPath(FtpReply reply)
+	{
+		String message = reply.getMessage();
+		int begin = message.indexOf('"');
+		int end = message.lastIndexOf('"');
+		if (begin < 0 || end <= begin)
+		{
+			throw unchecked(new FtpException("Malformed PWD reply: " + reply));
+		}
+		// 路径中的双引号按RFC 959以两个双引号表示
+		return message.substring(begin + 1, end).replace("\"\"", "\"");
+	}
+
+	static FtpReply expectCompletion(String command, FtpReply reply)
+	{
+		if (!reply.isPositiveCompletion())
+		{
+			throw unchecked(new FtpException(command, reply));
+		}
+		return reply;
+	}
+
+	static FtpReply expectPreliminary(String command, FtpReply reply)
+	{
+		if (!reply.isPositivePreliminary())
+		{
+			throw unchecked(new FtpException(command, reply));
+		}
+		return reply;
+	}
+
+	static void writeFully(final AsynchronousSocketChannel channel, final ByteBuffer buffer, final long timeoutMillis,
+			final CompletableFuture<Void> future)
+	{
+		channel.write(buffer, timeoutMillis, TimeUnit.MILLISECONDS, null, new CompletionHandler<Integer, Void>()
+		{
+			public void completed(Integer n, Void attachment)
+			{
+				if (buffer.hasRemaining())
+				{
+					channel.write(buffer, timeoutMillis, TimeUnit.MILLISECONDS, null, this);
+				}
+				else
+				{
+					future.complete(null);
+				}
+			}
+
+			public void failed(Throwable ex, Void attachment)
+			{
+				future.completeExceptionally(ex);
+			}
+		});
+	}
+
+	/**
+	 * 命令动词，大写
+	 */
+	static String verb(String command)
+	{
+		int space = command.indexOf(' ');
+		return (space < 0 ? command : command.substring(0, space)).toUpperCase(Locale.ROOT);
+	}
+
+	static <T> CompletableFuture<T> failed(Throwable ex)
+	{
+		CompletableFuture<T> future = new CompletableFuture<T>();
+		future.completeExceptionally(ex);
+		return future;
+	}
+
+	static CompletionException unchecked(Throwable ex)
+	{
+		return ex instanceof CompletionException ? (CompletionException) ex : new CompletionException(ex);
+	}
+
+	static Throwable unwrap(Throwable ex)
+	{
+		while (ex instanceof CompletionException && ex.getCause() != null)
+		{
+			ex = ex.getCause();
+		}
+		return ex;
+	}
+
+	static void closeQuietly(Channel channel)
+	{
+		if (channel != null)
+		{
+			try
+			{
+				channel.close();
+			}
+			catch (IOException ex)
+			{
+				// ignore
+			}
+		}
+	}
+
+	/**
+	 * 数据连接 -> sink
+	 */
+	private static final class ReceivePump implements CompletionHandler<Integer, Void>
+	{
+		private final AsynchronousSocketChannel data;
+
+		private final WritableByteChannel sink;
+
+		private final FtpEngine engine;
+
+		private final FtpThrottle throttle;
+
+		private final long timeoutMillis;
+
+		private final CompletableFuture<Long> future;
+
+		private final FtpBufferPool pool;
+
+		private final ByteBuffer buffer;
+
+		private long total;
+
+		ReceivePump(AsynchronousSocketChannel data, WritableByteChannel sink, FtpEngine engine, FtpThrottle throttle,
+				CompletableFuture<Long> future)
+		{
+			this.data = data;
+			this.sink = sink;
+			this.engine = engine;
+			this.throttle = throttle;
+			this.timeoutMillis = engine.getTimeoutMillis();
+			this.future = future;
+			this.pool = engine.getBufferPool();
+			this.buffer = pool.acquire();
+		}
+
+		void start()
+		{
+			read();
+		}
+
+		private void read()
+		{
+			buffer.clear();
+			buffer.limit(throttle.chunkSize(buffer.capacity()));
+			data.read(buffer, timeoutMillis, TimeUnit.MILLISECONDS, null, this);
+		}
+
+		public void completed(Integer n, Void attachment)
+		{
+			if (n < 0)
+			{
+				finish(null);
+				return;
+			}
+			try
+			{
+				buffer.flip();
+				while (buffer.hasRemaining())
+				{
+					sink.write(buffer);
+				}
+				total += n;
+			}
+			catch (IOException ex)
+			{
+				finish(ex);
+				return;
+			}
+			long delay = throttle.reserve(n);
+			if (delay > 0)
+			{
+				engine.schedule(this::read, delay);
+			}
+			else
+			{
+				read();
+			}
+		}
+
+		public void failed(Throwable ex, Void attachment)
+		{
+			finish(ex);
+		}
+
+		private void finish(Throwable ex)
+		{
+			throttle.close();
+			pool.release(buffer);
+			if (ex == null)
+			{
+				future.complete(total);
+			}
+			else
+			{
+				future.completeExceptionally(ex);
+			}
+		}
+	}
+
+	/**
+	 * source -> 数据连接，读完后关闭数据连接通知服务器传输结束
+	 */
+	private static final class SendPump implements CompletionHandler<Integer, Void>
+	{
+		private final AsynchronousSocketChannel data;
+
+		private final ReadableByteChannel source;
+
+		private final FtpEngine engine;
+
+		private final FtpThrottle throttle;
+
+		private final long timeoutMillis;
+
+		private final CompletableFuture<Long> future;
+
+		private final FtpBufferPool pool;
+
+		private final ByteBuffer buffer;
+
+		private long total;
+
+		SendPump(AsynchronousSocketChannel data, ReadableByteChannel source, FtpEngine engine, FtpThrottle throttle,
+				CompletableFuture<Long> future)
+		{
+			this.data = data;
+			this.source = source;
+			this.engine = engine;
+			this.throttle = throttle;
+			this.timeoutMillis = engine.getTimeoutMillis();
+			this.future = future;
+			this.pool = engine.getBufferPool();
+			this.buffer = pool.acquire();
+		}
+
+		void next()
+		{
+			int n;
+			try
+			{
+				buffer.clear();
+				buffer.limit(throttle.chunkSize(buffer.capacity()));
+				n = source.read(buffer);
+				if (n < 0)
+				{
+					data.close();
+					finish(null);
+					return;
+				}
+				buffer.flip();
+			}
+			catch (IOException ex)
+			{
+				finish(ex);
+				return;
+			}
+			long delay = throttle.reserve(n);
+			if (delay > 0)
+			{
+				engine.schedule(this::write, delay);
+			}
+			else
+			{
+				write();
+			}
+		}
+
+		private void write()
+		{
+			data.write(buffer, timeoutMillis, TimeUnit.MILLISECONDS, null, this);
+		}
+
+		public void completed(Integer n, Void attachment)
+		{
+			total += n;
+			if (buffer.hasRemaining())
+			{
+				write();
+			}
+			else
+			{
+				next();
+			}
+		}
+
+		public void failed(Throwable ex, Void attachment)
+		{
+			finish(ex);
+		}
+
+		private void finish(Throwable ex)
+		{
+			throttle.close();
+			pool.release(buffer);
+			if (ex == null)
+			{
+				future.complete(total);
+			}
+			else
+			{
+				future.completeExceptionally(ex);
+			}
+		}
+	}
+}
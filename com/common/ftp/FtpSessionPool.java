@@ -0,0 +1,271 @@
+package com.common.ftp;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * 同一服务器、同一用户的已登录会话池<br>
+ * acquire 不阻塞线程：有空闲会话时立即返回，未达上限时新建，否则排队等待其它调用者 release
+ *
+ * @author renms
+ * @version 1.0.0
+ */
+public class FtpSessionPool implements Closeable
+{
+
+	private final FtpEngine engine;
+
+	private final String host;
+
+	private final int port;
+
+	private final String user;
+
+	private final String password;
+
+	private final int maxSessions;
+
+	private final Deque<FtpSession> idle = new ArrayDeque<FtpSession>();
+
+	private final Deque<CompletableFuture<FtpSession>> waiters = new ArrayDeque<CompletableFuture<FtpSession>>();
+
+	private int openSessions;
+
+	private boolean closed;
+
+	/**
+	 * @param engine
+	 *            FTP引擎
+	 * @param host
+	 *            服务器地址
+	 * @param port
+	 *            服务器FTP端口号
+	 * @param user
+	 *            登陆用户
+	 * @param password
+	 *            密码
+	 * @param maxSessions
+	 *            最多同时打开的会话数
+	 */
+	public FtpSessionPool(FtpEngine engine, String host, int port, String user, String password, int maxSessions)
+	{
+		if (maxSessions <= 0)
+		{
+			throw new IllegalArgumentException("maxSessions must be positive");
+		}
+		this.engine = engine;
+		this.host = host;
+		this.port = port;
+		this.user = user;
+		this.password = password;
+		this.maxSessions = maxSessions;
+		engine.getMetrics().poolOpened(this);
+	}
+
+	/**
+	 * 借出一个会话，用完后必须 release
+	 */
+	public CompletableFuture<FtpSession> acquire()
+	{
+		final long start = System.nanoTime();
+		CompletableFuture<FtpSession> future = new CompletableFuture<FtpSession>();
+		future.thenRun(() -> engine.getMetrics().poolAcquired(host, System.nanoTime() - start));
+		boolean create = false;
+		synchronized (this)
+		{
+			if (closed)
+			{
+				future.completeExceptionally(new IllegalStateException("FtpSessionPool closed"));
+				return future;
+			}
+			FtpSession session;
+			while ((session = idle.poll()) != null)
+			{
+				if (!session.isClosed())
+				{
+					future.complete(session);
+					return future;
+				}
+				openSessions--;
+			}
+			if (openSessions < maxSessions)
+			{
+				openSessions++;
+				create = true;
+			}
+			else
+			{
+				waiters.add(future);
+			}
+		}
+		if (create)
+		{
+			openFor(future);
+		}
+		return future;
+	}
+
+	/**
+	 * 归还会话；已关闭的会话不再放回池中
+	 */
+	public void release(FtpSession session)
+	{
+		CompletableFuture<FtpSession> waiter = null;
+		boolean create = false;
+		synchronized (this)
+		{
+			if (closed || session.isClosed())
+			{
+				openSessions--;
+				session.close();
+				if (!closed && !waiters.isEmpty())
+				{
+					waiter = waiters.poll();
+					openSessions++;
+					create = true;
+				}
+			}
+			else if (!waiters.isEmpty())
+			{
+				waiter = waiters.poll();
+			}
+			else
+			{
+				idle.push(session);
+			}
+		}
+		// 在锁外完成 future，避免回调在持锁时运行
+		if (create)
+		{
+			openFor(waiter);
+		}
+		else if (waiter != null)
+		{
+			waiter.complete(session);
+		}
+	}
+
+	/**
+	 * 借出一个会话执行操作，操作结束（无论成败）后自动归还
+	 */
+	public <T> CompletableFuture<T> execute(final Function<FtpSession, CompletableFuture<T>> operation)
+	{
+		return acquire().thenCompose(session -> {
+			CompletableFuture<T> f;
+			try
+			{
+				f = operation.apply(session);
+			}
+			catch (RuntimeException ex)
+			{
+				f = FtpSession.failed(ex);
+			}
+			return f.whenComplete((value, ex) -> release(session));
+		});
+	}
+
+	public String getHost()
+	{
+		return host;
+	}
+
+	public int getPort()
+	{
+		return port;
+	}
+
+	public int getMaxSessions()
+	{
+		return maxSessions;
+	}
+
+	/**
+	 * 已打开（含正在登录）的会话数
+	 */
+	public synchronized int getOpenSessions()
+	{
+		return openSessions;
+	}
+
+	/**
+	 * 已借出的会话数
+	 */
+	public synchronized int getBusySessions()
+	{
+		return openSessions - idle.size();
+	}
+
+	/**
+	 * 等待会话的调用者数
+	 */
+	public synchronized int getWaiters()
+	{
+		return waiters.size();
+	}
+
+	/**
+	 * 关闭空闲会话，借出中的会话在归还时关闭；排队的调用者以异常结束
+	 */
+	public void close()
+	{
+		List<FtpSession> sessions;
+		List<CompletableFuture<FtpSession>> pending;
+		synchronized (this)
+		{
+			if (closed)
+			{
+				return;
+			}
+			closed = true;
+			sessions = new ArrayList<FtpSession>(idle);
+			openSessions -= idle.size();
+			idle.clear();
+			pending = new ArrayList<CompletableFuture<FtpSession>>(waiters);
+			waiters.clear();
+		}
+		for (FtpSession session : sessions)
+		{
+			session.quit();
+		}
+		for (CompletableFuture<FtpSession> waiter : pending)
+		{
+			waiter.completeExceptionally(new IllegalStateException("FtpSessionPool closed"));
+		}
+		engine.getMetrics().poolClosed(this);
+	}
+
+	private void openFor(final CompletableFuture<FtpSession> future)
+	{
+		engine.open(host, port, user, password).whenComplete((session, ex) -> {
+			if (ex != null)
+			{
+				Throwable cause = FtpSession.unwrap(ex);
+				List<CompletableFuture<FtpSession>> orphans = new ArrayList<CompletableFuture<FtpSession>>();
+				synchronized (FtpSessionPool.this)
+				{
+					openSessions--;
+					// 没有任何会话时不会再有 release，排队者只能一起失败
+					if (openSessions == 0)
+					{
+						orphans.addAll(waiters);
+						waiters.clear();
+					}
+				}
+				future.completeExceptionally(cause);
+				for (CompletableFuture<FtpSession> orphan : orphans)
+				{
+					orphan.completeExceptionally(cause);
+				}
+			}
+			else
+			{
+				future.complete(session);
+			}
+		});
+	}
+}
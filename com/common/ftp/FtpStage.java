@@ -0,0 +1,34 @@
+package com.common.ftp;
+
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 传输流水线上的一个处理阶段，在传输缓冲区上就地处理数据，如压缩、计算摘要<br>
+ * 多个阶段按本地到服务器的顺序排列：上传时数据依次经过各阶段再发出，下载时按相反顺序经过各阶段再写入本地，
+ * 因此同一组阶段既可用于上传也可用于下载。每次传输都会重新调用 wrap 方法，阶段对象可以复用但不能同时用于两个传输
+ *
+ * @author renms
+ * @version 1.0.0
+ */
+public interface FtpStage
+{
+
+	/**
+	 * 包装上传的数据源
+	 *
+	 * @param source
+	 *            上一阶段（或本地文件）的输出
+	 * @return 本阶段处理后的输出，关闭时须关闭 source
+	 */
+	ReadableByteChannel wrapUpload(ReadableByteChannel source);
+
+	/**
+	 * 包装下载的数据去向
+	 *
+	 * @param sink
+	 *            下一阶段（或本地文件）的输入
+	 * @return 本阶段的输入，关闭时须关闭 sink；数据不完整等错误可在关闭时抛出
+	 */
+	WritableByteChannel wrapDownload(WritableByteChannel sink);
+}
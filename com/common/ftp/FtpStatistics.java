@@ -0,0 +1,107 @@
+package com.common.ftp;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 内存中的度量统计，按服务器分别累计，另有一份全部服务器的合计
+ *
+ * @author renms
+ * @version 1.0.0
+ */
+public class FtpStatistics implements FtpMetrics
+{
+
+	public static final String TOTAL = "*";
+
+	private final ConcurrentHashMap<String, FtpHostStatistics> hosts = new ConcurrentHashMap<String, FtpHostStatistics>();
+
+	private final FtpHostStatistics total = new FtpHostStatistics(TOTAL);
+
+	/**
+	 * 全部服务器的合计
+	 */
+	public FtpHostStatistics getTotal()
+	{
+		return total;
+	}
+
+	/**
+	 * 某个服务器的统计，尚无记录时返回null
+	 */
+	public FtpHostStatistics getHost(String host)
+	{
+		return hosts.get(host);
+	}
+
+	public Collection<FtpHostStatistics> getHosts()
+	{
+		return new ArrayList<FtpHostStatistics>(hosts.values());
+	}
+
+	public void connected(String host, long connectNanos)
+	{
+		total.connected(connectNanos);
+		host(host).connected(connectNanos);
+	}
+
+	public void loggedIn(String host, long loginNanos)
+	{
+		total.loggedIn(loginNanos);
+		host(host).loggedIn(loginNanos);
+	}
+
+	public void transferred(String host, String command, long bytes, long nanos)
+	{
+		total.transferred(command, bytes, nanos);
+		host(host).transferred(command, bytes, nanos);
+	}
+
+	public void failed(String host, String command, int replyCode)
+	{
+		total.failed(replyCode);
+		host(host).failed(replyCode);
+	}
+
+	public void poolAcquired(String host, long waitNanos)
+	{
+		total.poolAcquired(waitNanos);
+		host(host).poolAcquired(waitNanos);
+	}
+
+	public void poolOpened(FtpSessionPool pool)
+	{
+		total.poolOpened(pool);
+		host(pool.getHost()).poolOpened(pool);
+	}
+
+	public void poolClosed(FtpSessionPool pool)
+	{
+		total.poolClosed(pool);
+		host(pool.getHost()).poolClosed(pool);
+	}
+
+	/**
+	 * 某个服务器第一次出现时调用，子类可在此登记
+	 */
+	protected void hostAdded(FtpHostStatistics statistics)
+	{
+	}
+
+	private FtpHostStatistics host(String host)
+	{
+		FtpHostStatistics statistics = hosts.get(host);
+		if (statistics == null)
+		{
+			FtpHostStatistics created = new FtpHostStatistics(host);
+			statistics = hosts.putIfAbsent(host, created);
+			if (statistics == null)
+			{
+				statistics = created;
+				hostAdded(created);
+			}
+		}
+		return statistics;
+	}
+}
@@ -0,0 +1,76 @@
+package com.common.ftp;
+
+/**
+ * 一次传输所受的全部限速器（会话、服务器、引擎），传输结束时 close
+ *
+ * @author renms
+ * @version 1.0.0
+ */
+final class FtpThrottle
+{
+
+	private final FtpRateLimiter[] limiters;
+
+	private boolean closed;
+
+	FtpThrottle(FtpRateLimiter... limiters)
+	{
+		this.limiters = limiters;
+		for (FtpRateLimiter limiter : limiters)
+		{
+			limiter.register();
+		}
+	}
+
+	boolean isLimited()
+	{
+		for (FtpRateLimiter limiter : limiters)
+		{
+			if (limiter.isLimited())
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 本次读写的最大字节数
+	 */
+	int chunkSize(int max)
+	{
+		int chunk = max;
+		for (FtpRateLimiter limiter : limiters)
+		{
+			chunk = Math.min(chunk, limiter.chunkSize(max));
+		}
+		return chunk;
+	}
+
+	/**
+	 * 在每一级预约令牌
+	 *
+	 * @return 需要等待的纳秒数，取各级中最长的
+	 */
+	long reserve(int bytes)
+	{
+		long delay = 0;
+		for (FtpRateLimiter limiter : limiters)
+		{
+			delay = Math.max(delay, limiter.reserve(bytes));
+		}
+		return delay;
+	}
+
+	void close()
+	{
+		if (!closed)
+		{
+			closed = true;
+			for (FtpRateLimiter limiter : limiters)
+			{
+				limiter.unregister();
+			}
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package com.common.ftp;
+
+import java.io.File;
+
+/**
+ * 一个上传任务：把本地文件上传到指定FTP服务器的指定路径
+ *
+ * @author renms
+ * @version 1.0.0
+ */
+public class FtpTransferJob
+{
+
+	private final String host;
+
+	private final int port;
+
+	private final String user;
+
+	private final String password;
+
+	private final File localFile;
+
+	private final String remotePath;
+
+	/**
+	 * 使用默认FTP端口
+	 *
+	 * @param host
+	 *            服务器地址
+	 * @param user
+	 *            登陆用户
+	 * @param password
+	 *            密码
+	 * @param localFile
+	 *            待上传的本地文件
+	 * @param remotePath
+	 *            服务器上的文件路径，含文件名；目录部分必须已存在
+	 */
+	public FtpTransferJob(String host, String user, String password, File localFile, String remotePath)
+	{
+		this(host, FtpEngine.DEFAULT_PORT, user, password, localFile, remotePath);
+	}
+
+	public FtpTransferJob(String host, int port, String user, String password, File localFile, String remotePath)
+	{
+		this.host = host;
+		this.port = port;
+		this.user = user;
+		this.password = password;
+		this.localFile = localFile;
+		this.remotePath = remotePath;
+	}
+
+	public String getHost()
+	{
+		return host;
+	}
+
+	public int getPort()
+	{
+		return port;
+	}
+
+	public String getUser()
+	{
+		return user;
+	}
+
+	public String getPassword()
+	{
+		return password;
+	}
+
+	public File getLocalFile()
+	{
+		return localFile;
+	}
+
+	public String getRemotePath()
+	{
+		return remotePath;
+	}
+
+	/**
+	 * 并发限制按 host:port 区分服务器
+	 */
+	String getServerKey()
+	{
+		return host + ":" + port;
+	}
+
+	public String toString()
+	{
+		return localFile + " -> " + user + "@" + host + ":" + port + remotePath;
+	}
+}
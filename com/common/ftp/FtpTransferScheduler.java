@@ -0,0 +1,315 @@
+package com.common.ftp;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.common.FtpUtil;
+
+/**
+ * 批量上传调度器<br>
+ * 每个任务运行在一个虚拟线程上（JDK 21 以前退回最多 maxConcurrent 个线程的线程池），在其中使用 FtpUtil 完成连接、上传、断开；
+ * 同时运行的任务数按服务器和总数两级限制，超出限制的任务在队列中等待，不占用线程；每个任务返回一个 CompletableFuture
+ *
+ * <pre>
+ * FtpTransferScheduler scheduler = new FtpTransferScheduler(1000, 4);
+ * List&lt;CompletableFuture&lt;Long&gt;&gt; results = scheduler.submitAll(jobs);
+ * CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).join();
+ * scheduler.close();
+ * </pre>
+ *
+ * @author renms
+ * @version 1.0.0
+ */
+public class FtpTransferScheduler implements Closeable
+{
+
+	private static Logger logger = Logger.getLogger(FtpTransferScheduler.class);
+
+	private final ExecutorService executor;
+
+	private final int maxConcurrent;
+
+	private final int maxPerHost;
+
+	/** 有任务在传输或排队的服务器，空闲后移除 */
+	private final Map<String, Host> hosts = new HashMap<String, Host>();
+
+	/** 已取得服务器名额、等待全局名额的任务 */
+	private final Deque<Task> ready = new ArrayDeque<Task>();
+
+	private int active;
+
+	private boolean closed;
+
+	/**
+	 * @param maxConcurrent
+	 *            同时进行的传输总数上限
+	 * @param maxPerHost
+	 *            同一服务器同时进行的传输数上限
+	 */
+	public FtpTransferScheduler(int maxConcurrent, int maxPerHost)
+	{
+		if (maxConcurrent <= 0 || maxPerHost <= 0)
+		{
+			throw new IllegalArgumentException("maxConcurrent and maxPerHost must be positive");
+		}
+		this.executor = newExecutor(maxConcurrent);
+		this.maxConcurrent = maxConcurrent;
+		this.maxPerHost = maxPerHost;
+	}
+
+	/**
+	 * 提交一个上传任务
+	 *
+	 * @param job
+	 *            上传任务
+	 * @return 成功时为上传的字节数；本地文件不存在时以 FileNotFoundException 失败
+	 */
+	public CompletableFuture<Long> submit(FtpTransferJob job)
+	{
+		Task task = new Task(job);
+		List<Task> start;
+		synchronized (this)
+		{
+			if (closed)
+			{
+				throw new RejectedExecutionException("FtpTransferScheduler closed");
+			}
+			// 先取服务器名额再取全局名额，避免排队等待繁忙服务器的任务占住全局名额
+			Host host = hosts.get(job.getServerKey());
+			if (host == null)
+			{
+				host = new Host();
+				hosts.put(job.getServerKey(), host);
+			}
+			task.host = host;
+			if (host.active < maxPerHost)
+			{
+				host.active++;
+				ready.add(task);
+			}
+			else
+			{
+				host.waiting.add(task);
+			}
+			start = poll();
+		}
+		execute(start);
+		return task.future;
+	}
+
+	/**
+	 * 批量提交上传任务，返回的结果与任务一一对应
+	 */
+	public List<CompletableFuture<Long>> submitAll(List<FtpTransferJob> jobs)
+	{
+		List<CompletableFuture<Long>> results = new ArrayList<CompletableFuture<Long>>(jobs.size());
+		for (FtpTransferJob job : jobs)
+		{
+			results.add(submit(job));
+		}
+		return results;
+	}
+
+	/**
+	 * 当前正在传输的任务数
+	 */
+	public synchronized int getActiveCount()
+	{
+		return active;
+	}
+
+	/**
+	 * 不再接受新任务，已提交的任务（包括排队中的）继续执行完
+	 */
+	public void close()
+	{
+		synchronized (this)
+		{
+			closed = true;
+			if (active > 0 || !ready.isEmpty())
+			{
+				// 最后一个任务结束时关闭执行器
+				return;
+			}
+		}
+		executor.shutdown();
+	}
+
+	/**
+	 * 取出可以开始的任务，调用时持有锁
+	 */
+	private List<Task> poll()
+	{
+		List<Task> start = null;
+		while (active < maxConcurrent && !ready.isEmpty())
+		{
+			if (start == null)
+			{
+				start = new ArrayList<Task>();
+			}
+			start.add(ready.poll());
+			active++;
+		}
+		return start;
+	}
+
+	private void execute(List<Task> start)
+	{
+		if (start != null)
+		{
+			for (Task task : start)
+			{
+				executor.execute(task);
+			}
+		}
+	}
+
+	/**
+	 * 任务结束，把名额交给排队的任务
+	 */
+	private void finished(Task task)
+	{
+		List<Task> start;
+		boolean shutdown;
+		synchronized (this)
+		{
+			active--;
+			Host host = task.host;
+			Task next = host.waiting.poll();
+			if (next != null)
+			{
+				ready.add(next);
+			}
+			else if (--host.active == 0)
+			{
+				hosts.remove(task.job.getServerKey());
+			}
+			start = poll();
+			shutdown = closed && active == 0 && ready.isEmpty();
+		}
+		execute(start);
+		if (shutdown)
+		{
+			executor.shutdown();
+		}
+	}
+
+	private long run(FtpTransferJob job) throws Exception
+	{
+		if (!job.getLocalFile().isFile() || !job.getLocalFile().canRead())
+		{
+			throw new FileNotFoundException(job.getLocalFile().getPath());
+		}
+		return transfer(job);
+	}
+
+	private long transfer(FtpTransferJob job) throws Exception
+	{
+		String remotePath = job.getRemotePath();
+		int slash = remotePath.lastIndexOf('/');
+		String dir = slash < 0 ? "" : remotePath.substring(0, slash + 1);
+		String name = slash < 0 ? remotePath : remotePath.substring(slash + 1);
+		if (name.length() == 0)
+		{
+			name = job.getLocalFile().getName();
+		}
+		FtpUtil ftp = new FtpUtil();
+		ftp.connect(job.getHost(), job.getPort(), job.getUser(), job.getPassword());
+		try
+		{
+			ftp.cd(dir);
+			return ftp.upload(job.getLocalFile(), name);
+		}
+		finally
+		{
+			ftp.disConnect();
+		}
+	}
+
+	/**
+	 * 优先使用每任务一个虚拟线程的执行器（JDK 21+），否则使用最多 threads 个守护线程的线程池，空闲线程一分钟后退出；
+	 * 交给执行器的任务不超过 maxConcurrent 个，线程池的队列不会积压
+	 */
+	private static ExecutorService newExecutor(int threads)
+	{
+		try
+		{
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		}
+		catch (Exception ex)
+		{
+			logger.info("Virtual threads unavailable, falling back to platform threads.");
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), r -> {
+						Thread t = new Thread(r, "ftp-transfer");
+						t.setDaemon(true);
+						return t;
+					});
+			pool.allowCoreThreadTimeOut(true);
+			return pool;
+		}
+	}
+
+	/**
+	 * 同一服务器的传输数和排队的任务
+	 */
+	private static class Host
+	{
+		int active;
+
+		final Deque<Task> waiting = new ArrayDeque<Task>();
+	}
+
+	private class Task implements Runnable
+	{
+		final FtpTransferJob job;
+
+		final CompletableFuture<Long> future = new CompletableFuture<Long>();
+
+		Host host;
+
+		Task(FtpTransferJob job)
+		{
+			this.job = job;
+		}
+
+		public void run()
+		{
+			try
+			{
+				// 排队期间已被取消的任务不再传输
+				if (!future.isDone())
+				{
+					future.complete(FtpTransferScheduler.this.run(job));
+				}
+			}
+			catch (Throwable ex)
+			{
+				logger.error("Uploading file failure! Job: " + job, ex);
+				future.completeExceptionally(ex);
+			}
+			finally
+			{
+				finished(this);
+			}
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package com.common.ftp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 并行删除远程目录树<br>
+ * 每层目录只取一次列表，文件的 DELE 和子目录的递归删除分散到会话池的多个会话上并行执行，
+ * 子项全部删除后再删除目录本身
+ *
+ * @author renms
+ * @version 1.0.0
+ */
+public class FtpTreeDeleter
+{
+
+	private final FtpSessionPool pool;
+
+	private final AtomicLong deleted = new AtomicLong();
+
+	public FtpTreeDeleter(FtpSessionPool pool)
+	{
+		this.pool = pool;
+	}
+
+	/**
+	 * 删除目录及其下全部内容
+	 *
+	 * @param directory
+	 *            目录的绝对路径
+	 * @return 删除的文件和文件夹总数（含目录本身）
+	 */
+	public CompletableFuture<Long> delete(final String directory)
+	{
+		final String dir = FtpSession.normalize("/", directory);
+		if ("/".equals(dir))
+		{
+			return FtpSession.failed(new IllegalArgumentException("Refusing to delete the root directory"));
+		}
+		return deleteTree(dir).thenApply(v -> deleted.get());
+	}
+
+	/**
+	 * 已删除的条目数，可在删除过程中查询进度
+	 */
+	public long getDeletedCount()
+	{
+		return deleted.get();
+	}
+
+	private CompletableFuture<Void> deleteTree(final String dir)
+	{
+		// 列表不走缓存：缓存可能来自其它会话修改之前
+		return pool.execute(session -> {
+			session.getDirectoryCache().invalidate(dir);
+			return session.listEntries(dir);
+		}).thenCompose(entries -> {
+			List<CompletableFuture<Void>> children = new ArrayList<CompletableFuture<Void>>(entries.size());
+			for (FtpFileEntry entry : entries)
+			{
+				final String child = dir + "/" + entry.getName();
+				if (entry.isDirectory())
+				{
+					children.add(deleteTree(child));
+				}
+				else
+				{
+					children.add(pool.execute(session -> session.dele(child)).thenApply(v -> {
+						deleted.incrementAndGet();
+						return (Void) null;
+					}));
+				}
+			}
+			return CompletableFuture.allOf(children.toArray(new CompletableFuture<?>[children.size()]));
+		}).thenCompose(v -> pool.execute(session -> session.rmd(dir))).thenApply(v -> {
+			deleted.incrementAndGet();
+			return (Void) null;
+		});
+	}
+}